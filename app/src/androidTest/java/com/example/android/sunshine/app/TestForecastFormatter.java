@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.database.MatrixCursor;
+import android.os.Debug;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.test.AndroidTestCase;
+import android.util.Log;
+import android.view.View;
+import android.widget.AbsListView;
+
+import com.example.android.sunshine.app.fragment.ForecastFragment;
+
+public class TestForecastFormatter extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestForecastFormatter.class.getSimpleName();
+
+    private static final int ROWS = 500;
+
+    public void testMatchesUtilityFormatting() {
+        SunshineSettings settings = SettingsStore.getInstance(mContext).getSettings();
+        ForecastFormatter formatter = new ForecastFormatter(settings);
+        for (double t = -80; t <= 80; t += 0.05) {
+            String expected = Utility.formatTemperature(mContext, t);
+            ForecastFormatter.Temperature temperature = formatter.formatTemperature(t);
+            assertEquals("Error: formatting " + t, expected, temperature.text);
+            assertEquals(mContext.getString(R.string.a11y_high_temp, expected), temperature.highDescription);
+            assertEquals(mContext.getString(R.string.a11y_low_temp, expected), temperature.lowDescription);
+        }
+        assertEquals("iconView42", formatter.getTransitionName(42));
+        assertSame(formatter.getTransitionName(42), formatter.getTransitionName(42));
+    }
+
+    public void testFormattingIsAllocationFreeOnceWarm() {
+        ForecastFormatter formatter = new ForecastFormatter(SettingsStore.getInstance(mContext).getSettings());
+        for (int i = 0; i < ROWS; i++) {
+            formatter.formatTemperature(i % 40 - 10);
+            formatter.getTransitionName(i);
+        }
+
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        for (int i = 0; i < ROWS; i++) {
+            formatter.formatTemperature(i % 40 - 10);
+            formatter.getTransitionName(i);
+        }
+        Debug.stopAllocCounting();
+        assertEquals("Error: warm formatting allocated", 0, Debug.getThreadAllocCount());
+    }
+
+    /*
+        Binds every row of a synthetic forecast twice, as a full scroll down and back up would,
+        and reports the allocations per bind of the second pass.
+     */
+    public void testBindAllocationsOverFullScroll() {
+        MatrixCursor cursor = new MatrixCursor(new String[]{"_id", "date", "short_desc", "max",
+            "min", "location_setting", "weather_id", "coord_lat", "coord_long"});
+        for (int i = 0; i < ROWS; i++) {
+            cursor.addRow(new Object[]{i, 1419033600000L + i * 86400000L, "Clear", 20 + i % 15,
+                5 + i % 10, "94043", 800, 37.39, -122.08});
+        }
+
+        RecyclerView recyclerView = new RecyclerView(mContext);
+        recyclerView.setLayoutManager(new LinearLayoutManager(mContext));
+        SunshineSettings settings = SettingsStore.getInstance(mContext).getSettings();
+        ForecastAdapter adapter = new ForecastAdapter(mContext, settings,
+            new ForecastAdapter.ForecastAdapterOnClickHandler() {
+                @Override
+                public void onClick(Long date, ForecastAdapter.ForecastAdapterViewHolder vh) {}
+            }, new View(mContext), AbsListView.CHOICE_MODE_NONE);
+        adapter.swapSnapshot(ForecastSnapshot.read(cursor), null);
+        cursor.close();
+        ForecastAdapter.ForecastAdapterViewHolder holder = adapter.onCreateViewHolder(recyclerView, 0);
+
+        for (int i = 0; i < ROWS; i++) {
+            adapter.onBindViewHolder(holder, i);
+        }
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        for (int i = ROWS - 1; i >= 0; i--) {
+            adapter.onBindViewHolder(holder, i);
+        }
+        Debug.stopAllocCounting();
+        Log.i(LOG_TAG, "Allocations per bind over a full scroll (art pack: "
+            + (settings.usingLocalGraphics ? "local" : "remote") + "): "
+            + (float) Debug.getThreadAllocCount() / ROWS);
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.app.Activity;
+import android.app.Application;
+import android.content.pm.ActivityInfo;
+import android.os.Bundle;
+import android.support.v7.widget.RecyclerView;
+import android.test.ActivityInstrumentationTestCase2;
+import android.view.View;
+import android.view.ViewGroup;
+
+import com.example.android.sunshine.app.activity.MainActivity;
+import com.example.android.sunshine.app.utils.PollingCheck;
+
+public class TestForecastViewPool extends ActivityInstrumentationTestCase2<MainActivity> {
+
+    // The activity recreated by the last rotation.
+    private volatile MainActivity mRecreated;
+
+    private final Application.ActivityLifecycleCallbacks mCallbacks = new Application.ActivityLifecycleCallbacks() {
+        @Override
+        public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+            if (activity instanceof MainActivity) {
+                mRecreated = (MainActivity) activity;
+            }
+        }
+
+        @Override
+        public void onActivityStarted(Activity activity) {}
+
+        @Override
+        public void onActivityResumed(Activity activity) {}
+
+        @Override
+        public void onActivityPaused(Activity activity) {}
+
+        @Override
+        public void onActivityStopped(Activity activity) {}
+
+        @Override
+        public void onActivitySaveInstanceState(Activity activity, Bundle outState) {}
+
+        @Override
+        public void onActivityDestroyed(Activity activity) {}
+    };
+
+    public TestForecastViewPool() {
+        super(MainActivity.class);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        ((Application) getInstrumentation().getTargetContext().getApplicationContext())
+            .registerActivityLifecycleCallbacks(mCallbacks);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        ((Application) getInstrumentation().getTargetContext().getApplicationContext())
+            .unregisterActivityLifecycleCallbacks(mCallbacks);
+        if (mRecreated != null) {
+            mRecreated.finish();
+        }
+        super.tearDown();
+    }
+
+    /*
+        Fills the pool with portrait rows, rotates, and checks the landscape list only shows
+        rows with the landscape layout, whose top margin the portrait one doesn't have.
+     */
+    public void testLandscapeListShowsLandscapeRows() {
+        RecyclerView portraitList = showIn(getActivity(), ActivityInfo.SCREEN_ORIENTATION_PORTRAIT);
+        assertEquals("Error: portrait rows have a top margin", 0, topMargin(portraitList.getChildAt(0)));
+
+        RecyclerView landscapeList = rotate(portraitList, ActivityInfo.SCREEN_ORIENTATION_LANDSCAPE);
+        int margin = mRecreated.getResources().getDimensionPixelSize(
+            R.dimen.abc_list_item_padding_horizontal_material);
+        for (int i = 0; i < landscapeList.getChildCount(); i++) {
+            assertEquals("Error: row " + i + " kept the portrait layout", margin,
+                topMargin(landscapeList.getChildAt(i)));
+        }
+    }
+
+    /*
+        The portrait list leaves its rows in the portrait pool when it goes away; rotating back
+        shows them again without inflating any.
+     */
+    public void testRotatingBackReusesRows() {
+        RecyclerView portraitList = showIn(getActivity(), ActivityInfo.SCREEN_ORIENTATION_PORTRAIT);
+        RecyclerView landscapeList = rotate(portraitList, ActivityInfo.SCREEN_ORIENTATION_LANDSCAPE);
+
+        ForecastViewPool pool = ForecastViewPool.getInstance(mRecreated);
+        int inflations = pool.getInflationCount();
+        RecyclerView restoredList = rotate(landscapeList, ActivityInfo.SCREEN_ORIENTATION_PORTRAIT);
+        assertEquals("Error: portrait rows were inflated again", inflations, pool.getInflationCount());
+        assertEquals("Error: restored rows have a top margin", 0, topMargin(restoredList.getChildAt(0)));
+    }
+
+    private RecyclerView showIn(MainActivity activity, int orientation) {
+        activity.setRequestedOrientation(orientation);
+        getInstrumentation().waitForIdleSync();
+        return waitForRows(mRecreated != null ? mRecreated : activity);
+    }
+
+    private RecyclerView rotate(final RecyclerView list, final int orientation) {
+        mRecreated = null;
+        list.post(new Runnable() {
+            @Override
+            public void run() {
+                ((Activity) list.getContext()).setRequestedOrientation(orientation);
+            }
+        });
+        new PollingCheck(5000) {
+            @Override
+            protected boolean check() {
+                return mRecreated != null;
+            }
+        }.run();
+        return waitForRows(mRecreated);
+    }
+
+    private RecyclerView waitForRows(Activity activity) {
+        final RecyclerView list = (RecyclerView) activity.findViewById(R.id.recyclerview_forecast);
+        assertNotNull(list);
+        new PollingCheck(5000) {
+            @Override
+            protected boolean check() {
+                return list.getChildCount() > 0;
+            }
+        }.run();
+        getInstrumentation().waitForIdleSync();
+        return list;
+    }
+
+    private static int topMargin(View view) {
+        return ((ViewGroup.MarginLayoutParams) view.getLayoutParams()).topMargin;
+    }
+}
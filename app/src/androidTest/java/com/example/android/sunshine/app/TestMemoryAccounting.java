@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.ContentProviderClient;
+import android.database.Cursor;
+import android.test.ActivityInstrumentationTestCase2;
+
+import com.example.android.sunshine.app.activity.MainActivity;
+import com.example.android.sunshine.app.data.WeatherContract;
+import com.example.android.sunshine.app.utils.PollingCheck;
+
+public class TestMemoryAccounting extends ActivityInstrumentationTestCase2<MainActivity> {
+
+    public TestMemoryAccounting() {
+        super(MainActivity.class);
+    }
+
+    /*
+        The forecast list queries through its loader; once the activity and its fragment are
+        gone, no cursor may be left open, and none may have leaked.
+     */
+    public void testCursorsAreClosedAfterFragmentTeardown() {
+        final int queried = MemoryAccounting.getQueriedCursorCount();
+        final int leaked = MemoryAccounting.getLeakedCursorCount();
+        MainActivity activity = getActivity();
+        new PollingCheck(5000) {
+            @Override
+            protected boolean check() {
+                return MemoryAccounting.getQueriedCursorCount() > queried;
+            }
+        }.run();
+
+        activity.finish();
+        setActivity(null);
+        new PollingCheck(5000) {
+            @Override
+            protected boolean check() {
+                return MemoryAccounting.getOpenCursorCount() == 0
+                    && MemoryAccounting.getWindowedCursorCount() == 0;
+            }
+        }.run();
+        collectGarbage();
+        assertEquals("Error: cursors were never closed", leaked, MemoryAccounting.getLeakedCursorCount());
+    }
+
+    public void testDroppedCursorIsReportedAsLeaked() {
+        final int leaked = MemoryAccounting.getLeakedCursorCount();
+        int open = MemoryAccounting.getOpenCursorCount();
+        queryAndDrop();
+        assertEquals(open + 1, MemoryAccounting.getOpenCursorCount());
+        new PollingCheck(5000) {
+            @Override
+            protected boolean check() {
+                collectGarbage();
+                return MemoryAccounting.getLeakedCursorCount() == leaked + 1;
+            }
+        }.run();
+        assertEquals(open, MemoryAccounting.getOpenCursorCount());
+    }
+
+    // Queries the provider directly, so no resolver wrapper outlives the cursor.
+    private void queryAndDrop() {
+        ContentProviderClient client = getInstrumentation().getTargetContext().getContentResolver()
+            .acquireContentProviderClient(WeatherContract.CONTENT_AUTHORITY);
+        try {
+            Cursor cursor = client.getLocalContentProvider().query(WeatherContract.LocationEntry.CONTENT_URI,
+                null, null, null, null);
+            cursor.getCount();
+        } finally {
+            client.release();
+        }
+    }
+
+    private static void collectGarbage() {
+        Runtime.getRuntime().gc();
+        Runtime.getRuntime().runFinalization();
+        Runtime.getRuntime().gc();
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.test.ActivityInstrumentationTestCase2;
+import android.util.Log;
+
+import com.bumptech.glide.Glide;
+import com.example.android.sunshine.app.activity.MainActivity;
+import com.example.android.sunshine.app.utils.PollingCheck;
+
+public class TestMemoryPressure extends ActivityInstrumentationTestCase2<MainActivity> {
+
+    public static final String LOG_TAG = TestMemoryPressure.class.getSimpleName();
+
+    private static final int[] ART = {
+        R.drawable.art_clear, R.drawable.art_clouds, R.drawable.art_fog, R.drawable.art_light_clouds,
+        R.drawable.art_light_rain, R.drawable.art_rain, R.drawable.art_snow, R.drawable.art_storm
+    };
+    private static final int ART_SIZE = 512;
+
+    private static final int[] LEVELS = {
+        ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE,
+        ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW,
+        ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN,
+        ComponentCallbacks2.TRIM_MEMORY_BACKGROUND,
+        ComponentCallbacks2.TRIM_MEMORY_MODERATE,
+        ComponentCallbacks2.TRIM_MEMORY_COMPLETE
+    };
+
+    public TestMemoryPressure() {
+        super(MainActivity.class);
+    }
+
+    /*
+        Shows the list, so the formatter and view pool fill up, decodes the local art into
+        Glide's caches, then steps through the trim levels, as a process sinking down the LRU
+        list would see them. Once everything is released, the heap has to be smaller.
+     */
+    public void testTrimLevelsShrinkTheHeap() throws Throwable {
+        getActivity();
+        final Context context = getInstrumentation().getTargetContext();
+        new PollingCheck(5000) {
+            @Override
+            protected boolean check() {
+                return ForecastViewPool.getInstance(context).getInflationCount() > 0;
+            }
+        }.run();
+        getInstrumentation().waitForIdleSync();
+        for (int resource : ART) {
+            Glide.with(context).load(resource).into(ART_SIZE, ART_SIZE).get();
+        }
+        assertTrue("Error: the art wasn't cached", MemoryAccounting.getImageCacheBytes() > 0);
+
+        long filled = usedHeap();
+        for (final int level : LEVELS) {
+            runTestOnUiThread(new Runnable() {
+                @Override
+                public void run() {
+                    MemoryPressure.onTrimMemory(level);
+                }
+            });
+            Log.i(LOG_TAG, "Used heap after trim level " + level + ": " + usedHeap() / 1024 + " KB");
+        }
+        long trimmed = usedHeap();
+        Log.i(LOG_TAG, "Used heap went from " + filled / 1024 + " KB to " + trimmed / 1024 + " KB");
+
+        assertEquals("Error: images were kept", 0, MemoryAccounting.getImageCacheBytes());
+        assertNull("Error: pooled views were kept",
+            ForecastViewPool.getInstance(context).getRecycledViewPool()
+                .getRecycledView(ForecastAdapter.VIEW_TYPE_TODAY));
+        assertTrue("Error: the heap didn't shrink", trimmed < filled);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        runtime.gc();
+        runtime.runFinalization();
+        runtime.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
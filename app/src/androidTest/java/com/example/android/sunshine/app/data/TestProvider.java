@@ -27,9 +27,20 @@ import android.os.Build;
 import android.test.AndroidTestCase;
 import android.util.Log;
 
+import com.example.android.sunshine.app.data.WeatherContract.ExportEntry;
 import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.data.WeatherContract.SyncEntry;
 import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
 
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
 /*
     Note: This is not a complete set of tests of the Sunshine ContentProvider, but it does test
     that at least the basic functionality has been implemented correctly.
@@ -512,4 +523,157 @@ public class TestProvider extends AndroidTestCase {
         }
         cursor.close();
     }
+
+    /*
+        This test checks that bulk inserting weather maintains the per-location sync metadata
+        in the same transaction, and that the sync route exposes it.
+     */
+    public void testBulkInsertUpdatesSyncState() {
+        ContentValues testValues = TestUtilities.createNorthPoleLocationValues();
+        Uri locationUri = mContext.getContentResolver().insert(LocationEntry.CONTENT_URI, testValues);
+        long locationRowId = ContentUris.parseId(locationUri);
+
+        // A location that was never ingested still has a row, with empty metadata.
+        Uri syncUri = SyncEntry.buildSyncLocation(TestUtilities.TEST_LOCATION);
+        Cursor cursor = mContext.getContentResolver().query(syncUri, null, null, null, null);
+        assertTrue("Error: No sync row for a stored location", cursor.moveToFirst());
+        assertTrue("Error: Sync metadata set before any ingest",
+                cursor.isNull(cursor.getColumnIndex(SyncEntry.COLUMN_VERSION)));
+        cursor.close();
+
+        // Imported rows maintain the horizon and version, but were never fetched.
+        ContentValues[] bulkInsertContentValues = createBulkInsertWeatherValues(locationRowId);
+        mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI, bulkInsertContentValues);
+
+        cursor = mContext.getContentResolver().query(syncUri, null, null, null, null);
+        assertTrue("Error: No sync row after bulk insert", cursor.moveToFirst());
+        long lastDate = WeatherContract.normalizeDate(bulkInsertContentValues[BULK_INSERT_RECORDS_TO_INSERT - 1]
+                .getAsLong(WeatherEntry.COLUMN_DATE));
+        assertEquals("Error: Sync horizon is not the last date inserted",
+                lastDate, cursor.getLong(cursor.getColumnIndex(SyncEntry.COLUMN_HORIZON)));
+        assertEquals("Error: Sync last fetch time was set by rows not fetched",
+                0, cursor.getLong(cursor.getColumnIndex(SyncEntry.COLUMN_LAST_FETCH)));
+        assertEquals(1, cursor.getInt(cursor.getColumnIndex(SyncEntry.COLUMN_VERSION)));
+        cursor.close();
+
+        // A fetch stamps the last fetch time.
+        long before = System.currentTimeMillis();
+        mContext.getContentResolver().bulkInsert(WeatherEntry.buildFetchedWeatherUri(), bulkInsertContentValues);
+        cursor = mContext.getContentResolver().query(syncUri, null, null, null, null);
+        assertTrue(cursor.moveToFirst());
+        assertTrue("Error: Sync last fetch time was not updated",
+                cursor.getLong(cursor.getColumnIndex(SyncEntry.COLUMN_LAST_FETCH)) >= before);
+        assertEquals(2, cursor.getInt(cursor.getColumnIndex(SyncEntry.COLUMN_VERSION)));
+        cursor.close();
+
+        // Deleting the forecast resets the horizon and bumps the version.
+        mContext.getContentResolver().delete(WeatherEntry.CONTENT_URI, null, null);
+        cursor = mContext.getContentResolver().query(syncUri, null, null, null, null);
+        assertTrue(cursor.moveToFirst());
+        assertEquals(0, cursor.getLong(cursor.getColumnIndex(SyncEntry.COLUMN_HORIZON)));
+        assertEquals(3, cursor.getInt(cursor.getColumnIndex(SyncEntry.COLUMN_VERSION)));
+        cursor.close();
+    }
+
+    private int getSyncVersion(String locationSetting) {
+        Cursor cursor = mContext.getContentResolver().query(
+                SyncEntry.buildSyncLocation(locationSetting), null, null, null, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getInt(cursor.getColumnIndex(SyncEntry.COLUMN_VERSION));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /*
+        This test checks that deleting or updating the weather of one location only bumps the
+        sync version of that location.
+     */
+    public void testWeatherChangesOnlyVersionTheirLocation() {
+        long northPoleId = TestUtilities.insertNorthPoleLocationValues(mContext);
+        ContentValues otherLocation = TestUtilities.createNorthPoleLocationValues();
+        otherLocation.put(LocationEntry.COLUMN_LOCATION_SETTING, "94043");
+        long otherId = ContentUris.parseId(
+                mContext.getContentResolver().insert(LocationEntry.CONTENT_URI, otherLocation));
+        mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI, createBulkInsertWeatherValues(northPoleId));
+        mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI, createBulkInsertWeatherValues(otherId));
+        assertEquals(1, getSyncVersion(TestUtilities.TEST_LOCATION));
+        assertEquals(1, getSyncVersion("94043"));
+
+        ContentValues update = new ContentValues();
+        update.put(WeatherEntry.COLUMN_MAX_TEMP, 42);
+        mContext.getContentResolver().update(WeatherEntry.CONTENT_URI, update,
+                WeatherEntry.COLUMN_LOC_KEY + " = ?", new String[]{Long.toString(northPoleId)});
+        assertEquals(2, getSyncVersion(TestUtilities.TEST_LOCATION));
+        assertEquals("Error: an update versioned another location", 1, getSyncVersion("94043"));
+
+        mContext.getContentResolver().delete(WeatherEntry.CONTENT_URI,
+                WeatherEntry.COLUMN_LOC_KEY + " = ?", new String[]{Long.toString(northPoleId)});
+        assertEquals(3, getSyncVersion(TestUtilities.TEST_LOCATION));
+        assertEquals("Error: a delete versioned another location", 1, getSyncVersion("94043"));
+    }
+
+    private List<String> readExport(Uri exportUri) throws IOException {
+        List<String> lines = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                mContext.getContentResolver().openInputStream(exportUri), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+
+    /*
+        This test checks that the export route streams the stored forecasts through a pipe,
+        in both formats, and that the location and date filters apply.
+     */
+    public void testExport() throws IOException, JSONException {
+        ContentValues testValues = TestUtilities.createNorthPoleLocationValues();
+        Uri locationUri = mContext.getContentResolver().insert(LocationEntry.CONTENT_URI, testValues);
+        long locationRowId = ContentUris.parseId(locationUri);
+        ContentValues[] bulkInsertContentValues = createBulkInsertWeatherValues(locationRowId);
+        mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI, bulkInsertContentValues);
+
+        Uri csvUri = ExportEntry.buildExportUri(ExportEntry.FORMAT_CSV, null, 0, 0);
+        assertEquals(ExportEntry.CSV_MIME_TYPE, mContext.getContentResolver().getType(csvUri));
+        List<String> csv = readExport(csvUri);
+        // A header line, then one line per row.
+        assertEquals(BULK_INSERT_RECORDS_TO_INSERT + 1, csv.size());
+        assertTrue("Error: CSV row does not start with the location setting",
+                csv.get(1).startsWith(TestUtilities.TEST_LOCATION + ","));
+
+        long firstDate = bulkInsertContentValues[0].getAsLong(WeatherEntry.COLUMN_DATE);
+        long thirdDate = bulkInsertContentValues[2].getAsLong(WeatherEntry.COLUMN_DATE);
+        Uri ndjsonUri = ExportEntry.buildExportUri(ExportEntry.FORMAT_NDJSON,
+                TestUtilities.TEST_LOCATION, firstDate, thirdDate);
+        List<String> ndjson = readExport(ndjsonUri);
+        assertEquals(3, ndjson.size());
+        JSONObject row = new JSONObject(ndjson.get(0));
+        assertEquals(TestUtilities.TEST_LOCATION, row.getString(LocationEntry.COLUMN_LOCATION_SETTING));
+        assertEquals(WeatherContract.normalizeDate(firstDate), row.getLong(WeatherEntry.COLUMN_DATE));
+
+        assertEquals(0, readExport(ExportEntry.buildExportUri(ExportEntry.FORMAT_NDJSON, "nowhere", 0, 0)).size());
+    }
+
+    /*
+        A malformed date parameter has to fail the call, not the writer thread, which would
+        take the provider's process down with it.
+     */
+    public void testExportRejectsMalformedDates() throws IOException {
+        Uri malformedUri = ExportEntry.CONTENT_URI.buildUpon()
+                .appendQueryParameter(ExportEntry.PARAM_START_DATE, "yesterday").build();
+        try {
+            readExport(malformedUri);
+            fail("Error: an export with a malformed start date was accepted");
+        } catch (IllegalArgumentException expected) {
+        }
+        // The provider is still there to serve the next export.
+        assertEquals(1, readExport(ExportEntry.buildExportUri(ExportEntry.FORMAT_CSV, null, 0, 0)).size());
+    }
 }
@@ -36,6 +36,12 @@ public class TestUriMatcher extends AndroidTestCase {
     private static final Uri TEST_WEATHER_WITH_LOCATION_AND_DATE_DIR = WeatherContract.WeatherEntry.buildWeatherLocationWithDate(LOCATION_QUERY, TEST_DATE);
     // content://com.example.android.sunshine.app/location"
     private static final Uri TEST_LOCATION_DIR = WeatherContract.LocationEntry.CONTENT_URI;
+    // content://com.example.android.sunshine.app/sync"
+    private static final Uri TEST_SYNC_DIR = WeatherContract.SyncEntry.CONTENT_URI;
+    private static final Uri TEST_SYNC_WITH_LOCATION_DIR = WeatherContract.SyncEntry.buildSyncLocation(LOCATION_QUERY);
+    // content://com.example.android.sunshine.app/export?format=csv&location=London%2C%20UK"
+    private static final Uri TEST_EXPORT = WeatherContract.ExportEntry.buildExportUri(
+            WeatherContract.ExportEntry.FORMAT_CSV, LOCATION_QUERY, 0, 0);
 
     /*
         Students: This function tests that your UriMatcher returns the correct integer value
@@ -53,5 +59,11 @@ public class TestUriMatcher extends AndroidTestCase {
                 testMatcher.match(TEST_WEATHER_WITH_LOCATION_AND_DATE_DIR), WeatherProvider.WEATHER_WITH_LOCATION_AND_DATE);
         assertEquals("Error: The LOCATION URI was matched incorrectly.",
                 testMatcher.match(TEST_LOCATION_DIR), WeatherProvider.LOCATION);
+        assertEquals("Error: The SYNC URI was matched incorrectly.",
+                testMatcher.match(TEST_SYNC_DIR), WeatherProvider.SYNC);
+        assertEquals("Error: The SYNC WITH LOCATION URI was matched incorrectly.",
+                testMatcher.match(TEST_SYNC_WITH_LOCATION_DIR), WeatherProvider.SYNC_WITH_LOCATION);
+        assertEquals("Error: The EXPORT URI was matched incorrectly.",
+                testMatcher.match(TEST_EXPORT), WeatherProvider.EXPORT);
     }
 }
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.database.Cursor;
+import android.net.Uri;
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.LargeTest;
+import android.util.Log;
+
+import com.example.android.sunshine.app.BuildConfig;
+import com.example.android.sunshine.app.data.WeatherContract;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+public class TestForecastArchiveImporter extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestForecastArchiveImporter.class.getSimpleName();
+
+    static final long TEST_DATE = 1419033600000L;  // December 20th, 2014
+    static final long DAY_IN_MILLIS = 1000 * 60 * 60 * 24;
+
+    private File mArchive;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        deleteAllRecords();
+        mArchive = new File(mContext.getCacheDir(), "test_archive.csv");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mArchive.delete();
+        deleteAllRecords();
+        super.tearDown();
+    }
+
+    private void deleteAllRecords() {
+        mContext.getContentResolver().delete(WeatherContract.WeatherEntry.CONTENT_URI, null, null);
+        mContext.getContentResolver().delete(WeatherContract.LocationEntry.CONTENT_URI, null, null);
+    }
+
+    /**
+     * Writes locations x days records, one line per (location, day).
+     *
+     * @return the size of the archive in bytes
+     */
+    static long writeArchive(File archive, int locations, int days) throws IOException {
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(archive), 1 << 16);
+        try {
+            out.write("# location_setting,city_name,coord_lat,coord_long,date,weather_id,short_desc,min,max,humidity,pressure,wind,degrees\n".getBytes());
+            for (int day = 0; day < days; day++) {
+                for (int location = 0; location < locations; location++) {
+                    String line = (10000 + location) + ",City " + location + ",37.39,-122.08,"
+                        + (TEST_DATE + day * DAY_IN_MILLIS) + ",800,Clear,"
+                        + (day % 20) + ".5," + (day % 20 + 10) + ".25,42,1017.3,3.1,270\n";
+                    out.write(line.getBytes());
+                }
+            }
+        } finally {
+            out.close();
+        }
+        return archive.length();
+    }
+
+    private int countRows(Uri uri) {
+        Cursor cursor = mContext.getContentResolver().query(uri, null, null, null, null);
+        int count = cursor.getCount();
+        cursor.close();
+        return count;
+    }
+
+    public void testImportCreatesLocationsAndWeather() throws IOException {
+        writeArchive(mArchive, 3, 10);
+        ForecastArchiveImporter importer = new ForecastArchiveImporter(mContext);
+        importer.setChunkSize(7);
+
+        assertEquals(30, importer.importArchive(mArchive, null));
+        assertEquals(3, countRows(WeatherContract.LocationEntry.CONTENT_URI));
+        assertEquals(30, countRows(WeatherContract.WeatherEntry.CONTENT_URI));
+    }
+
+    public void testImportResumesAfterInterruption() throws IOException {
+        writeArchive(mArchive, 2, 50);
+        ForecastArchiveImporter importer = new ForecastArchiveImporter(mContext);
+        importer.setChunkSize(10);
+
+        try {
+            importer.importArchive(mArchive, new ForecastArchiveImporter.ProgressListener() {
+                @Override
+                public void onProgress(long bytesDone, long bytesTotal, long recordsImported) {
+                    if (recordsImported >= 30) throw new IllegalStateException("interrupted");
+                }
+            });
+            fail("Error: the import was not interrupted");
+        } catch (IllegalStateException expected) {
+        }
+        assertEquals(30, countRows(WeatherContract.WeatherEntry.CONTENT_URI));
+
+        // The second run only imports what the first one didn't commit.
+        assertEquals(70, importer.importArchive(mArchive, null));
+        assertEquals(100, countRows(WeatherContract.WeatherEntry.CONTENT_URI));
+    }
+
+    /*
+        Throughput benchmark over a multi-hundred-megabyte archive, into the app's database.
+        It takes minutes, so it only runs in builds made with -Pbenchmark. Results are logged.
+     */
+    @LargeTest
+    public void testImportThroughput() throws IOException {
+        if (!BuildConfig.BENCHMARK) {
+            Log.i(LOG_TAG, "testImportThroughput skipped, build with -Pbenchmark to run it.");
+            return;
+        }
+        // About 100 bytes per line: 100 locations x 30000 days is roughly 300MB.
+        long bytes = writeArchive(mArchive, 100, 30000);
+        ForecastArchiveImporter importer = new ForecastArchiveImporter(mContext);
+
+        long start = System.nanoTime();
+        long records = importer.importArchive(mArchive, null);
+        long elapsedMs = (System.nanoTime() - start) / 1000000;
+
+        assertEquals(100L * 30000, records);
+        Log.i(LOG_TAG, "Imported " + records + " records (" + bytes / (1024 * 1024) + " MB) in "
+            + elapsedMs + " ms: " + (records * 1000 / Math.max(1, elapsedMs)) + " records/s, "
+            + (bytes * 1000 / (1024 * 1024) / Math.max(1, elapsedMs)) + " MB/s.");
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.widget;
+
+import android.content.SharedPreferences;
+import android.database.MatrixCursor;
+import android.preference.PreferenceManager;
+import android.test.AndroidTestCase;
+import android.util.Log;
+import android.widget.RemoteViews;
+
+import com.example.android.sunshine.app.ForecastSnapshot;
+import com.example.android.sunshine.app.R;
+import com.example.android.sunshine.app.SettingsStore;
+import com.example.android.sunshine.app.SunshineSettings;
+import com.example.android.sunshine.app.data.WeatherContract;
+import com.example.android.sunshine.app.utils.PollingCheck;
+
+public class TestForecastWidgetUpdater extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestForecastWidgetUpdater.class.getSimpleName();
+
+    private static final long TEST_DATE = 1419033600000L;  // December 20th, 2014
+    private static final int NOTIFICATIONS = 50;
+    private static final int BUILDS = 100;
+    // A single 40dp icon bitmap at xxhdpi, 120 by 120 pixels of 4 bytes.
+    private static final int ICON_BITMAP_BYTES = 120 * 120 * 4;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        // As the first widget placed does. Observing twice must not double the updates.
+        ForecastWidgetUpdater.startObserving(mContext);
+        ForecastWidgetUpdater.startObserving(mContext);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (!ForecastWidgetUpdater.hasWidgets(mContext)) {
+            ForecastWidgetUpdater.stopObserving(mContext);
+        }
+        super.tearDown();
+    }
+
+    /*
+        While widgets are placed the weather table is observed; a burst of notifications, as a
+        sync sends them, has to end up as a single update.
+     */
+    public void testBurstOfNotificationsIsOneUpdate() throws InterruptedException {
+        final ForecastWidgetUpdater updater = ForecastWidgetUpdater.getInstance(mContext);
+        final int updates = updater.getUpdateCount();
+        for (int i = 0; i < NOTIFICATIONS; i++) {
+            mContext.getContentResolver().notifyChange(WeatherContract.WeatherEntry.CONTENT_URI, null);
+        }
+        new PollingCheck(5000) {
+            @Override
+            protected boolean check() {
+                return updater.getUpdateCount() > updates;
+            }
+        }.run();
+        Thread.sleep(2 * ForecastWidgetUpdater.COALESCE_MILLIS);
+        assertEquals("Error: the burst was not coalesced", updates + 1, updater.getUpdateCount());
+        assertTrue(updater.getLastCoalescedRequests() >= NOTIFICATIONS);
+        Log.i(LOG_TAG, "Update latency after the first notification: "
+            + updater.getLastLatencyMillis() + " ms (0 without widgets).");
+    }
+
+    /*
+        Switching units changes every temperature shown, without any change to the stored data.
+     */
+    public void testUnitsChangeUpdates() {
+        final ForecastWidgetUpdater updater = ForecastWidgetUpdater.getInstance(mContext);
+        final int updates = updater.getUpdateCount();
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(mContext);
+        String key = mContext.getString(R.string.pref_units_key);
+        String metric = mContext.getString(R.string.pref_units_metric);
+        String units = prefs.getString(key, metric);
+        try {
+            // Anything but metric reads as imperial.
+            prefs.edit().putString(key, units.equals(metric) ? "imperial" : metric).commit();
+            new PollingCheck(5000) {
+                @Override
+                protected boolean check() {
+                    return updater.getUpdateCount() > updates;
+                }
+            }.run();
+        } finally {
+            prefs.edit().putString(key, units).commit();
+        }
+    }
+
+    public void testPayloadOfAFullWidget() {
+        MatrixCursor cursor = new MatrixCursor(new String[]{"date", "weather_id", "max", "min"});
+        for (int i = 0; i < ForecastWidgetUpdater.DAYS; i++) {
+            cursor.addRow(new Object[]{TEST_DATE + i * 86400000L, 800 + i, 20.5 + i, 10.25 - i});
+        }
+        ForecastSnapshot rows = ForecastSnapshot.read(cursor, 0, 1, 2, 3, ForecastWidgetUpdater.DAYS);
+        cursor.close();
+        assertEquals(ForecastWidgetUpdater.DAYS, rows.size());
+
+        ForecastWidgetUpdater updater = ForecastWidgetUpdater.getInstance(mContext);
+        SunshineSettings settings = SettingsStore.getInstance(mContext).getSettings();
+        RemoteViews views = updater.buildViews(settings, rows);
+        long start = System.nanoTime();
+        for (int i = 0; i < BUILDS; i++) {
+            views = updater.buildViews(settings, rows);
+        }
+        long buildMicros = (System.nanoTime() - start) / 1000 / BUILDS;
+        int payloadBytes = ForecastWidgetUpdater.parceledSize(views);
+        Log.i(LOG_TAG, "Widget of " + rows.size() + " days: " + payloadBytes + " bytes, built in "
+            + buildMicros + " us.");
+        assertTrue("Error: the views cost more than an icon bitmap: " + payloadBytes,
+            payloadBytes < ICON_BITMAP_BYTES);
+        assertEquals(ForecastWidgetUpdater.parceledSize(views),
+            ForecastWidgetUpdater.parceledSize(updater.buildViews(settings, rows)));
+    }
+}
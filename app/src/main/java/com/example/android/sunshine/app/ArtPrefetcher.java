@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.widget.ImageView;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.resource.drawable.GlideDrawable;
+import com.bumptech.glide.request.RequestListener;
+import com.bumptech.glide.request.animation.GlideAnimation;
+import com.bumptech.glide.request.target.SimpleTarget;
+
+/**
+ * Loads condition artwork for the forecast list, and keeps the art of the active pack decoded
+ * in Glide's memory cache ahead of binds. Every load is made at the same fixed size and
+ * transformation, so the prefetched images are exactly what binds ask for.
+ *
+ * Also records whether each of the list's loads hit the memory cache, and its time from bind
+ * to image, in {@link Diagnostics}.
+ */
+public class ArtPrefetcher {
+
+    public static final String LOG_TAG = "Sunshine";
+
+    private final Context mContext;
+    private final int mSize;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private String mWarmFormat;
+
+    /**
+     * @param size width and height in pixels the art is loaded at; the largest the icon gets
+     */
+    public ArtPrefetcher(Context context, int size) {
+        mContext = context;
+        mSize = size;
+    }
+
+    /**
+     * Prefetches every artwork of an art pack, once per pack.
+     */
+    public void warmUp(String formatArtUrl) {
+        if (formatArtUrl.equals(mWarmFormat)) return;
+        mWarmFormat = formatArtUrl;
+        for (String url : WeatherConditions.getArtUrls(formatArtUrl)) {
+            prefetch(url);
+        }
+    }
+
+    /**
+     * Forgets which art pack was prefetched, after the memory cache was trimmed, so the next
+     * {@link #warmUp(String)} prefetches it again.
+     */
+    public void reset() {
+        mWarmFormat = null;
+    }
+
+    /**
+     * Decodes an artwork into the memory cache, unless it is there already.
+     */
+    public void prefetch(String url) {
+        if (url == null) return;
+        Glide.with(mContext)
+            .load(url)
+            .override(mSize, mSize)
+            .fitCenter()
+            .into(new PreloadTarget());
+    }
+
+    public void load(String url, int errorResource, ImageView view,
+        RequestListener<String, GlideDrawable> listener) {
+        Glide.with(mContext)
+            .load(url)
+            .override(mSize, mSize)
+            .fitCenter()
+            .error(errorResource)
+            .crossFade()
+            .listener(listener)
+            .into(view);
+    }
+
+    /**
+     * Records a finished load.
+     *
+     * @param millis time from the bind that requested the image to the image being ready
+     */
+    public void recordLoad(boolean fromMemoryCache, long millis) {
+        Diagnostics.record(Diagnostics.ART_LOAD, fromMemoryCache ? 1 : 0, millis * 1000);
+    }
+
+    // Releases its image once loaded so that it moves to the memory cache, where a bind will
+    // find it. Released on the next message, as a request can't be cleared from its callback.
+    private class PreloadTarget extends SimpleTarget<GlideDrawable> implements Runnable {
+        PreloadTarget() {
+            super(mSize, mSize);
+        }
+
+        @Override
+        public void onResourceReady(GlideDrawable resource, GlideAnimation<? super GlideDrawable> animation) {
+            mHandler.post(this);
+        }
+
+        @Override
+        public void run() {
+            Glide.clear(this);
+        }
+    }
+}
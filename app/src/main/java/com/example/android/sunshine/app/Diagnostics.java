@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.os.SystemClock;
+
+import java.io.PrintWriter;
+
+/**
+ * The app's diagnostics events: the last few thousand loads, provider calls, list refreshes and
+ * location changes, kept in memory so they can be dumped from a device after a slowdown report
+ * without verbose logging:
+ *
+ *     adb shell dumpsys activity com.example.android.sunshine.app/.activity.MainActivity
+ *     adb shell dumpsys activity provider com.example.android.sunshine.app
+ *
+ * Recording is lock-free and allocation-free, so it is safe on the hot paths.
+ */
+public final class Diagnostics {
+
+    public static final int CAPACITY = 4096;
+
+    // Event types, and what their two arguments hold.
+    /** A forecast load started; no arguments. */
+    public static final int LOAD_START = 0;
+    /** A forecast load finished: row count, duration in microseconds. */
+    public static final int LOAD_FINISH = 1;
+    /** A provider query: route, duration in microseconds. */
+    public static final int PROVIDER_QUERY = 2;
+    /** A provider insert: route, duration in microseconds. */
+    public static final int PROVIDER_INSERT = 3;
+    /** A provider bulk insert: route, duration in microseconds. */
+    public static final int PROVIDER_BULK_INSERT = 4;
+    /** A provider update: route, duration in microseconds. */
+    public static final int PROVIDER_UPDATE = 5;
+    /** A provider delete: route, duration in microseconds. */
+    public static final int PROVIDER_DELETE = 6;
+    /** A provider export: route, duration in microseconds. */
+    public static final int PROVIDER_EXPORT = 7;
+    /** The forecast list was given new rows: previous row count, new row count. */
+    public static final int LIST_SWAP = 8;
+    /** The preferred location changed: hash code of the new location setting. */
+    public static final int LOCATION_CHANGE = 9;
+    /** Caches were released under memory pressure: trim level, tier released. */
+    public static final int MEMORY_TRIM = 10;
+    /** The Muzei art source updated: outcome (skipped, from cache, downloaded, failed), duration in microseconds. */
+    public static final int ART_SOURCE_UPDATE = 11;
+    /** The widgets were updated: bytes of views sent, microseconds since the first request. */
+    public static final int WIDGET_UPDATE = 12;
+    /** A list row's art was shown: 1 if it came from the memory cache, microseconds since the bind. */
+    public static final int ART_LOAD = 13;
+    /** A list refresh was laid out: rows rebound, microseconds of main thread time. */
+    public static final int LIST_REFRESH = 14;
+
+    private static final String[] TYPE_NAMES = {
+        "load_start",
+        "load_finish",
+        "provider_query",
+        "provider_insert",
+        "provider_bulk_insert",
+        "provider_update",
+        "provider_delete",
+        "provider_export",
+        "list_swap",
+        "location_change",
+        "memory_trim",
+        "art_source_update",
+        "widget_update",
+        "art_load",
+        "list_refresh"
+    };
+
+    private static final EventRing sEvents = new EventRing(CAPACITY);
+
+    private Diagnostics() {}
+
+    public static void record(int type, long arg1, long arg2) {
+        sEvents.record(SystemClock.elapsedRealtime(), type, arg1, arg2);
+    }
+
+    /**
+     * Records the end of a timed operation started at {@code startNanos}, from
+     * {@link System#nanoTime()}, with the duration as the second argument.
+     */
+    public static void recordTimed(int type, long arg1, long startNanos) {
+        record(type, arg1, (System.nanoTime() - startNanos) / 1000);
+    }
+
+    /**
+     * Prints the recorded events, oldest first, with their age relative to now.
+     */
+    public static void dump(final String prefix, final PrintWriter writer) {
+        final long now = SystemClock.elapsedRealtime();
+        writer.print(prefix);
+        writer.println("Diagnostics events (age in ms, type, arguments):");
+        int count = sEvents.read(new EventRing.Visitor() {
+            @Override
+            public void onEvent(long time, int type, long arg1, long arg2) {
+                writer.print(prefix);
+                writer.print("  -");
+                writer.print(now - time);
+                writer.print(' ');
+                writer.print(type >= 0 && type < TYPE_NAMES.length ? TYPE_NAMES[type] : Integer.toString(type));
+                writer.print(' ');
+                writer.print(arg1);
+                writer.print(' ');
+                writer.println(arg2);
+            }
+        });
+        writer.print(prefix);
+        writer.print(count);
+        writer.print(" of at most ");
+        writer.print(CAPACITY);
+        writer.println(" events.");
+    }
+}
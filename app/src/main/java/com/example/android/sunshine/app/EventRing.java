@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size ring of the most recent events, each a time, a type and two numeric arguments.
+ * Any number of threads can record without locking or allocating: a writer claims a slot with
+ * one atomic increment and publishes it with ordered stores, and overwrites the oldest event
+ * once the ring is full. Readers never block writers; an event overwritten while being read is
+ * skipped. Writers only race each other if one laps the whole ring while another is writing.
+ */
+public class EventRing {
+
+    /**
+     * Receives the events of a ring, oldest first.
+     */
+    public interface Visitor {
+        void onEvent(long time, int type, long arg1, long arg2);
+    }
+
+    private final int mMask;
+    private final AtomicLong mNext = new AtomicLong();
+    // Sequence number of the event held by each slot, or -1 while it is being written.
+    private final AtomicLongArray mSequences;
+    private final AtomicLongArray mTimes;
+    private final AtomicIntegerArray mTypes;
+    private final AtomicLongArray mArgs1;
+    private final AtomicLongArray mArgs2;
+
+    /**
+     * @param capacity number of events kept, a power of two
+     */
+    public EventRing(int capacity) {
+        if (capacity <= 0 || (capacity & (capacity - 1)) != 0) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        mMask = capacity - 1;
+        mSequences = new AtomicLongArray(capacity);
+        mTimes = new AtomicLongArray(capacity);
+        mTypes = new AtomicIntegerArray(capacity);
+        mArgs1 = new AtomicLongArray(capacity);
+        mArgs2 = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            mSequences.set(i, -1);
+        }
+    }
+
+    public int getCapacity() {
+        return mMask + 1;
+    }
+
+    public void record(long time, int type, long arg1, long arg2) {
+        long sequence = mNext.getAndIncrement();
+        int slot = (int) sequence & mMask;
+        mSequences.set(slot, -1);
+        mTimes.lazySet(slot, time);
+        mTypes.lazySet(slot, type);
+        mArgs1.lazySet(slot, arg1);
+        mArgs2.lazySet(slot, arg2);
+        mSequences.lazySet(slot, sequence);
+    }
+
+    /**
+     * Visits the events currently in the ring, oldest first.
+     *
+     * @return the number of events visited
+     */
+    public int read(Visitor visitor) {
+        long end = mNext.get();
+        long start = Math.max(0, end - getCapacity());
+        int visited = 0;
+        for (long sequence = start; sequence < end; sequence++) {
+            int slot = (int) sequence & mMask;
+            if (mSequences.get(slot) != sequence) continue;
+            long time = mTimes.get(slot);
+            int type = mTypes.get(slot);
+            long arg1 = mArgs1.get(slot);
+            long arg2 = mArgs2.get(slot);
+            // Skip events that a writer started replacing while we read them.
+            if (mSequences.get(slot) != sequence) continue;
+            visitor.onEvent(time, type, arg1, arg2);
+            visited++;
+        }
+        return visited;
+    }
+}
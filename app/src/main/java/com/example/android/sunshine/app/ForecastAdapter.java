@@ -16,26 +16,28 @@
 package com.example.android.sunshine.app;
 
 import android.content.Context;
-import android.database.Cursor;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.support.v4.view.ViewCompat;
+import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
 import android.util.Log;
-import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
 import android.widget.ImageView;
 import android.widget.TextView;
 
-import com.bumptech.glide.Glide;
-import com.example.android.sunshine.app.data.WeatherContract;
-import com.example.android.sunshine.app.fragment.ForecastFragment;
+import com.bumptech.glide.load.resource.drawable.GlideDrawable;
+import com.bumptech.glide.request.RequestListener;
+import com.bumptech.glide.request.target.Target;
 
 /**
  * {@link ForecastAdapter} exposes a list of weather forecasts
- * from a {@link android.database.Cursor} to a {@link android.support.v7.widget.RecyclerView}.
+ * from a {@link ForecastSnapshot} to a {@link android.support.v7.widget.RecyclerView}.
  */
-public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapterViewHolder> {
+public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapterViewHolder>
+    implements SelectionStore.PositionLookup, MemoryPressure.Releasable {
 
     //--------------------------------------------------
     // Constants
@@ -43,45 +45,88 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
 
     public static final String LOG_TAG = "Sunshine";
 
+    public static final int VIEW_TYPE_TODAY = 0;
+
+    // Number of rows past the edge of the list whose art is prefetched while scrolling.
+    private static final int ART_PREFETCH_DISTANCE = 3;
+
     //--------------------------------------------------
     // Attributes
     //--------------------------------------------------
 
-    private Cursor mCursor;
-    final private Context mContext;
+    private ForecastSnapshot mSnapshot = ForecastSnapshot.EMPTY;
+    private ForecastFormatter mFormatter;
     final private ForecastAdapterOnClickHandler mClickHandler;
     final private View mEmptyView;
     final private ItemChoiceManager mICM;
+    final private ArtPrefetcher mArtPrefetcher;
+    final private ForecastViewPool mViewPool;
+    // Last position prefetched from while scrolling, to prefetch once per newly shown row.
+    private int mArtPrefetchEdge = RecyclerView.NO_POSITION;
+    private RecyclerView mRecyclerView;
+
+    // Rebinds and main-thread time spent on the latest refresh, recorded once it has been laid out.
+    private boolean mRefreshPending;
+    private int mRefreshBinds;
+    private long mRefreshNanos;
 
     //--------------------------------------------------
     // View Holder
     //--------------------------------------------------
 
     /**
-     * Cache of the children views for a forecast list item.
+     * Cache of the children views for a forecast list item. Holders move between adapters
+     * through the shared {@link ForecastViewPool}, so they only know the adapter that bound them.
      */
-    public class ForecastAdapterViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener {
+    public static class ForecastAdapterViewHolder extends RecyclerView.ViewHolder
+        implements View.OnClickListener, View.OnLongClickListener {
         public final ImageView mIconView;
         public final TextView mHighTempView;
         public final TextView mLowTempView;
+        // The adapter that bound this holder, null while it is in the pool.
+        ForecastAdapter mAdapter;
+        // When the current art load was requested, for the time to image.
+        long mArtRequestTime;
+        // Records the art loads of this row through the prefetcher.
+        final RequestListener<String, GlideDrawable> mArtListener = new RequestListener<String, GlideDrawable>() {
+            @Override
+            public boolean onException(Exception e, String model, Target<GlideDrawable> target,
+                boolean isFirstResource) {
+                return false;
+            }
+
+            @Override
+            public boolean onResourceReady(GlideDrawable resource, String model, Target<GlideDrawable> target,
+                boolean isFromMemoryCache, boolean isFirstResource) {
+                if (null != mAdapter) {
+                    mAdapter.mArtPrefetcher.recordLoad(isFromMemoryCache,
+                        SystemClock.uptimeMillis() - mArtRequestTime);
+                }
+                return false;
+            }
+        };
 
         public ForecastAdapterViewHolder(View view) {
             super(view);
-            Log.i(LOG_TAG, "ForecastAdapter.ForecastAdapterViewHolder().");
             mIconView = (ImageView) view.findViewById(R.id.list_item_icon);
             mHighTempView = (TextView) view.findViewById(R.id.list_item_high_textview);
             mLowTempView = (TextView) view.findViewById(R.id.list_item_low_textview);
             view.setOnClickListener(this);
+            view.setOnLongClickListener(this);
         }
 
         @Override
         public void onClick(View v) {
             Log.i(LOG_TAG, "ForecastAdapter.ForecastAdapterViewHolder().onClick().");
             int adapterPosition = getAdapterPosition();
-            mCursor.moveToPosition(adapterPosition);
-            int dateColumnIndex = mCursor.getColumnIndex(WeatherContract.WeatherEntry.COLUMN_DATE);
-            mClickHandler.onClick(mCursor.getLong(dateColumnIndex), this);
-            mICM.onClick(this);
+            if (adapterPosition == RecyclerView.NO_POSITION || null == mAdapter) return;
+            mAdapter.mClickHandler.onClick(mAdapter.mSnapshot.getDate(adapterPosition), this);
+            mAdapter.mICM.onClick(this);
+        }
+
+        @Override
+        public boolean onLongClick(View v) {
+            return null != mAdapter && mAdapter.mICM.onLongClick(this);
         }
     }
 
@@ -97,13 +142,20 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
     // Constructor
     //--------------------------------------------------
 
-    public ForecastAdapter(Context context, ForecastAdapterOnClickHandler dh, View emptyView, int choiceMode) {
+    public ForecastAdapter(Context context, SunshineSettings settings, ForecastAdapterOnClickHandler dh,
+        View emptyView, int choiceMode) {
         Log.i(LOG_TAG, "ForecastAdapter.ForecastAdapter().");
-        mContext = context;
+        mFormatter = new ForecastFormatter(settings);
         mClickHandler = dh;
         mEmptyView = emptyView;
-        mICM = new ItemChoiceManager(this);
+        mICM = new ItemChoiceManager(this, this);
         mICM.setChoiceMode(choiceMode);
+        mArtPrefetcher = new ArtPrefetcher(context,
+            context.getResources().getDimensionPixelSize(R.dimen.today_icon));
+        mViewPool = ForecastViewPool.getInstance(context);
+        warmUpArt(settings);
+        // Rows are keyed by date, so views survive refreshes that keep their row.
+        setHasStableIds(true);
     }
 
     //--------------------------------------------------
@@ -117,12 +169,11 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
     // of the view tag to store the ItemChoiceManager.
     @Override
     public ForecastAdapterViewHolder onCreateViewHolder(ViewGroup viewGroup, int viewType) {
-        Log.i(LOG_TAG, "ForecastAdapter.onCreateViewHolder().");
         if (viewGroup instanceof RecyclerView) {
-            int layoutId = R.layout.list_item_forecast_today;
-            View view = LayoutInflater.from(viewGroup.getContext()).inflate(layoutId, viewGroup, false);
-            view.setFocusable(true);
-            return new ForecastAdapterViewHolder(view);
+            Tracing.beginSection("ForecastAdapter.onCreateViewHolder");
+            ForecastAdapterViewHolder holder = new ForecastAdapterViewHolder(mViewPool.inflate(viewGroup));
+            Tracing.endSection();
+            return holder;
         } else {
             throw new RuntimeException("Not bound to RecyclerView");
         }
@@ -130,46 +181,78 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
 
     @Override
     public void onBindViewHolder(ForecastAdapterViewHolder forecastAdapterViewHolder, int position) {
-        Log.i(LOG_TAG, "ForecastAdapter.onBindViewHolder().");
-        mCursor.moveToPosition(position);
-        int weatherId = mCursor.getInt(ForecastFragment.COL_WEATHER_CONDITION_ID);
+        Tracing.beginSection("ForecastAdapter.onBindViewHolder");
+        long bindStart = System.nanoTime();
+        forecastAdapterViewHolder.mAdapter = this;
+        int weatherId = mSnapshot.getConditionId(position);
         int defaultImage = Utility.getIconResourceForWeatherCondition(weatherId);
-        if (Utility.usingLocalGraphics(mContext)) {
+        SunshineSettings settings = mFormatter.getSettings();
+        if (settings.usingLocalGraphics) {
             forecastAdapterViewHolder.mIconView.setImageResource(defaultImage);
         } else {
-            Glide.with(mContext)
-                .load(Utility.getArtUrlForWeatherCondition(mContext, weatherId))
-                .error(defaultImage)
-                .crossFade()
-                .into(forecastAdapterViewHolder.mIconView);
+            // Prefetches the pack again after a trim dropped it; a no-op while it is warm.
+            mArtPrefetcher.warmUp(settings.artPackUrlFormat);
+            forecastAdapterViewHolder.mArtRequestTime = SystemClock.uptimeMillis();
+            mArtPrefetcher.load(Utility.getArtUrlForWeatherCondition(settings, weatherId), defaultImage,
+                forecastAdapterViewHolder.mIconView, forecastAdapterViewHolder.mArtListener);
         }
 
         // This enables better animations. even if we lose state due to a device rotation,
         // the animator can use this to re-find the original view.
-        ViewCompat.setTransitionName(forecastAdapterViewHolder.mIconView, "iconView" + position);
+        ViewCompat.setTransitionName(forecastAdapterViewHolder.mIconView, mFormatter.getTransitionName(position));
 
         // For accessibility, we don't want a content description for the icon field because the
         // information is repeated in the description view and the icon is not individually selectable.
 
-        // Read high temperature from cursor.
-        double high = mCursor.getDouble(ForecastFragment.COL_WEATHER_MAX_TEMP);
-        String highString = Utility.formatTemperature(mContext, high);
-        forecastAdapterViewHolder.mHighTempView.setText(highString);
-        forecastAdapterViewHolder.mHighTempView.setContentDescription(mContext.getString(R.string.a11y_high_temp, highString));
+        // Read high temperature from the snapshot.
+        ForecastFormatter.Temperature high = mFormatter.formatTemperature(mSnapshot.getHigh(position));
+        forecastAdapterViewHolder.mHighTempView.setText(high.text);
+        forecastAdapterViewHolder.mHighTempView.setContentDescription(high.highDescription);
 
-        // Read low temperature from cursor.
-        double low = mCursor.getDouble(ForecastFragment.COL_WEATHER_MIN_TEMP);
-        String lowString = Utility.formatTemperature(mContext, low);
-        forecastAdapterViewHolder.mLowTempView.setText(lowString);
-        forecastAdapterViewHolder.mLowTempView.setContentDescription(mContext.getString(R.string.a11y_low_temp, lowString));
+        // Read low temperature from the snapshot.
+        ForecastFormatter.Temperature low = mFormatter.formatTemperature(mSnapshot.getLow(position));
+        forecastAdapterViewHolder.mLowTempView.setText(low.text);
+        forecastAdapterViewHolder.mLowTempView.setContentDescription(low.lowDescription);
 
         mICM.onBindViewHolder(forecastAdapterViewHolder, position);
+        if (mRefreshPending) {
+            mRefreshBinds++;
+            mRefreshNanos += System.nanoTime() - bindStart;
+        }
+        Tracing.endSection();
+    }
+
+    @Override
+    public void onViewRecycled(ForecastAdapterViewHolder holder) {
+        // Pooled holders may be picked up by another list: don't keep this one alive.
+        holder.mAdapter = null;
+    }
+
+    @Override
+    public int getItemViewType(int position) {
+        return VIEW_TYPE_TODAY;
     }
 
     @Override
     public int getItemCount() {
-        if (null == mCursor) return 0;
-        return 1;
+        return mSnapshot.size();
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return mSnapshot.getDate(position);
+    }
+
+    @Override
+    public void onAttachedToRecyclerView(RecyclerView recyclerView) {
+        mRecyclerView = recyclerView;
+        recyclerView.addOnScrollListener(mArtPrefetchListener);
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(RecyclerView recyclerView) {
+        recyclerView.removeOnScrollListener(mArtPrefetchListener);
+        mRecyclerView = null;
     }
 
     //--------------------------------------------------
@@ -191,16 +274,178 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
         return mICM.getSelectedItemPosition();
     }
 
-    public void swapCursor(Cursor newCursor) {
-        Log.i(LOG_TAG, "ForecastAdapter.swapCursor().");
-        mCursor = newCursor;
-        notifyDataSetChanged();
+    public void setMultiChoiceListener(ItemChoiceManager.MultiChoiceListener listener) {
+        mICM.setMultiChoiceListener(listener);
+    }
+
+    /**
+     * @return the dates of the checked rows, in ascending order.
+     */
+    public long[] getCheckedItemIds() {
+        return mICM.getCheckedItemIds();
+    }
+
+    public void setItemsChecked(long[] dates, boolean checked) {
+        mICM.setItemsChecked(dates, checked);
+    }
+
+    public void clearChoices() {
+        mICM.clearChoices();
+    }
+
+    /**
+     * Shows a new snapshot. If a diff against the snapshot shown so far is given, it is applied
+     * as fine-grained updates, so only inserted and changed rows are bound again; otherwise
+     * everything is rebound.
+     *
+     * @param diff updates to {@code snapshot}, or null
+     */
+    public void swapSnapshot(ForecastSnapshot snapshot, ForecastDiff diff) {
+        Log.i(LOG_TAG, "ForecastAdapter.swapSnapshot().");
+        if (null == snapshot) snapshot = ForecastSnapshot.EMPTY;
+        if (snapshot == mSnapshot) return;
+        long start = System.nanoTime();
+        Diagnostics.record(Diagnostics.LIST_SWAP, mSnapshot.size(), snapshot.size());
+        boolean applies = null != diff && diff.getOldSnapshot() == mSnapshot
+            && diff.getNewSnapshot() == snapshot;
+        mSnapshot = snapshot;
+        mICM.onDataSetChanged();
+        if (applies) {
+            diff.dispatchUpdatesTo(mUpdateCallback);
+        } else {
+            notifyDataSetChanged();
+        }
         mEmptyView.setVisibility(getItemCount() == 0 ? View.VISIBLE : View.GONE);
+        startRefreshStats(System.nanoTime() - start);
+    }
+
+    private final ForecastDiff.Callback mUpdateCallback = new ForecastDiff.Callback() {
+        @Override
+        public void onInserted(int position, int count) {
+            notifyItemRangeInserted(position, count);
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            notifyItemRangeRemoved(position, count);
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            notifyItemMoved(fromPosition, toPosition);
+        }
+
+        @Override
+        public void onChanged(int position, int count) {
+            notifyItemRangeChanged(position, count);
+        }
+    };
+
+    // Counts the binds of a refresh until the next frame is about to be drawn, then records them.
+    private void startRefreshStats(long dispatchNanos) {
+        if (mRefreshPending) {
+            recordRefreshStats();
+        }
+        mRefreshPending = true;
+        mRefreshBinds = 0;
+        mRefreshNanos = dispatchNanos;
+        if (null != mRecyclerView) {
+            ViewTreeObserver observer = mRecyclerView.getViewTreeObserver();
+            observer.removeOnPreDrawListener(mRefreshDrawListener);
+            observer.addOnPreDrawListener(mRefreshDrawListener);
+        }
+    }
+
+    private final ViewTreeObserver.OnPreDrawListener mRefreshDrawListener = new ViewTreeObserver.OnPreDrawListener() {
+        @Override
+        public boolean onPreDraw() {
+            if (null != mRecyclerView) {
+                mRecyclerView.getViewTreeObserver().removeOnPreDrawListener(this);
+            }
+            if (mRefreshPending) {
+                recordRefreshStats();
+            }
+            return true;
+        }
+    };
+
+    private void recordRefreshStats() {
+        mRefreshPending = false;
+        Diagnostics.record(Diagnostics.LIST_REFRESH, mRefreshBinds, mRefreshNanos / 1000);
     }
 
-    public Cursor getCursor() {
-        Log.i(LOG_TAG, "ForecastAdapter.getCursor().");
-        return mCursor;
+    private void warmUpArt(SunshineSettings settings) {
+        if (!settings.usingLocalGraphics) {
+            mArtPrefetcher.warmUp(settings.artPackUrlFormat);
+        }
+    }
+
+    // Prefetches the art of the rows about to scroll into view, in the direction of the scroll.
+    private final RecyclerView.OnScrollListener mArtPrefetchListener = new RecyclerView.OnScrollListener() {
+        @Override
+        public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+            SunshineSettings settings = mFormatter.getSettings();
+            if (dy == 0 || settings.usingLocalGraphics
+                || !(recyclerView.getLayoutManager() instanceof LinearLayoutManager)) {
+                return;
+            }
+            LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+            int edge = dy > 0 ? layoutManager.findLastVisibleItemPosition()
+                : layoutManager.findFirstVisibleItemPosition();
+            if (edge == RecyclerView.NO_POSITION || edge == mArtPrefetchEdge) return;
+            mArtPrefetchEdge = edge;
+            int step = dy > 0 ? 1 : -1;
+            for (int i = 1; i <= ART_PREFETCH_DISTANCE; i++) {
+                int position = edge + i * step;
+                if (position < 0 || position >= mSnapshot.size()) break;
+                mArtPrefetcher.prefetch(Utility.getArtUrlForWeatherCondition(settings,
+                    mSnapshot.getConditionId(position)));
+            }
+        }
+    };
+
+    /**
+     * Rebinds the visible rows if the new settings change how they look.
+     */
+    public void setSettings(SunshineSettings settings) {
+        Log.i(LOG_TAG, "ForecastAdapter.setSettings().");
+        if (settings.rendersDifferentlyFrom(mFormatter.getSettings())) {
+            mFormatter = new ForecastFormatter(settings);
+            warmUpArt(settings);
+            notifyDataSetChanged();
+        }
+    }
+
+    /**
+     * Releases the memoized row text from {@link MemoryPressure#TIER_UI} on. Also forgets which
+     * art was prefetched, since the image tiers drop it, so the next bind prefetches it again.
+     */
+    @Override
+    public void release(int tier) {
+        Log.i(LOG_TAG, "ForecastAdapter.release().");
+        mArtPrefetcher.reset();
+        if (tier >= MemoryPressure.TIER_UI) {
+            mFormatter.clear();
+        }
+    }
+
+    public ForecastSnapshot getSnapshot() {
+        Log.i(LOG_TAG, "ForecastAdapter.getSnapshot().");
+        return mSnapshot;
+    }
+
+    // Rows are identified by date.
+    @Override
+    public int getPosition(long id) {
+        return mSnapshot.getPosition(id);
+    }
+
+    /**
+     * @return the position of the row for a date, or {@link RecyclerView#NO_POSITION}.
+     */
+    public int getPositionForDate(long date) {
+        int position = mSnapshot.getPosition(date);
+        return position == -1 ? RecyclerView.NO_POSITION : position;
     }
 
     public void selectView(RecyclerView.ViewHolder viewHolder) {
@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+/**
+ * The updates that turn one {@link ForecastSnapshot} into another, as adapter notifications.
+ * Rows with the same date are the same item; an item whose displayed values differ is changed.
+ *
+ * Updates are listed in the order they must be dispatched, and each position is relative to
+ * the list as left by the updates before it. Consecutive inserts, removals and changes are
+ * merged into ranges.
+ */
+public class ForecastDiff {
+
+    /**
+     * Receives the updates of a diff, in order.
+     */
+    public interface Callback {
+        void onInserted(int position, int count);
+        void onRemoved(int position, int count);
+        void onMoved(int fromPosition, int toPosition);
+        void onChanged(int position, int count);
+    }
+
+    private static final int INSERT = 0;
+    private static final int REMOVE = 1;
+    private static final int MOVE = 2;
+    private static final int CHANGE = 3;
+
+    private final ForecastSnapshot mOld;
+    private final ForecastSnapshot mNew;
+    // Triples of (type, position, count) or (MOVE, from, to).
+    private int[] mUpdates = new int[3 * 8];
+    private int mUpdateCount;
+    private int mInsertedRows;
+    private int mChangedRows;
+
+    private ForecastDiff(ForecastSnapshot oldSnapshot, ForecastSnapshot newSnapshot) {
+        mOld = oldSnapshot;
+        mNew = newSnapshot;
+    }
+
+    /**
+     * Computes the updates from {@code oldSnapshot} to {@code newSnapshot}. Runs in linear time when
+     * both are sorted by date; reordered rows cost a scan each.
+     */
+    public static ForecastDiff compute(ForecastSnapshot oldSnapshot, ForecastSnapshot newSnapshot) {
+        ForecastDiff diff = new ForecastDiff(oldSnapshot, newSnapshot);
+        diff.run();
+        return diff;
+    }
+
+    private void run() {
+        int oldSize = mOld.size();
+        int newSize = mNew.size();
+
+        // The working list holds indices into the old rows, positions into the new ones once
+        // inserted, offset by oldSize so the two can be told apart.
+        int[] current = new int[oldSize + newSize];
+        int currentSize = 0;
+
+        // Removals first, from the end so positions stay valid as we go.
+        int[] newIndexOfOld = new int[oldSize];
+        for (int i = 0; i < oldSize; i++) {
+            newIndexOfOld[i] = indexOf(mNew, mOld.getDate(i), i);
+        }
+        for (int i = oldSize - 1; i >= 0; i--) {
+            if (newIndexOfOld[i] < 0) {
+                add(REMOVE, i, 1);
+            }
+        }
+        for (int i = 0; i < oldSize; i++) {
+            if (newIndexOfOld[i] >= 0) {
+                current[currentSize++] = i;
+            }
+        }
+
+        // Then walk the new rows; every position before p is final.
+        for (int p = 0; p < newSize; p++) {
+            long date = mNew.getDate(p);
+            int j = p;
+            while (j < currentSize && (current[j] >= oldSize || mOld.getDate(current[j]) != date)) {
+                j++;
+            }
+            if (j == currentSize) {
+                add(INSERT, p, 1);
+                System.arraycopy(current, p, current, p + 1, currentSize - p);
+                current[p] = oldSize + p;
+                currentSize++;
+                mInsertedRows++;
+                continue;
+            }
+            int oldIndex = current[j];
+            if (j != p) {
+                add(MOVE, j, p);
+                System.arraycopy(current, p, current, p + 1, j - p);
+                current[p] = oldIndex;
+            }
+            if (!mOld.sameContent(oldIndex, mNew, p)) {
+                add(CHANGE, p, 1);
+                mChangedRows++;
+            }
+        }
+    }
+
+    // Looks the date up around the expected index, since positions rarely shift far.
+    private static int indexOf(ForecastSnapshot rows, long date, int hint) {
+        int size = rows.size();
+        for (int after = hint, before = hint - 1; after < size || before >= 0; after++, before--) {
+            if (after < size && rows.getDate(after) == date) return after;
+            if (before >= 0 && before < size && rows.getDate(before) == date) return before;
+        }
+        return -1;
+    }
+
+    private void add(int type, int a, int b) {
+        if (mUpdateCount > 0 && type != MOVE) {
+            int last = 3 * (mUpdateCount - 1);
+            if (mUpdates[last] == type) {
+                int position = mUpdates[last + 1];
+                int count = mUpdates[last + 2];
+                if (type == REMOVE && a + 1 == position) {
+                    // Removals run backwards.
+                    mUpdates[last + 1] = a;
+                    mUpdates[last + 2] = count + 1;
+                    return;
+                } else if (type != REMOVE && position + count == a) {
+                    mUpdates[last + 2] = count + b;
+                    return;
+                }
+            }
+        }
+        if (3 * mUpdateCount == mUpdates.length) {
+            int[] grown = new int[mUpdates.length * 2];
+            System.arraycopy(mUpdates, 0, grown, 0, mUpdates.length);
+            mUpdates = grown;
+        }
+        int at = 3 * mUpdateCount++;
+        mUpdates[at] = type;
+        mUpdates[at + 1] = a;
+        mUpdates[at + 2] = b;
+    }
+
+    public void dispatchUpdatesTo(Callback callback) {
+        for (int i = 0; i < mUpdateCount; i++) {
+            int at = 3 * i;
+            int a = mUpdates[at + 1];
+            int b = mUpdates[at + 2];
+            switch (mUpdates[at]) {
+                case INSERT:
+                    callback.onInserted(a, b);
+                    break;
+                case REMOVE:
+                    callback.onRemoved(a, b);
+                    break;
+                case MOVE:
+                    callback.onMoved(a, b);
+                    break;
+                case CHANGE:
+                    callback.onChanged(a, b);
+                    break;
+            }
+        }
+    }
+
+    public ForecastSnapshot getOldSnapshot() {
+        return mOld;
+    }
+
+    public ForecastSnapshot getNewSnapshot() {
+        return mNew;
+    }
+
+    public int getUpdateCount() {
+        return mUpdateCount;
+    }
+
+    /**
+     * @return the number of rows that will be bound because of this diff, inserted or changed.
+     */
+    public int getReboundRowCount() {
+        return mInsertedRows + mChangedRows;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import java.util.Arrays;
+
+/**
+ * Memoizes the text rendered while binding forecast rows, so a bind after warm-up allocates
+ * nothing: temperatures and their accessibility descriptions per rounded value, and transition
+ * names per position. An instance is only valid for the {@link SunshineSettings} it was built
+ * with; build a new one when the units or the locale change.
+ */
+public class ForecastFormatter {
+
+    // Rounded temperatures with a magnitude up to this are cached; anything else is formatted
+    // on every call.
+    static final int MAX_CACHED_MAGNITUDE = 200;
+
+    /**
+     * Text for one rounded temperature.
+     */
+    public static final class Temperature {
+        public final String text;
+        public final String highDescription;
+        public final String lowDescription;
+
+        Temperature(String text, String highDescription, String lowDescription) {
+            this.text = text;
+            this.highDescription = highDescription;
+            this.lowDescription = lowDescription;
+        }
+    }
+
+    private final SunshineSettings mSettings;
+    // Indexed by magnitude. Negative values get their own table: "%1.0f" renders -0.3 as "-0".
+    private final Temperature[] mPositive = new Temperature[MAX_CACHED_MAGNITUDE + 1];
+    private final Temperature[] mNegative = new Temperature[MAX_CACHED_MAGNITUDE + 1];
+    private String[] mTransitionNames = new String[16];
+
+    public ForecastFormatter(SunshineSettings settings) {
+        mSettings = settings;
+    }
+
+    public SunshineSettings getSettings() {
+        return mSettings;
+    }
+
+    /**
+     * @param celsius temperature as stored in the database
+     */
+    public Temperature formatTemperature(double celsius) {
+        double temperature = mSettings.isMetric ? celsius : (celsius * 1.8) + 32;
+        boolean negative = temperature < 0;
+        double magnitude = Math.abs(temperature);
+        if (!(magnitude < MAX_CACHED_MAGNITUDE)) {
+            return newTemperature(temperature);
+        }
+        // Round half up like the formatter does. The difference with the floor is exact for
+        // doubles this small, so this agrees with it on every input.
+        double floor = Math.floor(magnitude);
+        int rounded = (int) floor + (magnitude - floor >= 0.5 ? 1 : 0);
+
+        Temperature[] cache = negative ? mNegative : mPositive;
+        Temperature cached = cache[rounded];
+        if (cached == null) {
+            // An integral -0.0 would lose its sign; any small negative value renders as "-0".
+            cached = newTemperature(negative ? (rounded == 0 ? -0.1 : -rounded) : rounded);
+            cache[rounded] = cached;
+        }
+        return cached;
+    }
+
+    private Temperature newTemperature(double displayed) {
+        String text = String.format(mSettings.temperatureFormat, displayed);
+        return new Temperature(text,
+            String.format(mSettings.a11yHighTempFormat, text),
+            String.format(mSettings.a11yLowTempFormat, text));
+    }
+
+    /**
+     * Drops the memoized text, to be formatted again when needed.
+     */
+    public void clear() {
+        Arrays.fill(mPositive, null);
+        Arrays.fill(mNegative, null);
+        mTransitionNames = new String[16];
+    }
+
+    /**
+     * @return the shared element transition name of the icon at a position.
+     */
+    public String getTransitionName(int position) {
+        if (position >= mTransitionNames.length) {
+            String[] grown = new String[Math.max(position + 1, mTransitionNames.length * 2)];
+            System.arraycopy(mTransitionNames, 0, grown, 0, mTransitionNames.length);
+            mTransitionNames = grown;
+        }
+        String name = mTransitionNames[position];
+        if (name == null) {
+            name = "iconView" + position;
+            mTransitionNames[position] = name;
+        }
+        return name;
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.v4.content.AsyncTaskLoader;
+
+import com.example.android.sunshine.app.data.WeatherContract;
+
+/**
+ * Loads the forecast list into a {@link ForecastSnapshot} and diffs it against the previously
+ * delivered one, all on the loader thread. The cursor is closed as soon as it has been copied;
+ * changes to the queried URI are watched through the content resolver instead, the way a
+ * {@link android.support.v4.content.CursorLoader} watches its cursor. A load that changes the
+ * list is saved as the last rendered forecast.
+ */
+public class ForecastLoader extends AsyncTaskLoader<ForecastLoader.Result> {
+
+    /**
+     * A loaded snapshot along with the diff from the previously delivered one.
+     */
+    public static class Result {
+        private final ForecastSnapshot mSnapshot;
+        private final ForecastDiff mDiff;
+
+        Result(ForecastSnapshot snapshot, ForecastDiff diff) {
+            mSnapshot = snapshot;
+            mDiff = diff;
+        }
+
+        public ForecastSnapshot getSnapshot() {
+            return mSnapshot;
+        }
+
+        /**
+         * @return the updates from {@link ForecastDiff#getOldSnapshot()}, which is what the
+         * previous result held; only valid for a consumer still showing that snapshot.
+         */
+        public ForecastDiff getDiff() {
+            return mDiff;
+        }
+    }
+
+    private final ForceLoadContentObserver mObserver = new ForceLoadContentObserver();
+    private final Uri mUri;
+    private final String[] mProjection;
+    private final String mSelection;
+    private final String[] mSelectionArgs;
+    private final String mSortOrder;
+
+    private Result mResult;
+    private boolean mObserving;
+    // Snapshot of the last delivered result, written on the main thread and read by the next load.
+    private volatile ForecastSnapshot mDeliveredSnapshot = ForecastSnapshot.EMPTY;
+
+    public ForecastLoader(Context context, Uri uri, String[] projection, String selection,
+        String[] selectionArgs, String sortOrder) {
+        super(context);
+        mUri = uri;
+        mProjection = projection;
+        mSelection = selection;
+        mSelectionArgs = selectionArgs;
+        mSortOrder = sortOrder;
+    }
+
+    /**
+     * Sets what the consumer already shows before the first load, typically the last rendered
+     * forecast, so the first result is a diff from it. Ignored once a result was delivered.
+     */
+    public void setBaseSnapshot(ForecastSnapshot snapshot) {
+        if (mResult == null) {
+            mDeliveredSnapshot = snapshot;
+        }
+    }
+
+    /**
+     * @return whether a result was delivered, as for a loader retained across a rotation.
+     */
+    public boolean hasResult() {
+        return mResult != null;
+    }
+
+    @Override
+    public Result loadInBackground() {
+        Tracing.beginSection("ForecastLoader.loadInBackground");
+        long start = System.nanoTime();
+        Diagnostics.record(Diagnostics.LOAD_START, 0, 0);
+        try {
+            Cursor cursor = getContext().getContentResolver().query(mUri, mProjection, mSelection,
+                mSelectionArgs, mSortOrder);
+            ForecastSnapshot snapshot = ForecastSnapshot.EMPTY;
+            if (cursor != null) {
+                try {
+                    snapshot = ForecastSnapshot.read(cursor);
+                } finally {
+                    cursor.close();
+                }
+            }
+            Result result = new Result(snapshot, ForecastDiff.compute(mDeliveredSnapshot, snapshot));
+            if (result.getDiff().getUpdateCount() != 0) {
+                ForecastSnapshotFile.save(getContext(),
+                    WeatherContract.WeatherEntry.getLocationSettingFromUri(mUri), snapshot);
+            }
+            Diagnostics.recordTimed(Diagnostics.LOAD_FINISH, snapshot.size(), start);
+            return result;
+        } finally {
+            Tracing.endSection();
+        }
+    }
+
+    @Override
+    public void deliverResult(Result result) {
+        if (isReset()) return;
+        mResult = result;
+        if (isStarted()) {
+            mDeliveredSnapshot = result.getSnapshot();
+            super.deliverResult(result);
+        }
+    }
+
+    @Override
+    protected void onStartLoading() {
+        if (!mObserving) {
+            getContext().getContentResolver().registerContentObserver(mUri, true, mObserver);
+            mObserving = true;
+        }
+        if (mResult != null) {
+            deliverResult(mResult);
+        }
+        if (takeContentChanged() || mResult == null) {
+            forceLoad();
+        }
+    }
+
+    @Override
+    protected void onStopLoading() {
+        cancelLoad();
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        onStopLoading();
+        if (mObserving) {
+            getContext().getContentResolver().unregisterContentObserver(mObserver);
+            mObserving = false;
+        }
+        mResult = null;
+        mDeliveredSnapshot = ForecastSnapshot.EMPTY;
+    }
+}
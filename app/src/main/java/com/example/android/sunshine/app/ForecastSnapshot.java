@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.database.Cursor;
+
+import com.example.android.sunshine.app.fragment.ForecastFragment;
+
+import java.util.Arrays;
+
+/**
+ * The forecast rows of one load, copied out of the cursor into primitive columns so the list
+ * binds without touching a {@link android.database.CursorWindow} and the cursor can be closed
+ * as soon as it has been read. Rows are keyed by date. Instances are immutable.
+ */
+public class ForecastSnapshot {
+
+    public static final ForecastSnapshot EMPTY = new ForecastSnapshot(new long[0], new int[0],
+        new float[0], new float[0]);
+
+    private final long[] mDates;
+    private final int[] mConditionIds;
+    // Temperatures in Celsius. Forecasts have two decimals at most, well within float precision.
+    private final float[] mHighs;
+    private final float[] mLows;
+    // Whether the dates ascend, as they do for the forecast list, so they can be searched.
+    private final boolean mSortedByDate;
+
+    ForecastSnapshot(long[] dates, int[] conditionIds, float[] highs, float[] lows) {
+        mDates = dates;
+        mConditionIds = conditionIds;
+        mHighs = highs;
+        mLows = lows;
+        boolean sorted = true;
+        for (int i = 1; i < dates.length && sorted; i++) {
+            sorted = dates[i - 1] < dates[i];
+        }
+        mSortedByDate = sorted;
+    }
+
+    /**
+     * Reads every row of a cursor with the {@link ForecastFragment} projection. Meant for the
+     * loader thread: this fills the whole cursor window. The cursor is left open.
+     */
+    public static ForecastSnapshot read(Cursor cursor) {
+        return read(cursor, ForecastFragment.COL_WEATHER_DATE, ForecastFragment.COL_WEATHER_CONDITION_ID,
+            ForecastFragment.COL_WEATHER_MAX_TEMP, ForecastFragment.COL_WEATHER_MIN_TEMP, cursor.getCount());
+    }
+
+    /**
+     * Reads at most {@code maxRows} rows of a cursor with any projection, given the columns
+     * of the values kept. The cursor is left open.
+     */
+    public static ForecastSnapshot read(Cursor cursor, int dateColumn, int conditionIdColumn,
+                                        int highColumn, int lowColumn, int maxRows) {
+        int count = Math.min(cursor.getCount(), maxRows);
+        long[] dates = new long[count];
+        int[] conditionIds = new int[count];
+        float[] highs = new float[count];
+        float[] lows = new float[count];
+        for (int i = 0; i < count && cursor.moveToPosition(i); i++) {
+            dates[i] = cursor.getLong(dateColumn);
+            conditionIds[i] = cursor.getInt(conditionIdColumn);
+            highs[i] = cursor.getFloat(highColumn);
+            lows[i] = cursor.getFloat(lowColumn);
+        }
+        return new ForecastSnapshot(dates, conditionIds, highs, lows);
+    }
+
+    public int size() {
+        return mDates.length;
+    }
+
+    public long getDate(int position) {
+        return mDates[position];
+    }
+
+    /**
+     * @return the position of the row for a date, or -1 if there is none. Binary search when
+     * the rows are sorted by date, which is the case for the forecast list.
+     */
+    public int getPosition(long date) {
+        if (mSortedByDate) {
+            int position = Arrays.binarySearch(mDates, date);
+            return position >= 0 ? position : -1;
+        }
+        for (int i = 0; i < mDates.length; i++) {
+            if (mDates[i] == date) return i;
+        }
+        return -1;
+    }
+
+    public int getConditionId(int position) {
+        return mConditionIds[position];
+    }
+
+    public float getHigh(int position) {
+        return mHighs[position];
+    }
+
+    public float getLow(int position) {
+        return mLows[position];
+    }
+
+    /**
+     * @return whether a row of this snapshot displays the same as a row of another.
+     */
+    public boolean sameContent(int position, ForecastSnapshot other, int otherPosition) {
+        return mConditionIds[position] == other.mConditionIds[otherPosition]
+            && Float.floatToIntBits(mHighs[position]) == Float.floatToIntBits(other.mHighs[otherPosition])
+            && Float.floatToIntBits(mLows[position]) == Float.floatToIntBits(other.mLows[otherPosition]);
+    }
+}
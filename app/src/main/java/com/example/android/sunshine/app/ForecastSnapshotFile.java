@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The last forecast list shown, kept in a small binary file so a cold start can draw it before
+ * the first load completes. The loader saves it whenever a load changes the list, and the
+ * startup pipeline maps it into memory in the background; the list takes it once and the first
+ * load reconciles it with a diff.
+ *
+ * Temperatures are stored in Celsius, as in the database, and formatted with the current
+ * units, so only the location needs to match.
+ */
+public final class ForecastSnapshotFile {
+
+    public static final String LOG_TAG = "Sunshine";
+
+    static final String FILE_NAME = "last_forecast.bin";
+
+    // "SNFC", then a version, the location and the rows, column by column.
+    private static final int MAGIC = 0x534e4643;
+    private static final int VERSION = 1;
+
+    /**
+     * A snapshot read back from the file, with the location it was loaded for.
+     */
+    static final class Saved {
+        final String location;
+        final ForecastSnapshot snapshot;
+
+        Saved(String location, ForecastSnapshot snapshot) {
+            this.location = location;
+            this.snapshot = snapshot;
+        }
+    }
+
+    private static final AtomicReference<Saved> sPreloaded = new AtomicReference<Saved>();
+    // Set by the first take, after which the preloaded snapshot is never handed out again, even
+    // if the preload only finishes later.
+    private static final AtomicBoolean sTaken = new AtomicBoolean();
+
+    private ForecastSnapshotFile() {}
+
+    /**
+     * Reads the file into memory for {@link #takePreloaded(String)}. Meant for a background
+     * thread at startup.
+     */
+    public static void preload(Context context) {
+        preload(new File(context.getFilesDir(), FILE_NAME));
+    }
+
+    static void preload(File file) {
+        if (sTaken.get()) return;
+        try {
+            sPreloaded.set(read(file));
+            // The list may have asked while the file was read; it has moved on.
+            if (sTaken.get()) {
+                sPreloaded.set(null);
+            }
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "ForecastSnapshotFile: unable to read the last forecast.", e);
+        }
+    }
+
+    /**
+     * Hands out the preloaded snapshot once per process, if it is for the location and has
+     * rows from today on; rows before today are left out, as the forecast query does. Only the
+     * first call can get rows: a preload finishing after it is dropped.
+     *
+     * @return the rows to draw, or null if there are none or they aren't preloaded yet
+     */
+    public static ForecastSnapshot takePreloaded(String location, long today) {
+        sTaken.set(true);
+        Saved saved = sPreloaded.getAndSet(null);
+        if (null == saved || !saved.location.equals(location)) return null;
+        ForecastSnapshot snapshot = saved.snapshot;
+        int first = 0;
+        while (first < snapshot.size() && snapshot.getDate(first) < today) first++;
+        return first == snapshot.size() ? null : from(snapshot, first);
+    }
+
+    /**
+     * Drops the preloaded snapshot if the list hasn't taken it yet.
+     */
+    public static void releasePreloaded() {
+        sPreloaded.set(null);
+    }
+
+    /**
+     * Saves the rows shown for a location. Meant for the loader thread.
+     */
+    public static void save(Context context, String location, ForecastSnapshot snapshot) {
+        try {
+            write(new File(context.getFilesDir(), FILE_NAME), location, snapshot);
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "ForecastSnapshotFile: unable to save the last forecast.", e);
+        }
+    }
+
+    private static ForecastSnapshot from(ForecastSnapshot snapshot, int first) {
+        int count = snapshot.size() - first;
+        long[] dates = new long[count];
+        int[] conditionIds = new int[count];
+        float[] highs = new float[count];
+        float[] lows = new float[count];
+        for (int i = 0; i < count; i++) {
+            dates[i] = snapshot.getDate(first + i);
+            conditionIds[i] = snapshot.getConditionId(first + i);
+            highs[i] = snapshot.getHigh(first + i);
+            lows[i] = snapshot.getLow(first + i);
+        }
+        return new ForecastSnapshot(dates, conditionIds, highs, lows);
+    }
+
+    // Written to a temporary file first, so a crash never leaves a torn file behind.
+    static void write(File file, String location, ForecastSnapshot snapshot) throws IOException {
+        byte[] locationBytes = location.getBytes("UTF-8");
+        int count = snapshot.size();
+        ByteBuffer buffer = ByteBuffer.allocate(12 + locationBytes.length + 4 + count * 20);
+        buffer.putInt(MAGIC).putInt(VERSION);
+        buffer.putInt(locationBytes.length).put(locationBytes);
+        buffer.putInt(count);
+        for (int i = 0; i < count; i++) buffer.putLong(snapshot.getDate(i));
+        for (int i = 0; i < count; i++) buffer.putInt(snapshot.getConditionId(i));
+        for (int i = 0; i < count; i++) buffer.putFloat(snapshot.getHigh(i));
+        for (int i = 0; i < count; i++) buffer.putFloat(snapshot.getLow(i));
+
+        File temp = new File(file.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(temp);
+        try {
+            out.write(buffer.array());
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("Unable to rename " + temp + " to " + file);
+        }
+    }
+
+    /**
+     * @return the saved snapshot, or null if there is no file or it isn't one of ours
+     */
+    static Saved read(File file) throws IOException {
+        if (!file.exists()) return null;
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = in.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 16 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                return null;
+            }
+            int locationLength = buffer.getInt();
+            if (locationLength < 0 || locationLength > buffer.remaining() - 4) return null;
+            byte[] locationBytes = new byte[locationLength];
+            buffer.get(locationBytes);
+            int count = buffer.getInt();
+            if (count < 0 || count > buffer.remaining() / 20) return null;
+
+            long[] dates = new long[count];
+            int[] conditionIds = new int[count];
+            float[] highs = new float[count];
+            float[] lows = new float[count];
+            buffer.asLongBuffer().get(dates);
+            buffer.position(buffer.position() + count * 8);
+            buffer.asIntBuffer().get(conditionIds);
+            buffer.position(buffer.position() + count * 4);
+            buffer.asFloatBuffer().get(highs);
+            buffer.position(buffer.position() + count * 4);
+            buffer.asFloatBuffer().get(lows);
+            return new Saved(new String(locationBytes, "UTF-8"),
+                new ForecastSnapshot(dates, conditionIds, highs, lows));
+        } finally {
+            in.close();
+        }
+    }
+}
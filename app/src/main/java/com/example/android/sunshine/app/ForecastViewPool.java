@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.Build;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+import android.util.SparseArray;
+import android.view.ContextThemeWrapper;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * App-wide pool of forecast list item views, shared by every forecast list so that a new one,
+ * after a rotation or in the two-pane layout, starts from views that already exist. Before the
+ * first list needs them, the expected number of items is inflated ahead of time, one per idle
+ * pass of the main thread.
+ *
+ * Items are inflated from the application context, themed like the main activity, so pooled
+ * views never hold on to an activity. Their layout depends on the orientation and smallest
+ * width, so items are pooled per configuration: a list gets the pool of its own configuration,
+ * which the list of a previous rotation left its items in, and rotating back reuses them.
+ */
+public class ForecastViewPool implements MemoryPressure.Releasable {
+
+    public static final String LOG_TAG = "Sunshine";
+
+    private static ForecastViewPool sInstance;
+
+    /*
+        The items of one configuration, and how far ahead of time they were inflated.
+     */
+    private class ConfigurationPool {
+        final RecyclerView.RecycledViewPool pool = new RecyclerView.RecycledViewPool();
+        boolean prewarmStarted;
+        // Items inflated for this configuration since the pool was last emptied.
+        int inflations;
+        int prewarmed;
+
+        ConfigurationPool() {
+            pool.setMaxRecycledViews(ForecastAdapter.VIEW_TYPE_TODAY, mExpectedCount);
+        }
+
+        void clear() {
+            pool.clear();
+            prewarmStarted = false;
+            inflations = 0;
+            prewarmed = 0;
+        }
+    }
+
+    private final LayoutInflater mInflater;
+    private final SparseArray<ConfigurationPool> mPools = new SparseArray<ConfigurationPool>();
+    private final int mExpectedCount;
+    // Parent to inflate against, for the item layout params, and adapter creating prewarmed holders.
+    private final RecyclerView mParent;
+    private final RecyclerView.Adapter<ForecastAdapter.ForecastAdapterViewHolder> mFactory;
+    private int mInflations;
+    // Counts releases, so a prewarm started before one stops filling the pool.
+    private int mReleases;
+    // Orientation and smallest width of the last list asking for the pool, whose configuration
+    // the application resources, and so new items, have.
+    private int mConfigurationKey;
+    private ConfigurationPool mCurrent;
+
+    private ForecastViewPool(Context context) {
+        Context themed = new ContextThemeWrapper(context.getApplicationContext(), R.style.AppTheme_Main);
+        mInflater = LayoutInflater.from(themed);
+        mParent = new RecyclerView(themed);
+
+        // Enough items to fill the longest side of the screen, plus one partly shown at each end.
+        int longestSide = Math.max(context.getResources().getDisplayMetrics().heightPixels,
+            context.getResources().getDisplayMetrics().widthPixels);
+        mExpectedCount = longestSide / context.getResources().getDimensionPixelSize(R.dimen.today_icon) + 2;
+
+        mFactory = new RecyclerView.Adapter<ForecastAdapter.ForecastAdapterViewHolder>() {
+            @Override
+            public ForecastAdapter.ForecastAdapterViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+                return new ForecastAdapter.ForecastAdapterViewHolder(inflate(parent));
+            }
+
+            @Override
+            public void onBindViewHolder(ForecastAdapter.ForecastAdapterViewHolder holder, int position) {}
+
+            @Override
+            public int getItemCount() {
+                return 0;
+            }
+        };
+        MemoryPressure.register(this, MemoryPressure.TIER_UI);
+    }
+
+    public static synchronized ForecastViewPool getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ForecastViewPool(context);
+        }
+        sInstance.selectConfiguration(context.getResources().getConfiguration());
+        return sInstance;
+    }
+
+    private void selectConfiguration(Configuration configuration) {
+        int key = configurationKey(configuration);
+        if (mCurrent != null && key == mConfigurationKey) return;
+        mConfigurationKey = key;
+        mCurrent = mPools.get(key);
+        if (mCurrent == null) {
+            mCurrent = new ConfigurationPool();
+            mPools.put(key, mCurrent);
+        }
+    }
+
+    static int configurationKey(Configuration configuration) {
+        int smallestWidthDp = Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB_MR2
+            ? configuration.smallestScreenWidthDp : 0;
+        return smallestWidthDp << 2 | configuration.orientation;
+    }
+
+    /**
+     * @return the pool of the current configuration, to be kept by a list for its lifetime.
+     */
+    public RecyclerView.RecycledViewPool getRecycledViewPool() {
+        return mCurrent.pool;
+    }
+
+    /**
+     * Inflates a list item for the current configuration. Must be called on the main thread.
+     */
+    public View inflate(ViewGroup parent) {
+        Tracing.beginSection("ForecastViewPool.inflate");
+        View view = mInflater.inflate(R.layout.list_item_forecast_today, parent, false);
+        view.setFocusable(true);
+        mInflations++;
+        mCurrent.inflations++;
+        Tracing.endSection();
+        return view;
+    }
+
+    /**
+     * @return the number of list items inflated so far, ahead of time or not.
+     */
+    public int getInflationCount() {
+        return mInflations;
+    }
+
+    /**
+     * Empties the pools of every configuration; the next list to show prewarms its own again.
+     */
+    @Override
+    public void release(int tier) {
+        for (int i = 0; i < mPools.size(); i++) {
+            mPools.valueAt(i).clear();
+        }
+        mReleases++;
+    }
+
+    /**
+     * Starts filling the pool of the current configuration with the expected number of items,
+     * once until the pool is released, inflating them while the main thread is idle. Stops if
+     * the configuration changes meanwhile. Must be called on the main thread.
+     */
+    public void prewarm() {
+        final ConfigurationPool target = mCurrent;
+        if (target.prewarmStarted) return;
+        target.prewarmStarted = true;
+        final int releases = mReleases;
+        Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+            @Override
+            public boolean queueIdle() {
+                if (releases != mReleases) return false;
+                if (target != mCurrent) {
+                    // Resumed by the next list of this configuration.
+                    target.prewarmStarted = false;
+                    return false;
+                }
+                if (target.inflations >= mExpectedCount) {
+                    Log.i(LOG_TAG, "ForecastViewPool: " + target.prewarmed + " of " + mExpectedCount
+                        + " list items inflated ahead of time.");
+                    return false;
+                }
+                target.pool.putRecycledView(mFactory.createViewHolder(mParent, ForecastAdapter.VIEW_TYPE_TODAY));
+                target.prewarmed++;
+                return true;
+            }
+        });
+    }
+}
@@ -16,69 +16,78 @@
 package com.example.android.sunshine.app;
 
 import android.os.Bundle;
-import android.os.Parcel;
-import android.support.v4.util.LongSparseArray;
 import android.support.v4.view.ViewCompat;
 import android.support.v7.widget.RecyclerView;
 import android.util.Log;
-import android.util.SparseBooleanArray;
 import android.widget.AbsListView;
 import android.widget.Checkable;
 
 import com.example.android.sunshine.app.activity.MainActivity;
 
 /**
- * The ItemChoiceManager class keeps track of which positions have been selected. Note that it
- * doesn't take advantage of new adapter features to track changes in the underlying data.
+ * The ItemChoiceManager class keeps track of which items have been selected. Items are tracked
+ * by their stable id, so the adapter must have stable ids and be able to find an item by id;
+ * after the data changes, it calls {@link #onDataSetChanged()} to find the checked items again.
+ * Only rows whose checked state changes are rebound.
  */
 public class ItemChoiceManager {
     private final String LOG_TAG = MainActivity.class.getSimpleName();
-    private final String SELECTED_ITEMS_KEY = "SIK";
+    private final String SELECTED_IDS_KEY = "SIK_IDS";
+    private final String SELECTED_POSITIONS_KEY = "SIK_POSITIONS";
     private int mChoiceMode;
 
     private RecyclerView.Adapter mAdapter;
+    private SelectionStore.PositionLookup mPositionLookup;
+    private MultiChoiceListener mMultiChoiceListener;
 
-    public ItemChoiceManager(RecyclerView.Adapter adapter) {
+    /**
+     * Follows the selection in AbsListView.CHOICE_MODE_MULTIPLE_MODAL, where checking a first
+     * item starts a selection session (typically an action mode with bulk actions) and
+     * unchecking the last one ends it.
+     */
+    public interface MultiChoiceListener {
+        void onSelectionStarted();
+        void onItemCheckedStateChanged(long id, boolean checked);
+        void onSelectionFinished();
+    }
+
+    public ItemChoiceManager(RecyclerView.Adapter adapter, SelectionStore.PositionLookup positionLookup) {
         mAdapter = adapter;
+        mPositionLookup = positionLookup;
     }
 
     /**
-     * Running state of which positions are currently checked
+     * Running state of which ids are currently checked, with the last known position in the
+     * adapter for each.
      */
-    SparseBooleanArray mCheckStates = new SparseBooleanArray();
+    final SelectionStore mChecked = new SelectionStore();
 
-    /**
-     * Running state of which IDs are currently checked.
-     * If there is a value for a given key, the checked state for that ID is true
-     * and the value holds the last known position in the adapter for that id.
-     */
-    LongSparseArray<Integer> mCheckedIdStates = new LongSparseArray<Integer>();
+    public void setMultiChoiceListener(MultiChoiceListener listener) {
+        mMultiChoiceListener = listener;
+    }
 
     public void onClick(RecyclerView.ViewHolder vh) {
         if (mChoiceMode == AbsListView.CHOICE_MODE_NONE)
             return;
 
-        int checkedItemCount = mCheckStates.size();
         int position = vh.getAdapterPosition();
 
         if (position == RecyclerView.NO_POSITION) {
             Log.d(LOG_TAG, "Unable to Set Item State");
             return;
         }
+        long id = mAdapter.getItemId(position);
 
         switch (mChoiceMode) {
             case AbsListView.CHOICE_MODE_NONE:
                 break;
             case AbsListView.CHOICE_MODE_SINGLE: {
-                boolean checked = mCheckStates.get(position, false);
-                if (!checked) {
-                    for (int i = 0; i < checkedItemCount; i++) {
-                        mAdapter.notifyItemChanged(mCheckStates.keyAt(i));
+                if (!mChecked.contains(id)) {
+                    for (int i = 0; i < mChecked.size(); i++) {
+                        mAdapter.notifyItemChanged(mChecked.positionAt(i));
                     }
-                    mCheckStates.clear();
-                    mCheckStates.put(position, true);
-                    mCheckedIdStates.clear();
-                    mCheckedIdStates.put(mAdapter.getItemId(position), position);
+                    mChecked.clear();
+                    mChecked.put(id, position);
                 }
                 // We directly call onBindViewHolder here because notifying that an item has
                 // changed on an item that has the focus causes it to lose focus, which makes
@@ -86,18 +95,62 @@ public class ItemChoiceManager {
                 mAdapter.onBindViewHolder(vh, position);
                 break;
             }
-            case AbsListView.CHOICE_MODE_MULTIPLE: {
-                boolean checked = mCheckStates.get(position, false);
-                mCheckStates.put(position, !checked);
+            case AbsListView.CHOICE_MODE_MULTIPLE:
+            case AbsListView.CHOICE_MODE_MULTIPLE_MODAL: {
+                // In modal mode, a click only toggles items while a selection session is open.
+                if (mChoiceMode == AbsListView.CHOICE_MODE_MULTIPLE_MODAL && mChecked.size() == 0) {
+                    break;
+                }
+                toggle(id, position);
                 // We directly call onBindViewHolder here because notifying that an item has
                 // changed on an item that has the focus causes it to lose focus, which makes
                 // keyboard navigation a bit annoying
                 mAdapter.onBindViewHolder(vh, position);
                 break;
             }
-            case AbsListView.CHOICE_MODE_MULTIPLE_MODAL: {
-                throw new RuntimeException("Multiple Modal not implemented in ItemChoiceManager.");
-            }
+        }
+    }
+
+    /**
+     * Starts a selection session from a long click in AbsListView.CHOICE_MODE_MULTIPLE_MODAL,
+     * checking the item.
+     *
+     * @return whether the long click was consumed
+     */
+    public boolean onLongClick(RecyclerView.ViewHolder vh) {
+        int position = vh.getAdapterPosition();
+        if (mChoiceMode != AbsListView.CHOICE_MODE_MULTIPLE_MODAL || position == RecyclerView.NO_POSITION) {
+            return false;
+        }
+        long id = mAdapter.getItemId(position);
+        if (!mChecked.contains(id)) {
+            toggle(id, position);
+            mAdapter.onBindViewHolder(vh, position);
+        }
+        return true;
+    }
+
+    private void toggle(long id, int position) {
+        boolean checked = !mChecked.contains(id);
+        boolean wasEmpty = mChecked.size() == 0;
+        if (checked) {
+            mChecked.put(id, position);
+        } else {
+            mChecked.remove(id);
+        }
+        notifyCheckedStateChanged(id, checked, wasEmpty);
+    }
+
+    private void notifyCheckedStateChanged(long id, boolean checked, boolean wasEmpty) {
+        if (mChoiceMode != AbsListView.CHOICE_MODE_MULTIPLE_MODAL || null == mMultiChoiceListener) {
+            return;
+        }
+        if (checked && wasEmpty) {
+            mMultiChoiceListener.onSelectionStarted();
+        }
+        mMultiChoiceListener.onItemCheckedStateChanged(id, checked);
+        if (!checked && mChecked.size() == 0) {
+            mMultiChoiceListener.onSelectionFinished();
         }
     }
 
@@ -105,9 +158,10 @@ public class ItemChoiceManager {
      * Defines the choice behavior for the RecyclerView. By default, RecyclerViewChoiceMode does
      * not have any choice behavior (AbsListView.CHOICE_MODE_NONE). By setting the choiceMode to
      * AbsListView.CHOICE_MODE_SINGLE, the RecyclerView allows up to one item to  be in a
-     * chosen state.
+     * chosen state. AbsListView.CHOICE_MODE_MULTIPLE and AbsListView.CHOICE_MODE_MULTIPLE_MODAL
+     * allow any number.
      *
-     * @param choiceMode One of AbsListView.CHOICE_MODE_NONE, AbsListView.CHOICE_MODE_SINGLE
+     * @param choiceMode One of the AbsListView choice modes
      */
     public void setChoiceMode(int choiceMode) {
         if (mChoiceMode != choiceMode) {
@@ -117,21 +171,69 @@ public class ItemChoiceManager {
     }
 
     /**
-     * Returns the checked state of the specified position. The result is only
-     * valid if the choice mode has been set to AbsListView.CHOICE_MODE_SINGLE,
-     * but the code does not check this.
+     * Returns the checked state of the specified position.
      *
      * @param position The item whose checked state to return
      * @return The item's checked state
      * @see #setChoiceMode(int)
      */
     public boolean isItemChecked(int position) {
-        return mCheckStates.get(position);
+        return mChecked.size() != 0 && mChecked.contains(mAdapter.getItemId(position));
+    }
+
+    /**
+     * Sets the checked state of items, for bulk actions. Rebinds only the items whose state
+     * changes.
+     */
+    public void setItemsChecked(long[] ids, boolean checked) {
+        for (long id : ids) {
+            boolean wasEmpty = mChecked.size() == 0;
+            int position = checked ? -1 : mChecked.remove(id);
+            if (checked && !mChecked.contains(id)) {
+                position = mPositionLookup.getPosition(id);
+                if (position < 0) continue;
+                mChecked.put(id, position);
+            }
+            if (position >= 0) {
+                mAdapter.notifyItemChanged(position);
+                notifyCheckedStateChanged(id, checked, wasEmpty);
+            }
+        }
+    }
+
+    /**
+     * @return the ids of the checked items, in ascending order.
+     */
+    public long[] getCheckedItemIds() {
+        return mChecked.getIds();
+    }
+
+    public int getCheckedItemCount() {
+        return mChecked.size();
+    }
+
+    /**
+     * Unchecks every item, rebinding only the checked ones.
+     */
+    public void clearChoices() {
+        setItemsChecked(mChecked.getIds(), false);
     }
 
     void clearSelections() {
-        mCheckStates.clear();
-        mCheckedIdStates.clear();
+        mChecked.clear();
+    }
+
+    /**
+     * Finds the checked items again after the adapter's data changed. Items that are gone are
+     * unchecked; the others keep their state, so nothing needs to be rebound.
+     */
+    public void onDataSetChanged() {
+        int before = mChecked.size();
+        mChecked.remap(mPositionLookup);
+        if (before != 0 && mChecked.size() == 0 && mChoiceMode == AbsListView.CHOICE_MODE_MULTIPLE_MODAL
+            && null != mMultiChoiceListener) {
+            mMultiChoiceListener.onSelectionFinished();
+        }
     }
 
     public void onBindViewHolder(RecyclerView.ViewHolder vh, int position) {
@@ -143,41 +245,23 @@ public class ItemChoiceManager {
     }
 
     public void onRestoreInstanceState(Bundle savedInstanceState) {
-        byte[] states = savedInstanceState.getByteArray(SELECTED_ITEMS_KEY);
-        if ( null != states ) {
-            Parcel inParcel = Parcel.obtain();
-            inParcel.unmarshall(states, 0, states.length);
-            inParcel.setDataPosition(0);
-            mCheckStates = inParcel.readSparseBooleanArray();
-            final int numStates = inParcel.readInt();
-            mCheckedIdStates.clear();
-            for (int i=0; i<numStates; i++) {
-                final long key = inParcel.readLong();
-                final int value = inParcel.readInt();
-                mCheckedIdStates.put(key, value);
-            }
+        long[] ids = savedInstanceState.getLongArray(SELECTED_IDS_KEY);
+        int[] positions = savedInstanceState.getIntArray(SELECTED_POSITIONS_KEY);
+        if ( null != ids && null != positions ) {
+            mChecked.set(ids, positions);
         }
     }
 
     public void onSaveInstanceState(Bundle outState) {
-        Parcel outParcel = Parcel.obtain();
-        outParcel.writeSparseBooleanArray(mCheckStates);
-        final int numStates = mCheckedIdStates.size();
-        outParcel.writeInt(numStates);
-        for (int i=0; i<numStates; i++) {
-            outParcel.writeLong(mCheckedIdStates.keyAt(i));
-            outParcel.writeInt(mCheckedIdStates.valueAt(i));
-        }
-        byte[] states = outParcel.marshall();
-        outState.putByteArray(SELECTED_ITEMS_KEY, states);
-        outParcel.recycle();
+        outState.putLongArray(SELECTED_IDS_KEY, mChecked.getIds());
+        outState.putIntArray(SELECTED_POSITIONS_KEY, mChecked.getPositions());
     }
 
     public int getSelectedItemPosition() {
-        if ( mCheckStates.size() == 0 ) {
+        if ( mChecked.size() == 0 ) {
             return RecyclerView.NO_POSITION;
         } else {
-            return mCheckStates.keyAt(0);
+            return mChecked.positionAt(0);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.database.AbstractWindowedCursor;
+import android.database.Cursor;
+import android.database.CursorWrapper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+import com.bumptech.glide.load.engine.cache.LruResourceCache;
+
+import java.io.PrintWriter;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Accounts for the app's largest native and image memory: the cursors handed out by the
+ * provider, with their cursor windows, and Glide's decoded images. Cursors are tracked from the
+ * provider query to their close; one that is garbage collected while still open is reported
+ * as leaked, with the place it was queried from in debug builds. The totals are part of the
+ * diagnostics dump.
+ */
+public final class MemoryAccounting {
+
+    public static final String LOG_TAG = "Sunshine";
+
+    // What the platform reserves for each cursor window, config_cursorWindowSize.
+    public static final int CURSOR_WINDOW_BYTES = 2 * 1024 * 1024;
+
+    // Records of the open cursors. The cursors themselves are only weakly reachable from here,
+    // so a cursor that is dropped without being closed gets collected, and reported.
+    private static final IdentityHashMap<CursorRecord, Boolean> sOpenCursors =
+        new IdentityHashMap<CursorRecord, Boolean>();
+    private static final AtomicInteger sQueriedCursors = new AtomicInteger();
+    private static final AtomicInteger sLeakedCursors = new AtomicInteger();
+
+    private static volatile LruResourceCache sMemoryCache;
+    private static volatile BitmapPool sBitmapPool;
+    private static volatile int sBitmapPoolBytes;
+
+    private MemoryAccounting() {}
+
+    /**
+     * @param label what the cursor is for, the provider route typically
+     * @return the cursor to hand out in its place
+     */
+    public static Cursor trackCursor(Cursor cursor, String label) {
+        if (null == cursor) return null;
+        CursorRecord record = new CursorRecord(cursor, label);
+        sQueriedCursors.incrementAndGet();
+        synchronized (sOpenCursors) {
+            sOpenCursors.put(record, Boolean.TRUE);
+        }
+        return new TrackedCursor(cursor, record);
+    }
+
+    /**
+     * Sets Glide's caches, as built by {@link SunshineGlideModule}.
+     */
+    static void setImageCaches(LruResourceCache memoryCache, BitmapPool bitmapPool, int bitmapPoolBytes) {
+        sMemoryCache = memoryCache;
+        sBitmapPool = bitmapPool;
+        sBitmapPoolBytes = bitmapPoolBytes;
+    }
+
+    public static int getOpenCursorCount() {
+        synchronized (sOpenCursors) {
+            return sOpenCursors.size();
+        }
+    }
+
+    /**
+     * @return the open cursors that have filled a cursor window
+     */
+    public static int getWindowedCursorCount() {
+        int count = 0;
+        for (CursorRecord cursor : getOpenCursors()) {
+            if (cursor.hasWindow()) count++;
+        }
+        return count;
+    }
+
+    /**
+     * @return the cursors tracked since the process started
+     */
+    public static int getQueriedCursorCount() {
+        return sQueriedCursors.get();
+    }
+
+    /**
+     * @return the cursors garbage collected without having been closed, since the process started
+     */
+    public static int getLeakedCursorCount() {
+        return sLeakedCursors.get();
+    }
+
+    /**
+     * @return the bytes of decoded images in Glide's memory cache, -1 if Glide isn't set up yet
+     */
+    public static int getImageCacheBytes() {
+        LruResourceCache memoryCache = sMemoryCache;
+        return null == memoryCache ? -1 : memoryCache.getCurrentSize();
+    }
+
+    private static List<CursorRecord> getOpenCursors() {
+        synchronized (sOpenCursors) {
+            return new ArrayList<CursorRecord>(sOpenCursors.keySet());
+        }
+    }
+
+    // @return whether the cursor of a record was still open
+    private static boolean onClosed(CursorRecord record) {
+        synchronized (sOpenCursors) {
+            return null != sOpenCursors.remove(record);
+        }
+    }
+
+    public static void dump(String prefix, PrintWriter writer) {
+        List<CursorRecord> cursors = getOpenCursors();
+        int windows = 0;
+        for (CursorRecord cursor : cursors) {
+            if (cursor.hasWindow()) windows++;
+        }
+        writer.print(prefix);
+        writer.print("Memory: ");
+        writer.print(cursors.size());
+        writer.print(" open cursors, ");
+        writer.print(windows);
+        writer.print(" cursor windows (");
+        writer.print(windows * (CURSOR_WINDOW_BYTES / 1024));
+        writer.print(" KB reserved), ");
+        writer.print(sLeakedCursors.get());
+        writer.print(" leaked of ");
+        writer.print(sQueriedCursors.get());
+        writer.println(" queried.");
+        writer.print(prefix);
+        writer.print("Images: ");
+        LruResourceCache memoryCache = sMemoryCache;
+        if (null == memoryCache) {
+            writer.println("Glide not set up.");
+        } else {
+            writer.print(memoryCache.getCurrentSize() / 1024);
+            writer.print(" of ");
+            writer.print(memoryCache.getMaxSize() / 1024);
+            writer.print(" KB in the memory cache, bitmap pool of ");
+            writer.print((null == sBitmapPool ? 0 : sBitmapPoolBytes) / 1024);
+            writer.println(" KB at most.");
+        }
+        long now = SystemClock.elapsedRealtime();
+        for (CursorRecord cursor : cursors) {
+            writer.print(prefix);
+            writer.print("  ");
+            writer.print(cursor.label);
+            writer.print(", open for ");
+            writer.print(now - cursor.openTime);
+            writer.println(" ms");
+            if (null != cursor.allocationSite) {
+                StackTraceElement[] frames = cursor.allocationSite.getStackTrace();
+                for (int i = 0; i < frames.length && i < 8; i++) {
+                    writer.print(prefix);
+                    writer.print("    at ");
+                    writer.println(frames[i]);
+                }
+            }
+        }
+    }
+
+    /*
+        What is known of an open cursor.
+     */
+    private static final class CursorRecord {
+        final String label;
+        final long openTime = SystemClock.elapsedRealtime();
+        // Only captured in debug builds: filling in a stack trace on every query costs.
+        final Throwable allocationSite = BuildConfig.DEBUG ? new Throwable("Cursor queried here") : null;
+        final WeakReference<Cursor> cursor;
+
+        CursorRecord(Cursor cursor, String label) {
+            this.cursor = new WeakReference<Cursor>(cursor);
+            this.label = label;
+        }
+
+        boolean hasWindow() {
+            Cursor cursor = this.cursor.get();
+            return cursor instanceof AbstractWindowedCursor && !cursor.isClosed()
+                && ((AbstractWindowedCursor) cursor).hasWindow();
+        }
+    }
+
+    /*
+        A provider cursor, tracked until it is closed or garbage collected.
+     */
+    private static final class TrackedCursor extends CursorWrapper {
+        private final CursorRecord mRecord;
+
+        TrackedCursor(Cursor cursor, CursorRecord record) {
+            super(cursor);
+            mRecord = record;
+        }
+
+        @Override
+        public void close() {
+            onClosed(mRecord);
+            super.close();
+        }
+
+        @Override
+        protected void finalize() throws Throwable {
+            try {
+                if (onClosed(mRecord)) {
+                    sLeakedCursors.incrementAndGet();
+                    Log.w(LOG_TAG, "MemoryAccounting: " + mRecord.label + " cursor was never closed.",
+                        mRecord.allocationSite);
+                    super.close();
+                }
+            } finally {
+                super.finalize();
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.ComponentCallbacks2;
+import android.util.Log;
+import android.util.SparseIntArray;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Sheds the app's caches under memory pressure. Caches register with the tier they belong to;
+ * each trim level from {@link ComponentCallbacks2#onTrimMemory(int)} maps to a tier, and every
+ * cache of that tier or a lower one is released. The mapping can be changed with
+ * {@link #setTierForLevel(int, int)}.
+ *
+ * The application forwards its callbacks here, on the main thread.
+ */
+public final class MemoryPressure {
+
+    public static final String LOG_TAG = "Sunshine";
+
+    /** Nothing is released. */
+    public static final int TIER_NONE = 0;
+    /** State kept ahead of need: preloaded rows, prefetched art. */
+    public static final int TIER_WARM = 1;
+    /** What the UI rebuilds cheaply: pooled list items, formatted text. */
+    public static final int TIER_UI = 2;
+    /** Decoded images. */
+    public static final int TIER_IMAGES = 3;
+    /** Everything, down to SQLite's own caches. */
+    public static final int TIER_ALL = 4;
+
+    /**
+     * A cache that can be released.
+     */
+    public interface Releasable {
+        /**
+         * Called on the main thread.
+         *
+         * @param tier the tier being released, at least the one the cache registered with
+         */
+        void release(int tier);
+    }
+
+    private static final class Registration {
+        final Releasable releasable;
+        final int tier;
+
+        Registration(Releasable releasable, int tier) {
+            this.releasable = releasable;
+            this.tier = tier;
+        }
+    }
+
+    private static final List<Registration> sRegistrations = new CopyOnWriteArrayList<Registration>();
+    private static final SparseIntArray sTiers = new SparseIntArray();
+
+    static {
+        // While running: warm state first, then whatever isn't on screen.
+        sTiers.put(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE, TIER_WARM);
+        sTiers.put(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW, TIER_WARM);
+        sTiers.put(ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL, TIER_IMAGES);
+        // Hidden, then in the background: the further down the LRU list, the more goes.
+        sTiers.put(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN, TIER_UI);
+        sTiers.put(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND, TIER_IMAGES);
+        sTiers.put(ComponentCallbacks2.TRIM_MEMORY_MODERATE, TIER_ALL);
+        sTiers.put(ComponentCallbacks2.TRIM_MEMORY_COMPLETE, TIER_ALL);
+    }
+
+    private MemoryPressure() {}
+
+    public static void register(Releasable releasable, int tier) {
+        sRegistrations.add(new Registration(releasable, tier));
+    }
+
+    public static void unregister(Releasable releasable) {
+        for (Registration registration : sRegistrations) {
+            if (registration.releasable == releasable) {
+                sRegistrations.remove(registration);
+            }
+        }
+    }
+
+    public static void setTierForLevel(int level, int tier) {
+        sTiers.put(level, tier);
+    }
+
+    /**
+     * @return the tier released at a trim level. Unknown levels map to the tier of the closest
+     * known level below them.
+     */
+    public static int getTierForLevel(int level) {
+        int tier = TIER_NONE;
+        for (int i = 0; i < sTiers.size() && sTiers.keyAt(i) <= level; i++) {
+            tier = sTiers.valueAt(i);
+        }
+        return tier;
+    }
+
+    public static void onTrimMemory(int level) {
+        release(level, getTierForLevel(level));
+    }
+
+    public static void onLowMemory() {
+        release(ComponentCallbacks2.TRIM_MEMORY_COMPLETE, TIER_ALL);
+    }
+
+    private static void release(int level, int tier) {
+        int released = 0;
+        for (Registration registration : sRegistrations) {
+            if (registration.tier <= tier) {
+                registration.releasable.release(tier);
+                released++;
+            }
+        }
+        Diagnostics.record(Diagnostics.MEMORY_TRIM, level, tier);
+        Log.i(LOG_TAG, "MemoryPressure: trim level " + level + ", released " + released
+            + " caches up to tier " + tier + ".");
+    }
+}
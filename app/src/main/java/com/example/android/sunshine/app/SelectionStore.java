@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import java.util.Arrays;
+
+/**
+ * The checked rows of a list, as row ids mapped to their last known adapter position. Ids and
+ * positions are kept in parallel primitive arrays sorted by id, so lookups are binary searches
+ * and nothing is boxed.
+ */
+public class SelectionStore {
+
+    /**
+     * Finds the current position of a row.
+     */
+    public interface PositionLookup {
+        /**
+         * @return the position of the row with an id, or a negative value if it is gone.
+         */
+        int getPosition(long id);
+    }
+
+    private long[] mIds;
+    private int[] mPositions;
+    private int mSize;
+
+    public SelectionStore() {
+        mIds = new long[4];
+        mPositions = new int[4];
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public long idAt(int index) {
+        return mIds[index];
+    }
+
+    public int positionAt(int index) {
+        return mPositions[index];
+    }
+
+    public boolean contains(long id) {
+        return Arrays.binarySearch(mIds, 0, mSize, id) >= 0;
+    }
+
+    /**
+     * @return the position stored for an id, or -1 if it isn't checked.
+     */
+    public int getPosition(long id) {
+        int index = Arrays.binarySearch(mIds, 0, mSize, id);
+        return index >= 0 ? mPositions[index] : -1;
+    }
+
+    /**
+     * @return whether the id wasn't checked before.
+     */
+    public boolean put(long id, int position) {
+        int index = Arrays.binarySearch(mIds, 0, mSize, id);
+        if (index >= 0) {
+            mPositions[index] = position;
+            return false;
+        }
+        index = ~index;
+        if (mSize == mIds.length) {
+            mIds = Arrays.copyOf(mIds, mSize * 2);
+            mPositions = Arrays.copyOf(mPositions, mSize * 2);
+        }
+        System.arraycopy(mIds, index, mIds, index + 1, mSize - index);
+        System.arraycopy(mPositions, index, mPositions, index + 1, mSize - index);
+        mIds[index] = id;
+        mPositions[index] = position;
+        mSize++;
+        return true;
+    }
+
+    /**
+     * @return the position the id had, or -1 if it wasn't checked.
+     */
+    public int remove(long id) {
+        int index = Arrays.binarySearch(mIds, 0, mSize, id);
+        if (index < 0) return -1;
+        int position = mPositions[index];
+        System.arraycopy(mIds, index + 1, mIds, index, mSize - index - 1);
+        System.arraycopy(mPositions, index + 1, mPositions, index, mSize - index - 1);
+        mSize--;
+        return position;
+    }
+
+    public void clear() {
+        mSize = 0;
+    }
+
+    /**
+     * Updates every position in one pass after the rows changed, dropping the ids whose row is
+     * gone.
+     */
+    public void remap(PositionLookup lookup) {
+        int kept = 0;
+        for (int i = 0; i < mSize; i++) {
+            int position = lookup.getPosition(mIds[i]);
+            if (position >= 0) {
+                mIds[kept] = mIds[i];
+                mPositions[kept] = position;
+                kept++;
+            }
+        }
+        mSize = kept;
+    }
+
+    public long[] getIds() {
+        return Arrays.copyOf(mIds, mSize);
+    }
+
+    public int[] getPositions() {
+        return Arrays.copyOf(mPositions, mSize);
+    }
+
+    /**
+     * Replaces the contents with ids and positions as returned by {@link #getIds()} and
+     * {@link #getPositions()}.
+     */
+    public void set(long[] ids, int[] positions) {
+        clear();
+        for (int i = 0; i < ids.length; i++) {
+            put(ids[i], positions[i]);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * App-wide holder of the current {@link SunshineSettings}. The snapshot is rebuilt when the
+ * preferences change, and listeners are told about it; reading it costs a field access.
+ */
+public class SettingsStore implements SharedPreferences.OnSharedPreferenceChangeListener {
+
+    public interface Listener {
+        /**
+         * Called on the main thread after the settings changed.
+         */
+        void onSettingsChanged(SunshineSettings oldSettings, SunshineSettings newSettings);
+    }
+
+    private static SettingsStore sInstance;
+
+    private final Context mContext;
+    private final SharedPreferences mPrefs;
+    private final List<Listener> mListeners = new CopyOnWriteArrayList<Listener>();
+    private volatile SunshineSettings mSettings;
+
+    public static synchronized SettingsStore getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new SettingsStore(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private SettingsStore(Context context) {
+        mContext = context;
+        mPrefs = PreferenceManager.getDefaultSharedPreferences(context);
+        mSettings = SunshineSettings.read(context, mPrefs);
+        // SharedPreferences only keeps a weak reference to listeners; this singleton keeps
+        // itself alive.
+        mPrefs.registerOnSharedPreferenceChangeListener(this);
+    }
+
+    public SunshineSettings getSettings() {
+        SunshineSettings settings = mSettings;
+        // The resource strings of the snapshot are localized; a locale change recreates the
+        // activities but not this singleton.
+        if (!settings.locale.equals(Locale.getDefault())) {
+            settings = SunshineSettings.read(mContext, mPrefs);
+            mSettings = settings;
+        }
+        return settings;
+    }
+
+    public void addListener(Listener listener) {
+        mListeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    @Override
+    public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+        SunshineSettings oldSettings = mSettings;
+        mSettings = SunshineSettings.read(mContext, sharedPreferences);
+        for (Listener listener : mListeners) {
+            listener.onSettingsChanged(oldSettings, mSettings);
+        }
+    }
+}
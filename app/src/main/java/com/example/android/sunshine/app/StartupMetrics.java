@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.PrintWriter;
+
+/**
+ * Cold start milestones of the process, in {@link SystemClock#uptimeMillis()}: process start,
+ * as seen by the application class, the first frame of the main activity, the first frame
+ * showing forecast rows, whether from the last rendered forecast or the database, and the
+ * first frame showing loaded rows. Each milestone is only recorded once per process, so later activities
+ * don't count as a cold start.
+ */
+public final class StartupMetrics {
+
+    public static final String LOG_TAG = "Sunshine";
+
+    private static volatile long sProcessStart;
+    private static volatile long sFirstFrame;
+    private static volatile long sFirstDataFrame;
+    private static volatile boolean sFirstDataFromSnapshot;
+    private static volatile long sFirstLoadedFrame;
+
+    private StartupMetrics() {}
+
+    static void markProcessStart() {
+        if (sProcessStart == 0) {
+            sProcessStart = SystemClock.uptimeMillis();
+        }
+    }
+
+    public static void markFirstFrame() {
+        if (sProcessStart != 0 && sFirstFrame == 0) {
+            sFirstFrame = SystemClock.uptimeMillis();
+            Log.i(LOG_TAG, "StartupMetrics: first frame " + getFirstFrameMillis() + " ms after process start.");
+        }
+    }
+
+    /**
+     * @param fromSnapshot whether the rows drawn come from the last rendered forecast rather
+     * than a load
+     */
+    public static void markFirstDataFrame(boolean fromSnapshot) {
+        if (sProcessStart == 0) return;
+        long now = SystemClock.uptimeMillis();
+        if (sFirstDataFrame == 0) {
+            sFirstDataFrame = now;
+            sFirstDataFromSnapshot = fromSnapshot;
+            Log.i(LOG_TAG, "StartupMetrics: first frame with data " + getFirstDataFrameMillis()
+                + " ms after process start, from the " + (fromSnapshot ? "last rendered forecast." : "database."));
+        }
+        if (!fromSnapshot && sFirstLoadedFrame == 0) {
+            sFirstLoadedFrame = now;
+            Log.i(LOG_TAG, "StartupMetrics: first frame with loaded data " + getFirstLoadedFrameMillis()
+                + " ms after process start.");
+        }
+    }
+
+    /**
+     * @return milliseconds from process start to the first frame, -1 if not drawn yet.
+     */
+    public static long getFirstFrameMillis() {
+        return sinceProcessStart(sFirstFrame);
+    }
+
+    /**
+     * @return milliseconds from process start to the first frame with data, -1 if not drawn yet.
+     */
+    public static long getFirstDataFrameMillis() {
+        return sinceProcessStart(sFirstDataFrame);
+    }
+
+    /**
+     * @return milliseconds from process start to the first frame with loaded data, -1 if not
+     * drawn yet. The gap with {@link #getFirstDataFrameMillis()} is what the last rendered
+     * forecast saved.
+     */
+    public static long getFirstLoadedFrameMillis() {
+        return sinceProcessStart(sFirstLoadedFrame);
+    }
+
+    private static long sinceProcessStart(long time) {
+        return time == 0 || sProcessStart == 0 ? -1 : time - sProcessStart;
+    }
+
+    public static void dump(String prefix, PrintWriter writer) {
+        writer.print(prefix);
+        writer.print("Startup (ms after process start): first frame ");
+        writer.print(getFirstFrameMillis());
+        writer.print(", first frame with data ");
+        writer.print(getFirstDataFrameMillis());
+        writer.print(sFirstDataFromSnapshot ? " (last rendered forecast)" : " (database)");
+        writer.print(", first frame with loaded data ");
+        writer.println(getFirstLoadedFrameMillis());
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.android.sunshine.app.data.WeatherContract;
+import com.example.android.sunshine.app.widget.ForecastWidgetUpdater;
+
+/**
+ * Work of a cold start that doesn't need the main thread, done on a background thread while the
+ * main thread inflates the first activity: reading the last rendered forecast, reading the
+ * preferences into the {@link SettingsStore}, and opening the database, which creates it on
+ * first install. The main
+ * thread then finds both ready, or waits on the same locks instead of doing the work itself.
+ * Last, it asks the widget host whether widgets are placed, a binder call every process start
+ * would otherwise make on the main thread, and starts following the data for them if so.
+ */
+public final class StartupPipeline {
+
+    public static final String LOG_TAG = "Sunshine";
+
+    private StartupPipeline() {}
+
+    public static void start(Context context) {
+        final Context appContext = context.getApplicationContext();
+        new Thread("StartupPipeline") {
+            @Override
+            public void run() {
+                Tracing.beginSection("StartupPipeline");
+                long start = SystemClock.uptimeMillis();
+                try {
+                    ForecastSnapshotFile.preload(appContext);
+                    SettingsStore.getInstance(appContext);
+                    long preferences = SystemClock.uptimeMillis() - start;
+                    warmDatabase(appContext);
+                    Log.i(LOG_TAG, "StartupPipeline: preferences loaded in " + preferences
+                        + " ms, database open in " + (SystemClock.uptimeMillis() - start - preferences) + " ms.");
+                    ForecastWidgetUpdater.observeIfInUse(appContext);
+                } finally {
+                    Tracing.endSection();
+                }
+            }
+        }.start();
+    }
+
+    // The first query opens the database and reads its schema; any query will do.
+    private static void warmDatabase(Context context) {
+        Cursor cursor = context.getContentResolver().query(WeatherContract.LocationEntry.CONTENT_URI,
+            new String[]{WeatherContract.LocationEntry._ID}, null, null, null);
+        if (null != cursor) {
+            cursor.getCount();
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.app.Application;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.StrictMode;
+
+import com.bumptech.glide.Glide;
+import com.example.android.sunshine.app.muzei.WeatherMuzeiSource;
+
+public class SunshineApplication extends Application {
+
+    public SunshineApplication() {
+        // As early as app code runs in a new process.
+        StartupMetrics.markProcessStart();
+    }
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        // Debug builds log disk and network access on the main thread and leaked cursors, so
+        // startup regressions show up in logcat.
+        if (BuildConfig.DEBUG) {
+            StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                .detectAll()
+                .penaltyLog()
+                .build());
+            StrictMode.setVmPolicy(new StrictMode.VmPolicy.Builder()
+                .detectAll()
+                .penaltyLog()
+                .build());
+        }
+        StartupPipeline.start(this);
+        registerCaches();
+        WeatherMuzeiSource.observeIfEnabled(this);
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        MemoryPressure.onTrimMemory(level);
+    }
+
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+        MemoryPressure.onLowMemory();
+    }
+
+    // Caches living as long as the process. The list registers its own, and the view pool.
+    private void registerCaches() {
+        MemoryPressure.register(new MemoryPressure.Releasable() {
+            @Override
+            public void release(int tier) {
+                ForecastSnapshotFile.releasePreloaded();
+            }
+        }, MemoryPressure.TIER_WARM);
+        MemoryPressure.register(new MemoryPressure.Releasable() {
+            @Override
+            public void release(int tier) {
+                // Half of the memory cache and bitmap pool first, then all of them.
+                if (tier >= MemoryPressure.TIER_ALL) {
+                    Glide.get(SunshineApplication.this).clearMemory();
+                } else {
+                    Glide.get(SunshineApplication.this).trimMemory(TRIM_MEMORY_BACKGROUND);
+                }
+            }
+        }, MemoryPressure.TIER_IMAGES);
+        MemoryPressure.register(new MemoryPressure.Releasable() {
+            @Override
+            public void release(int tier) {
+                // Page and statement caches SQLite holds without needing them.
+                SQLiteDatabase.releaseMemory();
+            }
+        }, MemoryPressure.TIER_ALL);
+    }
+}
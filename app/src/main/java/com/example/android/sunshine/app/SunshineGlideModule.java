@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.os.Build;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.GlideBuilder;
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+import com.bumptech.glide.load.engine.bitmap_recycle.LruBitmapPool;
+import com.bumptech.glide.load.engine.cache.LruResourceCache;
+import com.bumptech.glide.load.engine.cache.MemorySizeCalculator;
+import com.bumptech.glide.module.GlideModule;
+
+/**
+ * Builds Glide's memory cache and bitmap pool the way Glide would by default, keeping a hold on
+ * them so {@link MemoryAccounting} can tell how many bytes of images are cached. Declared in
+ * the manifest.
+ */
+public class SunshineGlideModule implements GlideModule {
+
+    @Override
+    public void applyOptions(Context context, GlideBuilder builder) {
+        MemorySizeCalculator calculator = new MemorySizeCalculator(context);
+        LruResourceCache memoryCache = new LruResourceCache(calculator.getMemoryCacheSize());
+        builder.setMemoryCache(memoryCache);
+        // Glide doesn't pool bitmaps before Honeycomb, where they can't be reused for decoding.
+        BitmapPool bitmapPool = null;
+        int bitmapPoolSize = 0;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+            bitmapPoolSize = calculator.getBitmapPoolSize();
+            bitmapPool = new LruBitmapPool(bitmapPoolSize);
+            builder.setBitmapPool(bitmapPool);
+        }
+        MemoryAccounting.setImageCaches(memoryCache, bitmapPool, bitmapPoolSize);
+    }
+
+    @Override
+    public void registerComponents(Context context, Glide glide) {}
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.util.Locale;
+
+/**
+ * Immutable snapshot of the user's settings, together with the resource strings needed to
+ * render with them. Building one reads the preferences and resources once; everything on the
+ * bind path then reads plain fields.
+ */
+public final class SunshineSettings {
+
+    public final String locationSetting;
+    public final boolean isMetric;
+    public final boolean usingLocalGraphics;
+    // Format of the art URLs of the selected pack, with one %s for the art key.
+    public final String artPackUrlFormat;
+
+    // Resource strings used when binding forecast rows.
+    public final String temperatureFormat;
+    public final String a11yHighTempFormat;
+    public final String a11yLowTempFormat;
+    // Locale the resource strings were read in.
+    public final Locale locale;
+
+    private SunshineSettings(String locationSetting, boolean isMetric, String artPackUrlFormat,
+        boolean usingLocalGraphics, String temperatureFormat, String a11yHighTempFormat,
+        String a11yLowTempFormat, Locale locale) {
+        this.locationSetting = locationSetting;
+        this.isMetric = isMetric;
+        this.artPackUrlFormat = artPackUrlFormat;
+        this.usingLocalGraphics = usingLocalGraphics;
+        this.temperatureFormat = temperatureFormat;
+        this.a11yHighTempFormat = a11yHighTempFormat;
+        this.a11yLowTempFormat = a11yLowTempFormat;
+        this.locale = locale;
+    }
+
+    static SunshineSettings read(Context context, SharedPreferences prefs) {
+        String metric = context.getString(R.string.pref_units_metric);
+        String sunshineArtPack = context.getString(R.string.pref_art_pack_sunshine);
+        String artPack = prefs.getString(context.getString(R.string.pref_art_pack_key), sunshineArtPack);
+        return new SunshineSettings(
+            prefs.getString(context.getString(R.string.pref_location_key),
+                context.getString(R.string.pref_location_default)),
+            prefs.getString(context.getString(R.string.pref_units_key), metric).equals(metric),
+            artPack,
+            artPack.equals(sunshineArtPack),
+            context.getString(R.string.format_temperature),
+            context.getString(R.string.a11y_high_temp),
+            context.getString(R.string.a11y_low_temp),
+            Locale.getDefault());
+    }
+
+    /**
+     * @return true if rows bound with the other settings would look different.
+     */
+    public boolean rendersDifferentlyFrom(SunshineSettings other) {
+        return isMetric != other.isMetric
+            || !locale.equals(other.locale)
+            || usingLocalGraphics != other.usingLocalGraphics
+            || !artPackUrlFormat.equals(other.artPackUrlFormat);
+    }
+}
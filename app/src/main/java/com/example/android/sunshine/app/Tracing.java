@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.os.Build;
+import android.os.Trace;
+
+/**
+ * Systrace sections for the app's hot paths. {@link BuildConfig#TRACING} is a compile-time
+ * constant, false in release builds, so the bodies below are compiled out there and a call
+ * costs no more than an empty static method.
+ *
+ * Section names must be string constants, so that tracing never builds strings; sections must
+ * be ended on the thread that began them, in reverse order.
+ */
+public final class Tracing {
+
+    private Tracing() {}
+
+    public static void beginSection(String name) {
+        if (BuildConfig.TRACING && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.beginSection(name);
+        }
+    }
+
+    public static void endSection() {
+        if (BuildConfig.TRACING && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.endSection();
+        }
+    }
+}
@@ -21,8 +21,6 @@ import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
 import android.preference.PreferenceManager;
 
-import java.util.Locale;
-
 public class Utility {
     public static String getPreferredLocation(Context context) {
         SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
@@ -44,6 +42,17 @@ public class Utility {
         return String.format(context.getString(R.string.format_temperature), temperature);
     }
 
+    /**
+     * Same as {@link #formatTemperature(Context, double)}, without any preference or resource
+     * lookup.
+     */
+    public static String formatTemperature(SunshineSettings settings, double temperature) {
+        if (!settings.isMetric) {
+            temperature = (temperature * 1.8) + 32;
+        }
+        return String.format(settings.temperatureFormat, temperature);
+    }
+
     /**
      * Helper method to provide the icon resource id according to the weather condition id returned
      * by the OpenWeatherMap call.
@@ -51,32 +60,23 @@ public class Utility {
      * @return resource id for the corresponding icon. -1 if no relation is found.
      */
     public static int getIconResourceForWeatherCondition(int weatherId) {
-        // Based on weather code data found at:
-        // http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
-        if (weatherId >= 200 && weatherId <= 232) {
-            return R.drawable.ic_storm;
-        } else if (weatherId >= 300 && weatherId <= 321) {
-            return R.drawable.ic_light_rain;
-        } else if (weatherId >= 500 && weatherId <= 504) {
-            return R.drawable.ic_rain;
-        } else if (weatherId == 511) {
-            return R.drawable.ic_snow;
-        } else if (weatherId >= 520 && weatherId <= 531) {
-            return R.drawable.ic_rain;
-        } else if (weatherId >= 600 && weatherId <= 622) {
-            return R.drawable.ic_snow;
-        } else if (weatherId >= 701 && weatherId <= 761) {
-            return R.drawable.ic_fog;
-        } else if (weatherId == 761 || weatherId == 781) {
-            return R.drawable.ic_storm;
-        } else if (weatherId == 800) {
-            return R.drawable.ic_clear;
-        } else if (weatherId == 801) {
-            return R.drawable.ic_light_clouds;
-        } else if (weatherId >= 802 && weatherId <= 804) {
-            return R.drawable.ic_cloudy;
+        return WeatherConditions.getIconResource(weatherId);
+    }
+
+    /**
+     * Helper method to provide a short description of the weather condition id returned by the
+     * OpenWeatherMap call.
+     *
+     * @param context Context to use for resource localization
+     * @param weatherId from OpenWeatherMap API response
+     * @return localized description of the condition
+     */
+    public static String getStringForWeatherCondition(Context context, int weatherId) {
+        int stringId = WeatherConditions.getDescriptionResource(weatherId);
+        if (stringId == 0) {
+            return context.getString(R.string.condition_unknown, weatherId);
         }
-        return -1;
+        return context.getString(stringId);
     }
 
     /**
@@ -103,33 +103,15 @@ public class Utility {
     public static String getArtUrlForWeatherCondition(Context context, int weatherId) {
         SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
         String formatArtUrl = prefs.getString(context.getString(R.string.pref_art_pack_key), context.getString(R.string.pref_art_pack_sunshine));
+        return WeatherConditions.getArtUrl(formatArtUrl, weatherId);
+    }
 
-        // Based on weather code data found at:
-        // http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
-        if (weatherId >= 200 && weatherId <= 232) {
-            return String.format(Locale.US, formatArtUrl, "storm");
-        } else if (weatherId >= 300 && weatherId <= 321) {
-            return String.format(Locale.US, formatArtUrl, "light_rain");
-        } else if (weatherId >= 500 && weatherId <= 504) {
-            return String.format(Locale.US, formatArtUrl, "rain");
-        } else if (weatherId == 511) {
-            return String.format(Locale.US, formatArtUrl, "snow");
-        } else if (weatherId >= 520 && weatherId <= 531) {
-            return String.format(Locale.US, formatArtUrl, "rain");
-        } else if (weatherId >= 600 && weatherId <= 622) {
-            return String.format(Locale.US, formatArtUrl, "snow");
-        } else if (weatherId >= 701 && weatherId <= 761) {
-            return String.format(Locale.US, formatArtUrl, "fog");
-        } else if (weatherId == 761 || weatherId == 781) {
-            return String.format(Locale.US, formatArtUrl, "storm");
-        } else if (weatherId == 800) {
-            return String.format(Locale.US, formatArtUrl, "clear");
-        } else if (weatherId == 801) {
-            return String.format(Locale.US, formatArtUrl, "light_clouds");
-        } else if (weatherId >= 802 && weatherId <= 804) {
-            return String.format(Locale.US, formatArtUrl, "clouds");
-        }
-        return null;
+    /**
+     * Same as {@link #getArtUrlForWeatherCondition(Context, int)}, using the art pack of a
+     * settings snapshot instead of reading the preference.
+     */
+    public static String getArtUrlForWeatherCondition(SunshineSettings settings, int weatherId) {
+        return WeatherConditions.getArtUrl(settings.artPackUrlFormat, weatherId);
     }
 
     /**
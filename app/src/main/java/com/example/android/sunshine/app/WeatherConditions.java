@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import java.util.Locale;
+
+/**
+ * Registry of OpenWeatherMap condition ids, resolved with dense lookup tables instead of a chain
+ * of range checks. Based on weather code data found at:
+ * http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
+ */
+public final class WeatherConditions {
+
+    static final int MAX_ID = 999;
+
+    private static final int NONE = -1;
+    private static final int STORM = 0;
+    private static final int LIGHT_RAIN = 1;
+    private static final int RAIN = 2;
+    private static final int SNOW = 3;
+    private static final int FOG = 4;
+    private static final int CLEAR = 5;
+    private static final int LIGHT_CLOUDS = 6;
+    private static final int CLOUDS = 7;
+
+    // The following are indexed by condition group.
+    private static final String[] ART_KEYS = {
+        "storm", "light_rain", "rain", "snow", "fog", "clear", "light_clouds", "clouds"
+    };
+    private static final int[] ICONS = {
+        R.drawable.ic_storm, R.drawable.ic_light_rain, R.drawable.ic_rain, R.drawable.ic_snow,
+        R.drawable.ic_fog, R.drawable.ic_clear, R.drawable.ic_light_clouds, R.drawable.ic_cloudy
+    };
+    private static final int[] DESCRIPTIONS = {
+        R.string.condition_storm, R.string.condition_light_rain, R.string.condition_rain,
+        R.string.condition_snow, R.string.condition_fog, R.string.condition_clear,
+        R.string.condition_light_clouds, R.string.condition_clouds
+    };
+
+    // Condition group of every id from 0 to MAX_ID.
+    private static final byte[] sGroups = new byte[MAX_ID + 1];
+
+    static {
+        fill(0, MAX_ID, NONE);
+        fill(200, 232, STORM);
+        fill(300, 321, LIGHT_RAIN);
+        fill(500, 504, RAIN);
+        fill(511, 511, SNOW);
+        fill(520, 531, RAIN);
+        fill(600, 622, SNOW);
+        fill(701, 761, FOG);
+        fill(781, 781, STORM);
+        fill(800, 800, CLEAR);
+        fill(801, 801, LIGHT_CLOUDS);
+        fill(802, 804, CLOUDS);
+    }
+
+    private static void fill(int from, int to, int group) {
+        for (int id = from; id <= to; id++) {
+            sGroups[id] = (byte) group;
+        }
+    }
+
+    /**
+     * Art URLs of one art pack, built once when the pack is first used.
+     */
+    private static final class ArtPack {
+        final String format;
+        final String[] urls = new String[ART_KEYS.length];
+
+        ArtPack(String format) {
+            this.format = format;
+            for (int i = 0; i < ART_KEYS.length; i++) {
+                urls[i] = String.format(Locale.US, format, ART_KEYS[i]);
+            }
+        }
+    }
+
+    private static volatile ArtPack sArtPack;
+
+    private WeatherConditions() {}
+
+    private static int group(int weatherId) {
+        return weatherId < 0 || weatherId > MAX_ID ? NONE : sGroups[weatherId];
+    }
+
+    /**
+     * @return resource id of the icon for the condition. -1 if no relation is found.
+     */
+    public static int getIconResource(int weatherId) {
+        int group = group(weatherId);
+        return group == NONE ? -1 : ICONS[group];
+    }
+
+    /**
+     * @return resource id of a short description of the condition. 0 if no relation is found.
+     */
+    public static int getDescriptionResource(int weatherId) {
+        int group = group(weatherId);
+        return group == NONE ? 0 : DESCRIPTIONS[group];
+    }
+
+    /**
+     * @return the key of the condition in art pack URLs. null if no relation is found.
+     */
+    public static String getArtKey(int weatherId) {
+        int group = group(weatherId);
+        return group == NONE ? null : ART_KEYS[group];
+    }
+
+    /**
+     * @param formatArtUrl URL format of the art pack, with one %s for the art key
+     * @return url for the corresponding weather artwork. null if no relation is found.
+     */
+    public static String getArtUrl(String formatArtUrl, int weatherId) {
+        int group = group(weatherId);
+        if (group == NONE) return null;
+        return getArtPack(formatArtUrl).urls[group];
+    }
+
+    /**
+     * @return the URL of every artwork of an art pack, once each.
+     */
+    public static String[] getArtUrls(String formatArtUrl) {
+        return getArtPack(formatArtUrl).urls.clone();
+    }
+
+    private static ArtPack getArtPack(String formatArtUrl) {
+        ArtPack pack = sArtPack;
+        if (pack == null || !pack.format.equals(formatArtUrl)) {
+            pack = new ArtPack(formatArtUrl);
+            sArtPack = pack;
+        }
+        return pack;
+    }
+}
@@ -15,17 +15,30 @@
  */
 package com.example.android.sunshine.app.activity;
 
+import android.content.Intent;
 import android.net.Uri;
 import android.os.Bundle;
 import android.support.v7.app.AppCompatActivity;
 import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
 
+import com.example.android.sunshine.app.Diagnostics;
+import com.example.android.sunshine.app.MemoryAccounting;
 import com.example.android.sunshine.app.R;
-import com.example.android.sunshine.app.Utility;
+import com.example.android.sunshine.app.SettingsStore;
+import com.example.android.sunshine.app.StartupMetrics;
+import com.example.android.sunshine.app.SunshineSettings;
+import com.example.android.sunshine.app.Tracing;
 import com.example.android.sunshine.app.data.WeatherContract;
 import com.example.android.sunshine.app.fragment.ForecastFragment;
+import com.example.android.sunshine.app.sync.RefreshScheduler;
+import com.example.android.sunshine.app.sync.RefreshStateStore;
 
-public class MainActivity extends AppCompatActivity {
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+
+public class MainActivity extends AppCompatActivity implements SettingsStore.Listener {
 
     //--------------------------------------------------
     // Constants
@@ -38,6 +51,7 @@ public class MainActivity extends AppCompatActivity {
     //--------------------------------------------------
 
     private String mLocation;
+    private SettingsStore mSettingsStore;
 
     //--------------------------------------------------
     // Activity Life Cycle
@@ -46,10 +60,27 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         Log.i(LOG_TAG, "MainActivity.onCreate().");
+        Tracing.beginSection("MainActivity.onCreate");
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
+        final View decorView = getWindow().getDecorView();
+        decorView.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                decorView.getViewTreeObserver().removeOnPreDrawListener(this);
+                StartupMetrics.markFirstFrame();
+                return true;
+            }
+        });
 
-        mLocation = Utility.getPreferredLocation(this);
+        mSettingsStore = SettingsStore.getInstance(this);
+        mLocation = mSettingsStore.getSettings().locationSetting;
+        // Once per launch: a rotation neither views the location again nor calls for a refresh,
+        // whose request would also replace the deadline the policy planned.
+        if (savedInstanceState == null) {
+            new RefreshStateStore(this).recordView(mLocation);
+            RefreshScheduler.requestRefresh(this);
+        }
         Uri contentUri = getIntent() != null ? getIntent().getData() : null;
 
         ForecastFragment forecastFragment = ((ForecastFragment)getSupportFragmentManager()
@@ -57,13 +88,64 @@ public class MainActivity extends AppCompatActivity {
         if (contentUri != null) {
             forecastFragment.setInitialSelectedDate(WeatherContract.WeatherEntry.getDateFromUri(contentUri));
         }
+
+        // Start prefetching as soon as the location changes, not when we are next resumed.
+        mSettingsStore.addListener(this);
+        Tracing.endSection();
+    }
+
+    // A deep link into an existing task scrolls to its date instead of recreating the list.
+    @Override
+    protected void onNewIntent(Intent intent) {
+        Log.i(LOG_TAG, "MainActivity.onNewIntent().");
+        super.onNewIntent(intent);
+        setIntent(intent);
+        Uri contentUri = intent.getData();
+        ForecastFragment forecastFragment = ((ForecastFragment)getSupportFragmentManager()
+            .findFragmentById(R.id.fragment_forecast));
+        if (contentUri != null && null != forecastFragment) {
+            forecastFragment.scrollToDate(WeatherContract.WeatherEntry.getDateFromUri(contentUri));
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        Log.i(LOG_TAG, "MainActivity.onDestroy().");
+        mSettingsStore.removeListener(this);
+        super.onDestroy();
     }
 
     @Override
     protected void onResume() {
         Log.i(LOG_TAG, "MainActivity.onResume().");
         super.onResume();
-        String location = Utility.getPreferredLocation(this);
+        onPreferredLocationMaybeChanged();
+    }
+
+    // Appends the startup metrics, memory totals and diagnostics events to "adb shell dumpsys activity" for this activity.
+    @Override
+    public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(prefix, fd, writer, args);
+        StartupMetrics.dump(prefix, writer);
+        MemoryAccounting.dump(prefix, writer);
+        Diagnostics.dump(prefix, writer);
+    }
+
+    //--------------------------------------------------
+    // SettingsStore Listener
+    //--------------------------------------------------
+
+    @Override
+    public void onSettingsChanged(SunshineSettings oldSettings, SunshineSettings newSettings) {
+        onPreferredLocationMaybeChanged();
+    }
+
+    //--------------------------------------------------
+    // Methods
+    //--------------------------------------------------
+
+    private void onPreferredLocationMaybeChanged() {
+        String location = mSettingsStore.getSettings().locationSetting;
         // Update the location in our second pane using the fragment manager.
         if (location != null && !location.equals(mLocation)) {
             ForecastFragment ff = (ForecastFragment)getSupportFragmentManager().findFragmentById(R.id.fragment_forecast);
@@ -71,6 +153,8 @@ public class MainActivity extends AppCompatActivity {
                 ff.onLocationChanged();
             }
             mLocation = location;
+            new RefreshStateStore(this).recordView(mLocation);
+            RefreshScheduler.requestRefresh(this);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes the forecasts selected by an export URI to a stream, as CSV or newline-delimited JSON.
+ * Rows are written while the query cursor is walked, so memory use doesn't depend on the number of
+ * rows exported.
+ */
+class ForecastExporter {
+
+    private static final String[] COLUMNS = {
+        WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING,
+        WeatherContract.WeatherEntry.COLUMN_DATE,
+        WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
+        WeatherContract.WeatherEntry.COLUMN_SHORT_DESC,
+        WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
+        WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
+        WeatherContract.WeatherEntry.COLUMN_HUMIDITY,
+        WeatherContract.WeatherEntry.COLUMN_PRESSURE,
+        WeatherContract.WeatherEntry.COLUMN_WIND_SPEED,
+        WeatherContract.WeatherEntry.COLUMN_DEGREES
+    };
+
+    // These indices are tied to COLUMNS. Every column from FIRST_REAL_COLUMN on is a real.
+    private static final int COL_LOCATION_SETTING = 0;
+    private static final int COL_DATE = 1;
+    private static final int COL_WEATHER_ID = 2;
+    private static final int COL_SHORT_DESC = 3;
+    private static final int FIRST_REAL_COLUMN = 4;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String mTables;
+    private final String mLocationSetting;
+    private final long mStartDate;
+    private final long mEndDate;
+    private final boolean mNdjson;
+
+    /**
+     * Reads the export parameters of a URI, so a malformed one is rejected before the export
+     * starts.
+     *
+     * @throws IllegalArgumentException if a date parameter isn't a number
+     */
+    ForecastExporter(String tables, Uri uri) {
+        mTables = tables;
+        mLocationSetting = WeatherContract.ExportEntry.getLocationSettingFromUri(uri);
+        mStartDate = WeatherContract.ExportEntry.getStartDateFromUri(uri);
+        mEndDate = WeatherContract.ExportEntry.getEndDateFromUri(uri);
+        mNdjson = WeatherContract.ExportEntry.FORMAT_NDJSON.equals(
+            WeatherContract.ExportEntry.getFormatFromUri(uri));
+    }
+
+    Cursor query(SQLiteDatabase db) {
+        List<String> selectionArgs = new ArrayList<String>();
+        StringBuilder selection = new StringBuilder("1");
+        if (mLocationSetting != null) {
+            selection.append(" AND ").append(WeatherContract.LocationEntry.TABLE_NAME).append('.')
+                .append(WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING).append(" = ?");
+            selectionArgs.add(mLocationSetting);
+        }
+        if (mStartDate != 0) {
+            selection.append(" AND ").append(WeatherContract.WeatherEntry.COLUMN_DATE).append(" >= ?");
+            selectionArgs.add(Long.toString(mStartDate));
+        }
+        if (mEndDate != 0) {
+            selection.append(" AND ").append(WeatherContract.WeatherEntry.COLUMN_DATE).append(" <= ?");
+            selectionArgs.add(Long.toString(mEndDate));
+        }
+        return db.query(mTables, COLUMNS, selection.toString(),
+            selectionArgs.toArray(new String[selectionArgs.size()]), null, null,
+            WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " ASC, "
+                + WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
+    }
+
+    /**
+     * Writes every row of the cursor, then closes the stream. If the export fails, the stream
+     * is left open, for the caller to report the error to the reader.
+     *
+     * @throws IOException if the reader went away before the end of the export
+     */
+    void write(Cursor cursor, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"), BUFFER_SIZE);
+        if (!mNdjson) {
+            writeCsvHeader(writer);
+        }
+        while (cursor.moveToNext()) {
+            if (mNdjson) {
+                writeJsonRow(cursor, writer);
+            } else {
+                writeCsvRow(cursor, writer);
+            }
+        }
+        writer.close();
+    }
+
+    private static void writeCsvHeader(Writer writer) throws IOException {
+        for (int i = 0; i < COLUMNS.length; i++) {
+            if (i > 0) writer.write(',');
+            writer.write(COLUMNS[i]);
+        }
+        writer.write('\n');
+    }
+
+    private static void writeCsvRow(Cursor cursor, Writer writer) throws IOException {
+        writeCsvString(cursor.getString(COL_LOCATION_SETTING), writer);
+        writer.write(',');
+        writer.write(Long.toString(cursor.getLong(COL_DATE)));
+        writer.write(',');
+        writer.write(Integer.toString(cursor.getInt(COL_WEATHER_ID)));
+        writer.write(',');
+        writeCsvString(cursor.getString(COL_SHORT_DESC), writer);
+        for (int i = FIRST_REAL_COLUMN; i < COLUMNS.length; i++) {
+            writer.write(',');
+            writer.write(Double.toString(cursor.getDouble(i)));
+        }
+        writer.write('\n');
+    }
+
+    private static void writeJsonRow(Cursor cursor, Writer writer) throws IOException {
+        writer.write("{\"");
+        writer.write(COLUMNS[COL_LOCATION_SETTING]);
+        writer.write("\":");
+        writeJsonString(cursor.getString(COL_LOCATION_SETTING), writer);
+        writer.write(",\"");
+        writer.write(COLUMNS[COL_DATE]);
+        writer.write("\":");
+        writer.write(Long.toString(cursor.getLong(COL_DATE)));
+        writer.write(",\"");
+        writer.write(COLUMNS[COL_WEATHER_ID]);
+        writer.write("\":");
+        writer.write(Integer.toString(cursor.getInt(COL_WEATHER_ID)));
+        writer.write(",\"");
+        writer.write(COLUMNS[COL_SHORT_DESC]);
+        writer.write("\":");
+        writeJsonString(cursor.getString(COL_SHORT_DESC), writer);
+        for (int i = FIRST_REAL_COLUMN; i < COLUMNS.length; i++) {
+            writer.write(",\"");
+            writer.write(COLUMNS[i]);
+            writer.write("\":");
+            writer.write(Double.toString(cursor.getDouble(i)));
+        }
+        writer.write("}\n");
+    }
+
+    // Quotes the value only when it contains a separator, a quote or a line break.
+    static void writeCsvString(String value, Writer writer) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') writer.write('"');
+            writer.write(c);
+        }
+        writer.write('"');
+    }
+
+    static void writeJsonString(String value, Writer writer) throws IOException {
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    writer.write("\\\"");
+                    break;
+                case '\\':
+                    writer.write("\\\\");
+                    break;
+                case '\n':
+                    writer.write("\\n");
+                    break;
+                case '\r':
+                    writer.write("\\r");
+                    break;
+                case '\t':
+                    writer.write("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        writer.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        writer.write(c);
+                    }
+            }
+        }
+        writer.write('"');
+    }
+}
@@ -43,6 +43,8 @@ public class WeatherContract {
     // At least, let's hope not.  Don't be that dev, reader.  Don't be that dev.
     public static final String PATH_WEATHER = "weather";
     public static final String PATH_LOCATION = "location";
+    public static final String PATH_SYNC = "sync";
+    public static final String PATH_EXPORT = "export";
 
     // To make it easy to query for the exact date, we normalize all dates that go into
     // the database to the start of the the Julian day at UTC.
@@ -120,10 +122,22 @@ public class WeatherContract {
         // Degrees are meteorological degrees (e.g, 0 is north, 180 is south).  Stored as floats.
         public static final String COLUMN_DEGREES = "degrees";
 
+        // Query parameter marking inserts of a forecast just fetched from the network, as
+        // opposed to imported or restored rows; only those stamp the sync last fetch time.
+        public static final String PARAM_FETCHED = "fetched";
+
         public static Uri buildWeatherUri(long id) {
             return ContentUris.withAppendedId(CONTENT_URI, id);
         }
 
+        public static Uri buildFetchedWeatherUri() {
+            return CONTENT_URI.buildUpon().appendQueryParameter(PARAM_FETCHED, "1").build();
+        }
+
+        public static boolean isFetched(Uri uri) {
+            return uri.getQueryParameter(PARAM_FETCHED) != null;
+        }
+
         /*
             Student: This is the buildWeatherLocation function you filled in.
          */
@@ -158,4 +172,108 @@ public class WeatherContract {
                 return 0;
         }
     }
+
+    /* Inner class that defines the table contents of the per-location sync metadata table */
+    public static final class SyncEntry implements BaseColumns {
+        public static final Uri CONTENT_URI = BASE_CONTENT_URI.buildUpon().appendPath(PATH_SYNC).build();
+
+        public static final String CONTENT_TYPE =
+            ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_SYNC;
+        public static final String CONTENT_ITEM_TYPE =
+            ContentResolver.CURSOR_ITEM_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_SYNC;
+
+        public static final String TABLE_NAME = "sync_state";
+
+        // Column with the foreign key into the location table. One row per location.
+        public static final String COLUMN_LOC_KEY = "location_id";
+
+        // Time of the last successful network fetch, stored as long in milliseconds since the
+        // epoch; 0 if the forecast was only ever imported
+        public static final String COLUMN_LAST_FETCH = "last_fetch";
+
+        // Normalized date of the last forecast day stored for the location
+        public static final String COLUMN_HORIZON = "horizon";
+
+        // Incremented every time the stored forecast of the location changes
+        public static final String COLUMN_VERSION = "version";
+
+        // Queries on this route join the location table, so every location has a row; the
+        // metadata columns are null for a location that has never been ingested.
+        public static Uri buildSyncLocation(String locationSetting) {
+            return CONTENT_URI.buildUpon().appendPath(locationSetting).build();
+        }
+
+        public static String getLocationSettingFromUri(Uri uri) {
+            return uri.getPathSegments().get(1);
+        }
+    }
+
+    /* Inner class that defines the export route, which streams stored forecasts as a file */
+    public static final class ExportEntry {
+        public static final Uri CONTENT_URI = BASE_CONTENT_URI.buildUpon().appendPath(PATH_EXPORT).build();
+
+        public static final String FORMAT_CSV = "csv";
+        public static final String FORMAT_NDJSON = "ndjson";
+
+        public static final String CSV_MIME_TYPE = "text/csv";
+        public static final String NDJSON_MIME_TYPE = "application/x-ndjson";
+
+        // Query parameters; all of them are optional.
+        public static final String PARAM_FORMAT = "format";
+        public static final String PARAM_LOCATION = "location";
+        public static final String PARAM_START_DATE = "start";
+        public static final String PARAM_END_DATE = "end";
+
+        /**
+         * @param locationSetting only export this location, or null for all of them
+         * @param startDate first date to export, or 0 for no lower bound
+         * @param endDate last date to export, or 0 for no upper bound
+         */
+        public static Uri buildExportUri(String format, String locationSetting, long startDate, long endDate) {
+            Uri.Builder builder = CONTENT_URI.buildUpon().appendQueryParameter(PARAM_FORMAT, format);
+            if (locationSetting != null) {
+                builder.appendQueryParameter(PARAM_LOCATION, locationSetting);
+            }
+            if (startDate != 0) {
+                builder.appendQueryParameter(PARAM_START_DATE, Long.toString(normalizeDate(startDate)));
+            }
+            if (endDate != 0) {
+                builder.appendQueryParameter(PARAM_END_DATE, Long.toString(normalizeDate(endDate)));
+            }
+            return builder.build();
+        }
+
+        public static String getFormatFromUri(Uri uri) {
+            String format = uri.getQueryParameter(PARAM_FORMAT);
+            return FORMAT_NDJSON.equals(format) ? FORMAT_NDJSON : FORMAT_CSV;
+        }
+
+        public static String getLocationSettingFromUri(Uri uri) {
+            return uri.getQueryParameter(PARAM_LOCATION);
+        }
+
+        /**
+         * @throws IllegalArgumentException if the parameter isn't a number
+         */
+        public static long getStartDateFromUri(Uri uri) {
+            return getLongParameter(uri, PARAM_START_DATE);
+        }
+
+        /**
+         * @throws IllegalArgumentException if the parameter isn't a number
+         */
+        public static long getEndDateFromUri(Uri uri) {
+            return getLongParameter(uri, PARAM_END_DATE);
+        }
+
+        private static long getLongParameter(Uri uri, String name) {
+            String value = uri.getQueryParameter(name);
+            if (null == value || value.length() == 0) return 0;
+            try {
+                return Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid " + name + " parameter: " + uri);
+            }
+        }
+    }
 }
\ No newline at end of file
@@ -20,6 +20,7 @@ import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 
 import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.data.WeatherContract.SyncEntry;
 import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
 
 /**
@@ -27,7 +28,7 @@ import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
  */
 public class WeatherDbHelper extends SQLiteOpenHelper {
     // If you change the database schema, you must increment the database version.
-    private static final int DATABASE_VERSION = 2;
+    private static final int DATABASE_VERSION = 3;
 
     static final String DATABASE_NAME = "weather.db";
 
@@ -78,8 +79,21 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
             " UNIQUE (" + WeatherEntry.COLUMN_DATE + ", " +
             WeatherEntry.COLUMN_LOC_KEY + ") ON CONFLICT REPLACE);";
 
+        // One small row per location, maintained by the provider's ingest path, so freshness
+        // checks don't have to scan the weather table for the max date.
+        final String SQL_CREATE_SYNC_TABLE = "CREATE TABLE " + SyncEntry.TABLE_NAME + " (" +
+            SyncEntry._ID + " INTEGER PRIMARY KEY," +
+            SyncEntry.COLUMN_LOC_KEY + " INTEGER UNIQUE NOT NULL, " +
+            SyncEntry.COLUMN_LAST_FETCH + " INTEGER NOT NULL DEFAULT 0, " +
+            SyncEntry.COLUMN_HORIZON + " INTEGER NOT NULL DEFAULT 0, " +
+            SyncEntry.COLUMN_VERSION + " INTEGER NOT NULL DEFAULT 0, " +
+
+            " FOREIGN KEY (" + SyncEntry.COLUMN_LOC_KEY + ") REFERENCES " +
+            LocationEntry.TABLE_NAME + " (" + LocationEntry._ID + "));";
+
         sqLiteDatabase.execSQL(SQL_CREATE_LOCATION_TABLE);
         sqLiteDatabase.execSQL(SQL_CREATE_WEATHER_TABLE);
+        sqLiteDatabase.execSQL(SQL_CREATE_SYNC_TABLE);
     }
 
     @Override
@@ -92,6 +106,7 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
         // should be your top priority before modifying this method.
         sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + LocationEntry.TABLE_NAME);
         sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + WeatherEntry.TABLE_NAME);
+        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + SyncEntry.TABLE_NAME);
         onCreate(sqLiteDatabase);
     }
 }
\ No newline at end of file
@@ -23,9 +23,24 @@ import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteQueryBuilder;
 import android.net.Uri;
+import android.os.Build;
+import android.os.ParcelFileDescriptor;
+import android.support.v4.util.LongSparseArray;
+import android.util.Log;
+
+import com.example.android.sunshine.app.Diagnostics;
+import com.example.android.sunshine.app.MemoryAccounting;
+import com.example.android.sunshine.app.Tracing;
+
+import java.io.FileDescriptor;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintWriter;
 
 public class WeatherProvider extends ContentProvider {
 
+    public static final String LOG_TAG = "Sunshine";
+
     // The URI Matcher used by this content provider.
     private static final UriMatcher sUriMatcher = buildUriMatcher();
     private WeatherDbHelper mOpenHelper;
@@ -34,8 +49,12 @@ public class WeatherProvider extends ContentProvider {
     static final int WEATHER_WITH_LOCATION = 101;
     static final int WEATHER_WITH_LOCATION_AND_DATE = 102;
     static final int LOCATION = 300;
+    static final int SYNC = 400;
+    static final int SYNC_WITH_LOCATION = 401;
+    static final int EXPORT = 500;
 
     private static final SQLiteQueryBuilder sWeatherByLocationSettingQueryBuilder;
+    private static final SQLiteQueryBuilder sSyncByLocationQueryBuilder;
 
     static {
         sWeatherByLocationSettingQueryBuilder = new SQLiteQueryBuilder();
@@ -48,6 +67,17 @@ public class WeatherProvider extends ContentProvider {
             + WeatherContract.WeatherEntry.COLUMN_LOC_KEY + " = "
             + WeatherContract.LocationEntry.TABLE_NAME + "."
             + WeatherContract.LocationEntry._ID);
+
+        sSyncByLocationQueryBuilder = new SQLiteQueryBuilder();
+
+        //This is a left outer join, so locations never ingested still get a row:
+        //location LEFT OUTER JOIN sync_state ON sync_state.location_id = location._id
+        sSyncByLocationQueryBuilder.setTables(WeatherContract.LocationEntry.TABLE_NAME
+            + " LEFT OUTER JOIN " + WeatherContract.SyncEntry.TABLE_NAME + " ON "
+            + WeatherContract.SyncEntry.TABLE_NAME + "."
+            + WeatherContract.SyncEntry.COLUMN_LOC_KEY + " = "
+            + WeatherContract.LocationEntry.TABLE_NAME + "."
+            + WeatherContract.LocationEntry._ID);
     }
 
     //location.location_setting = ?
@@ -90,6 +120,19 @@ public class WeatherProvider extends ContentProvider {
         );
     }
 
+    private Cursor getSyncStateByLocationSetting(Uri uri, String[] projection, String sortOrder) {
+        String locationSetting = WeatherContract.SyncEntry.getLocationSettingFromUri(uri);
+
+        return sSyncByLocationQueryBuilder.query(mOpenHelper.getReadableDatabase(),
+            projection,
+            sLocationSettingSelection,
+            new String[]{locationSetting},
+            null,
+            null,
+            sortOrder
+        );
+    }
+
     private Cursor getWeatherByLocationSettingAndDate(Uri uri, String[] projection, String sortOrder) {
         String locationSetting = WeatherContract.WeatherEntry.getLocationSettingFromUri(uri);
         long date = WeatherContract.WeatherEntry.getDateFromUri(uri);
@@ -124,6 +167,11 @@ public class WeatherProvider extends ContentProvider {
         matcher.addURI(authority, WeatherContract.PATH_WEATHER + "/*/#", WEATHER_WITH_LOCATION_AND_DATE);
 
         matcher.addURI(authority, WeatherContract.PATH_LOCATION, LOCATION);
+
+        matcher.addURI(authority, WeatherContract.PATH_SYNC, SYNC);
+        matcher.addURI(authority, WeatherContract.PATH_SYNC + "/*", SYNC_WITH_LOCATION);
+
+        matcher.addURI(authority, WeatherContract.PATH_EXPORT, EXPORT);
         return matcher;
     }
 
@@ -153,6 +201,15 @@ public class WeatherProvider extends ContentProvider {
                 return WeatherContract.WeatherEntry.CONTENT_TYPE;
             case LOCATION:
                 return WeatherContract.LocationEntry.CONTENT_TYPE;
+            case SYNC:
+                return WeatherContract.SyncEntry.CONTENT_TYPE;
+            case SYNC_WITH_LOCATION:
+                return WeatherContract.SyncEntry.CONTENT_ITEM_TYPE;
+            case EXPORT:
+                return WeatherContract.ExportEntry.FORMAT_NDJSON.equals(
+                    WeatherContract.ExportEntry.getFormatFromUri(uri))
+                    ? WeatherContract.ExportEntry.NDJSON_MIME_TYPE
+                    : WeatherContract.ExportEntry.CSV_MIME_TYPE;
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
@@ -163,50 +220,73 @@ public class WeatherProvider extends ContentProvider {
         String sortOrder) {
         // Here's the switch statement that, given a URI, will determine what kind of request it is,
         // and query the database accordingly.
+        final int match = sUriMatcher.match(uri);
         Cursor retCursor;
-        switch (sUriMatcher.match(uri)) {
-            // "weather/*/*"
-            case WEATHER_WITH_LOCATION_AND_DATE:
-            {
-                retCursor = getWeatherByLocationSettingAndDate(uri, projection, sortOrder);
-                break;
-            }
-            // "weather/*"
-            case WEATHER_WITH_LOCATION: {
-                retCursor = getWeatherByLocationSetting(uri, projection, sortOrder);
-                break;
-            }
-            // "weather"
-            case WEATHER: {
-                retCursor = mOpenHelper.getReadableDatabase().query(
-                    WeatherContract.WeatherEntry.TABLE_NAME,
-                    projection,
-                    selection,
-                    selectionArgs,
-                    null,
-                    null,
-                    sortOrder
-                );
-                break;
-            }
-            // "location"
-            case LOCATION: {
-                retCursor = mOpenHelper.getReadableDatabase().query(
-                    WeatherContract.LocationEntry.TABLE_NAME,
-                    projection,
-                    selection,
-                    selectionArgs,
-                    null,
-                    null,
-                    sortOrder
-                );
-                break;
+        final long start = beginTrace("WeatherProvider.query", match);
+        try {
+            switch (match) {
+                // "weather/*/*"
+                case WEATHER_WITH_LOCATION_AND_DATE:
+                {
+                    retCursor = getWeatherByLocationSettingAndDate(uri, projection, sortOrder);
+                    break;
+                }
+                // "weather/*"
+                case WEATHER_WITH_LOCATION: {
+                    retCursor = getWeatherByLocationSetting(uri, projection, sortOrder);
+                    break;
+                }
+                // "weather"
+                case WEATHER: {
+                    retCursor = mOpenHelper.getReadableDatabase().query(
+                        WeatherContract.WeatherEntry.TABLE_NAME,
+                        projection,
+                        selection,
+                        selectionArgs,
+                        null,
+                        null,
+                        sortOrder
+                    );
+                    break;
+                }
+                // "location"
+                case LOCATION: {
+                    retCursor = mOpenHelper.getReadableDatabase().query(
+                        WeatherContract.LocationEntry.TABLE_NAME,
+                        projection,
+                        selection,
+                        selectionArgs,
+                        null,
+                        null,
+                        sortOrder
+                    );
+                    break;
+                }
+                // "sync"
+                case SYNC: {
+                    retCursor = sSyncByLocationQueryBuilder.query(mOpenHelper.getReadableDatabase(),
+                        projection,
+                        selection,
+                        selectionArgs,
+                        null,
+                        null,
+                        sortOrder
+                    );
+                    break;
+                }
+                // "sync/*"
+                case SYNC_WITH_LOCATION: {
+                    retCursor = getSyncStateByLocationSetting(uri, projection, sortOrder);
+                    break;
+                }
+                default:
+                    throw new UnsupportedOperationException("Unknown uri: " + uri);
             }
-            default:
-                throw new UnsupportedOperationException("Unknown uri: " + uri);
+            retCursor.setNotificationUri(getContext().getContentResolver(), uri);
+            return MemoryAccounting.trackCursor(retCursor, getRouteName(match));
+        } finally {
+            endTrace(Diagnostics.PROVIDER_QUERY, match, start);
         }
-        retCursor.setNotificationUri(getContext().getContentResolver(), uri);
-        return retCursor;
     }
 
     // Student: Add the ability to insert Locations to the implementation of this function.
@@ -214,57 +294,221 @@ public class WeatherProvider extends ContentProvider {
     public Uri insert(Uri uri, ContentValues values) {
         final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
         final int match = sUriMatcher.match(uri);
-        Uri returnUri;
+        final long start = beginTrace("WeatherProvider.insert", match);
+        try {
+            Uri returnUri;
 
-        switch (match) {
-            case WEATHER: {
-                normalizeDate(values);
-                long _id = db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, values);
-                if ( _id > 0 )
-                    returnUri = WeatherContract.WeatherEntry.buildWeatherUri(_id);
-                else
-                    throw new android.database.SQLException("Failed to insert row into " + uri);
-                break;
-            }
-            case LOCATION: {
-                long _id = db.insert(WeatherContract.LocationEntry.TABLE_NAME, null, values);
-                if ( _id > 0 )
-                    returnUri = WeatherContract.LocationEntry.buildLocationUri(_id);
-                else
-                    throw new android.database.SQLException("Failed to insert row into " + uri);
-                break;
+            switch (match) {
+                case WEATHER: {
+                    normalizeDate(values);
+                    long _id;
+                    db.beginTransaction();
+                    try {
+                        _id = db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, values);
+                        if (_id > 0) {
+                            updateSyncState(db, values.getAsLong(WeatherContract.WeatherEntry.COLUMN_LOC_KEY),
+                                values.getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE),
+                                WeatherContract.WeatherEntry.isFetched(uri));
+                            db.setTransactionSuccessful();
+                        }
+                    } finally {
+                        db.endTransaction();
+                    }
+                    if ( _id > 0 )
+                        returnUri = WeatherContract.WeatherEntry.buildWeatherUri(_id);
+                    else
+                        throw new android.database.SQLException("Failed to insert row into " + uri);
+                    notifySyncChange();
+                    break;
+                }
+                case LOCATION: {
+                    long _id = db.insert(WeatherContract.LocationEntry.TABLE_NAME, null, values);
+                    if ( _id > 0 )
+                        returnUri = WeatherContract.LocationEntry.buildLocationUri(_id);
+                    else
+                        throw new android.database.SQLException("Failed to insert row into " + uri);
+                    break;
+                }
+                default:
+                    throw new UnsupportedOperationException("Unknown uri: " + uri);
             }
-            default:
-                throw new UnsupportedOperationException("Unknown uri: " + uri);
+            getContext().getContentResolver().notifyChange(uri, null);
+            return returnUri;
+        } finally {
+            endTrace(Diagnostics.PROVIDER_INSERT, match, start);
         }
-        getContext().getContentResolver().notifyChange(uri, null);
-        return returnUri;
     }
 
     @Override
     public int delete(Uri uri, String selection, String[] selectionArgs) {
         final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
         final int match = sUriMatcher.match(uri);
-        int rowsDeleted;
-        // this makes delete all rows return the number of rows deleted
-        if ( null == selection ) selection = "1";
+        final long start = beginTrace("WeatherProvider.delete", match);
+        try {
+            int rowsDeleted;
+            // this makes delete all rows return the number of rows deleted
+            if ( null == selection ) selection = "1";
+            switch (match) {
+                case WEATHER:
+                    db.beginTransaction();
+                    try {
+                        long[] locationIds = selectLocationIds(db, selection, selectionArgs);
+                        rowsDeleted = db.delete(
+                                WeatherContract.WeatherEntry.TABLE_NAME, selection, selectionArgs);
+                        if (rowsDeleted != 0) {
+                            recomputeSyncState(db, locationIds);
+                        }
+                        db.setTransactionSuccessful();
+                    } finally {
+                        db.endTransaction();
+                    }
+                    break;
+                case LOCATION:
+                    db.beginTransaction();
+                    try {
+                        rowsDeleted = db.delete(
+                                WeatherContract.LocationEntry.TABLE_NAME, selection, selectionArgs);
+                        if (rowsDeleted != 0) {
+                            db.execSQL(sDeleteOrphanSyncStateSql);
+                        }
+                        db.setTransactionSuccessful();
+                    } finally {
+                        db.endTransaction();
+                    }
+                    break;
+                default:
+                    throw new UnsupportedOperationException("Unknown uri: " + uri);
+            }
+            // Because a null deletes all rows
+            if (rowsDeleted != 0) {
+                getContext().getContentResolver().notifyChange(uri, null);
+                notifySyncChange();
+            }
+            return rowsDeleted;
+        } finally {
+            endTrace(Diagnostics.PROVIDER_DELETE, match, start);
+        }
+    }
+
+    //sync_state.horizon = (SELECT MAX(date) FROM weather WHERE location_id = sync_state.location_id)
+    //for one location
+    private static final String sRecomputeSyncStateSql = "UPDATE " + WeatherContract.SyncEntry.TABLE_NAME
+        + " SET " + WeatherContract.SyncEntry.COLUMN_HORIZON + " = IFNULL((SELECT MAX("
+        + WeatherContract.WeatherEntry.COLUMN_DATE + ") FROM " + WeatherContract.WeatherEntry.TABLE_NAME
+        + " WHERE " + WeatherContract.WeatherEntry.TABLE_NAME + "." + WeatherContract.WeatherEntry.COLUMN_LOC_KEY
+        + " = " + WeatherContract.SyncEntry.TABLE_NAME + "." + WeatherContract.SyncEntry.COLUMN_LOC_KEY
+        + "), 0), " + WeatherContract.SyncEntry.COLUMN_VERSION + " = "
+        + WeatherContract.SyncEntry.COLUMN_VERSION + " + 1"
+        + " WHERE " + WeatherContract.SyncEntry.COLUMN_LOC_KEY + " = ?";
+
+    /**
+     * @return the distinct locations of the weather rows matched by a selection, to maintain
+     * the sync metadata of those only.
+     */
+    private static long[] selectLocationIds(SQLiteDatabase db, String selection, String[] selectionArgs) {
+        Cursor cursor = db.query(true, WeatherContract.WeatherEntry.TABLE_NAME,
+            new String[]{WeatherContract.WeatherEntry.COLUMN_LOC_KEY}, selection, selectionArgs,
+            null, null, null, null);
+        try {
+            long[] locationIds = new long[cursor.getCount()];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                locationIds[i] = cursor.getLong(0);
+            }
+            return locationIds;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Recomputes the horizon and bumps the version of locations whose weather rows changed
+     * other than by an ingest. Must be called inside the transaction that changed the rows.
+     */
+    private static void recomputeSyncState(SQLiteDatabase db, long[] locationIds) {
+        for (long locationId : locationIds) {
+            db.execSQL(sRecomputeSyncStateSql, new Object[]{locationId});
+        }
+    }
+
+    private static final String sDeleteOrphanSyncStateSql = "DELETE FROM " + WeatherContract.SyncEntry.TABLE_NAME
+        + " WHERE " + WeatherContract.SyncEntry.COLUMN_LOC_KEY + " NOT IN (SELECT "
+        + WeatherContract.LocationEntry._ID + " FROM " + WeatherContract.LocationEntry.TABLE_NAME + ")";
+
+    private static final String sInsertSyncStateSql = "INSERT OR IGNORE INTO " + WeatherContract.SyncEntry.TABLE_NAME
+        + " (" + WeatherContract.SyncEntry.COLUMN_LOC_KEY + ") VALUES (?)";
+
+    private static final String sUpdateSyncStateSql = "UPDATE " + WeatherContract.SyncEntry.TABLE_NAME
+        + " SET " + WeatherContract.SyncEntry.COLUMN_HORIZON + " = MAX(" + WeatherContract.SyncEntry.COLUMN_HORIZON + ", ?), "
+        + WeatherContract.SyncEntry.COLUMN_VERSION + " = " + WeatherContract.SyncEntry.COLUMN_VERSION + " + 1"
+        + " WHERE " + WeatherContract.SyncEntry.COLUMN_LOC_KEY + " = ?";
+
+    private static final String sUpdateFetchedSyncStateSql = "UPDATE " + WeatherContract.SyncEntry.TABLE_NAME
+        + " SET " + WeatherContract.SyncEntry.COLUMN_LAST_FETCH + " = ?, "
+        + WeatherContract.SyncEntry.COLUMN_HORIZON + " = MAX(" + WeatherContract.SyncEntry.COLUMN_HORIZON + ", ?), "
+        + WeatherContract.SyncEntry.COLUMN_VERSION + " = " + WeatherContract.SyncEntry.COLUMN_VERSION + " + 1"
+        + " WHERE " + WeatherContract.SyncEntry.COLUMN_LOC_KEY + " = ?";
+
+    /**
+     * Records an ingest for a location. Must be called inside the transaction that wrote the
+     * weather rows, so the metadata never disagrees with the forecast. Only a network fetch,
+     * inserted through {@link WeatherContract.WeatherEntry#buildFetchedWeatherUri()}, stamps
+     * the last fetch time: imported rows, however old, must not delay the first real refresh.
+     */
+    private void updateSyncState(SQLiteDatabase db, long locationId, long maxDate, boolean fetched) {
+        db.execSQL(sInsertSyncStateSql, new Object[]{locationId});
+        if (fetched) {
+            db.execSQL(sUpdateFetchedSyncStateSql, new Object[]{System.currentTimeMillis(), maxDate, locationId});
+        } else {
+            db.execSQL(sUpdateSyncStateSql, new Object[]{maxDate, locationId});
+        }
+    }
+
+    // Opens the trace sections of a call: the operation, then the route it matched. Both names
+    // are constants, so tracing a call allocates nothing.
+    // Returns the start time of the call for endTrace().
+    private static long beginTrace(String operation, int match) {
+        Tracing.beginSection(operation);
+        Tracing.beginSection(getRouteName(match));
+        return System.nanoTime();
+    }
+
+    // Closes the trace sections of a call and records its duration as a diagnostics event.
+    private static void endTrace(int eventType, int match, long start) {
+        Diagnostics.recordTimed(eventType, match, start);
+        Tracing.endSection();
+        Tracing.endSection();
+    }
+
+    private static String getRouteName(int match) {
         switch (match) {
             case WEATHER:
-                rowsDeleted = db.delete(
-                        WeatherContract.WeatherEntry.TABLE_NAME, selection, selectionArgs);
-                break;
+                return "weather";
+            case WEATHER_WITH_LOCATION:
+                return "weather/*";
+            case WEATHER_WITH_LOCATION_AND_DATE:
+                return "weather/*/#";
             case LOCATION:
-                rowsDeleted = db.delete(
-                        WeatherContract.LocationEntry.TABLE_NAME, selection, selectionArgs);
-                break;
+                return "location";
+            case SYNC:
+                return "sync";
+            case SYNC_WITH_LOCATION:
+                return "sync/*";
+            case EXPORT:
+                return "export";
             default:
-                throw new UnsupportedOperationException("Unknown uri: " + uri);
+                return "unknown";
         }
-        // Because a null deletes all rows
-        if (rowsDeleted != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+    }
+
+    private static boolean contains(long[] values, long value) {
+        for (long v : values) {
+            if (v == value) return true;
         }
-        return rowsDeleted;
+        return false;
+    }
+
+    private void notifySyncChange() {
+        getContext().getContentResolver().notifyChange(WeatherContract.SyncEntry.CONTENT_URI, null);
     }
 
     private void normalizeDate(ContentValues values) {
@@ -279,54 +523,178 @@ public class WeatherProvider extends ContentProvider {
     public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
         final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
         final int match = sUriMatcher.match(uri);
-        int rowsUpdated;
+        final long start = beginTrace("WeatherProvider.update", match);
+        try {
+            int rowsUpdated;
 
-        switch (match) {
-            case WEATHER:
-                normalizeDate(values);
-                rowsUpdated = db.update(WeatherContract.WeatherEntry.TABLE_NAME, values, selection,
-                    selectionArgs);
-                break;
-            case LOCATION:
-                rowsUpdated = db.update(WeatherContract.LocationEntry.TABLE_NAME, values, selection,
-                    selectionArgs);
-                break;
-            default:
-                throw new UnsupportedOperationException("Unknown uri: " + uri);
-        }
-        if (rowsUpdated != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            switch (match) {
+                case WEATHER:
+                    normalizeDate(values);
+                    // An update can change the dates or locations of rows, so the sync metadata
+                    // of the locations the rows were in, and of the one they moved to, follows.
+                    db.beginTransaction();
+                    try {
+                        long[] locationIds = selectLocationIds(db, selection, selectionArgs);
+                        rowsUpdated = db.update(WeatherContract.WeatherEntry.TABLE_NAME, values, selection,
+                            selectionArgs);
+                        if (rowsUpdated != 0) {
+                            recomputeSyncState(db, locationIds);
+                            Long newLocationId = values.getAsLong(WeatherContract.WeatherEntry.COLUMN_LOC_KEY);
+                            if (newLocationId != null && !contains(locationIds, newLocationId)) {
+                                recomputeSyncState(db, new long[]{newLocationId});
+                            }
+                        }
+                        db.setTransactionSuccessful();
+                    } finally {
+                        db.endTransaction();
+                    }
+                    break;
+                case LOCATION:
+                    rowsUpdated = db.update(WeatherContract.LocationEntry.TABLE_NAME, values, selection,
+                        selectionArgs);
+                    break;
+                default:
+                    throw new UnsupportedOperationException("Unknown uri: " + uri);
+            }
+            if (rowsUpdated != 0) {
+                getContext().getContentResolver().notifyChange(uri, null);
+                if (match == WEATHER) {
+                    notifySyncChange();
+                }
+            }
+            return rowsUpdated;
+        } finally {
+            endTrace(Diagnostics.PROVIDER_UPDATE, match, start);
         }
-        return rowsUpdated;
     }
 
     @Override
     public int bulkInsert(Uri uri, ContentValues[] values) {
         final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
         final int match = sUriMatcher.match(uri);
-        switch (match) {
-            case WEATHER:
-                db.beginTransaction();
-                int returnCount = 0;
-                try {
-                    for (ContentValues value : values) {
-                        normalizeDate(value);
-                        long _id = db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, value);
-                        if (_id != -1) {
-                            returnCount++;
+        final long start = beginTrace("WeatherProvider.bulkInsert", match);
+        try {
+            switch (match) {
+                case WEATHER:
+                    db.beginTransaction();
+                    int returnCount = 0;
+                    // Latest date ingested per location id, to maintain the sync metadata.
+                    LongSparseArray<Long> horizons = new LongSparseArray<Long>();
+                    try {
+                        for (ContentValues value : values) {
+                            normalizeDate(value);
+                            long _id = db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, value);
+                            if (_id != -1) {
+                                returnCount++;
+                                long locationId = value.getAsLong(WeatherContract.WeatherEntry.COLUMN_LOC_KEY);
+                                long date = value.getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE);
+                                Long horizon = horizons.get(locationId);
+                                if (horizon == null || horizon < date) {
+                                    horizons.put(locationId, date);
+                                }
+                            }
                         }
+                        boolean fetched = WeatherContract.WeatherEntry.isFetched(uri);
+                        for (int i = 0; i < horizons.size(); i++) {
+                            updateSyncState(db, horizons.keyAt(i), horizons.valueAt(i), fetched);
+                        }
+                        db.setTransactionSuccessful();
+                    } finally {
+                        db.endTransaction();
                     }
-                    db.setTransactionSuccessful();
+                    getContext().getContentResolver().notifyChange(uri, null);
+                    notifySyncChange();
+                    return returnCount;
+                default:
+                    return super.bulkInsert(uri, values);
+            }
+        } finally {
+            endTrace(Diagnostics.PROVIDER_BULK_INSERT, match, start);
+        }
+    }
+
+    /**
+     * Streams an export of the stored forecasts. The rows are written by a background thread into
+     * a pipe while the caller reads the other end, so the export never has to fit in memory.
+     *
+     * @throws IllegalArgumentException if a date parameter of the URI isn't a number
+     */
+    @Override
+    public ParcelFileDescriptor openFile(Uri uri, String mode) throws FileNotFoundException {
+        if (sUriMatcher.match(uri) != EXPORT) {
+            throw new FileNotFoundException("Unknown uri: " + uri);
+        }
+        if (!"r".equals(mode)) {
+            throw new FileNotFoundException("Exports are read-only: " + uri);
+        }
+
+        // Parameters are checked here, so a malformed URI fails the call rather than the export.
+        final ForecastExporter exporter = new ForecastExporter(sWeatherByLocationSettingQueryBuilder.getTables(), uri);
+        final ParcelFileDescriptor[] pipe;
+        try {
+            pipe = createExportPipe();
+        } catch (IOException e) {
+            throw new FileNotFoundException("Unable to create export pipe: " + e.getMessage());
+        }
+        // Run the query on the writer thread too: the caller may be the main thread of a client.
+        new Thread("WeatherProvider.export") {
+            @Override
+            public void run() {
+                ParcelFileDescriptor.AutoCloseOutputStream out =
+                    new ParcelFileDescriptor.AutoCloseOutputStream(pipe[1]);
+                Cursor cursor = null;
+                long start = beginTrace("WeatherProvider.openFile", EXPORT);
+                try {
+                    cursor = exporter.query(mOpenHelper.getReadableDatabase());
+                    exporter.write(cursor, out);
+                } catch (IOException e) {
+                    // Most likely the reader closed its end before the end of the export.
+                    Log.w(LOG_TAG, "WeatherProvider.openFile(): export aborted.", e);
+                } catch (RuntimeException e) {
+                    // A database error: the reader is told, and the process goes on.
+                    Log.e(LOG_TAG, "WeatherProvider.openFile(): export failed.", e);
+                    closeExportWithError(pipe[1], e.toString());
                 } finally {
-                    db.endTransaction();
+                    if (cursor != null) cursor.close();
+                    try {
+                        out.close();
+                    } catch (IOException e) {
+                        Log.w(LOG_TAG, "WeatherProvider.openFile(): error closing export pipe.", e);
+                    }
+                    endTrace(Diagnostics.PROVIDER_EXPORT, EXPORT, start);
                 }
-                getContext().getContentResolver().notifyChange(uri, null);
-                return returnCount;
-            default:
-                return super.bulkInsert(uri, values);
+            }
+        }.start();
+        return pipe[0];
+    }
+
+    // From API 19, a pipe whose reader learns whether the export failed.
+    @TargetApi(19)
+    private static ParcelFileDescriptor[] createExportPipe() throws IOException {
+        return Build.VERSION.SDK_INT >= 19
+            ? ParcelFileDescriptor.createReliablePipe()
+            : ParcelFileDescriptor.createPipe();
+    }
+
+    // Before API 19, the reader only sees the export end early.
+    @TargetApi(19)
+    private static void closeExportWithError(ParcelFileDescriptor writeEnd, String message) {
+        if (Build.VERSION.SDK_INT < 19) return;
+        try {
+            writeEnd.closeWithError(message);
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "WeatherProvider.openFile(): error closing export pipe.", e);
         }
     }
 
+    // Dumps the memory totals and diagnostics events, for "adb shell dumpsys activity provider".
+    // Called from API 18.
+    @Override
+    public void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        MemoryAccounting.dump("", writer);
+        Diagnostics.dump("", writer);
+    }
+
     // You do not need to call this method. This is a method specifically to assist the testing
     // framework in running smoothly. You can read more at:
     // http://developer.android.com/reference/android/content/ContentProvider.html#shutdown()
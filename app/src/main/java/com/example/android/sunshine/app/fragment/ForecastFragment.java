@@ -17,13 +17,13 @@ package com.example.android.sunshine.app.fragment;
 
 import android.app.Activity;
 import android.content.res.TypedArray;
-import android.database.Cursor;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.support.v4.app.Fragment;
 import android.support.v4.app.LoaderManager;
-import android.support.v4.content.CursorLoader;
 import android.support.v4.content.Loader;
+import android.support.v4.os.AsyncTaskCompat;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
 import android.util.AttributeSet;
@@ -35,15 +35,27 @@ import android.view.ViewTreeObserver;
 import android.widget.AbsListView;
 import android.widget.TextView;
 
+import com.example.android.sunshine.app.Diagnostics;
 import com.example.android.sunshine.app.ForecastAdapter;
+import com.example.android.sunshine.app.ForecastLoader;
+import com.example.android.sunshine.app.ForecastSnapshot;
+import com.example.android.sunshine.app.ForecastSnapshotFile;
+import com.example.android.sunshine.app.ForecastViewPool;
+import com.example.android.sunshine.app.MemoryPressure;
 import com.example.android.sunshine.app.R;
+import com.example.android.sunshine.app.SettingsStore;
+import com.example.android.sunshine.app.StartupMetrics;
+import com.example.android.sunshine.app.SunshineSettings;
+import com.example.android.sunshine.app.Tracing;
 import com.example.android.sunshine.app.Utility;
 import com.example.android.sunshine.app.data.WeatherContract;
+import com.example.android.sunshine.app.sync.LocationPrefetchTask;
 
 /**
  * Encapsulates fetching the forecast and displaying it as a {@link android.support.v7.widget.RecyclerView} layout.
  */
-public class ForecastFragment extends Fragment implements LoaderManager.LoaderCallbacks<Cursor> {
+public class ForecastFragment extends Fragment implements LoaderManager.LoaderCallbacks<ForecastLoader.Result>,
+    LocationPrefetchTask.Callback, SettingsStore.Listener {
 
     //--------------------------------------------------
     // Constants
@@ -89,11 +101,18 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
     //--------------------------------------------------
 
     private ForecastAdapter mForecastAdapter;
+    private SettingsStore mSettingsStore;
     private RecyclerView mRecyclerView;
     private boolean mAutoSelectView;
     private int mChoiceMode;
     private boolean mHoldForTransition;
     private long mInitialSelectedDate = -1;
+    private LocationPrefetchTask mPrefetchTask;
+    // Time the current location switch started, 0 when no switch is being measured.
+    private long mLocationSwitchStart;
+    // Time the view was created and list items inflated by then, until the first frame with rows.
+    private long mViewCreatedTime;
+    private int mViewCreatedInflations;
 
     //--------------------------------------------------
     // Constructor
@@ -111,6 +130,8 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
         super.onCreate(savedInstanceState);
         // Add this line in order for this fragment to handle menu events.
         setHasOptionsMenu(true);
+        mSettingsStore = SettingsStore.getInstance(getActivity());
+        mSettingsStore.addListener(this);
     }
 
     @Override
@@ -132,8 +153,16 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
         // Get a reference to the RecyclerView, and attach this adapter to it.
         mRecyclerView = (RecyclerView) rootView.findViewById(R.id.recyclerview_forecast);
 
-        // Set the layout manager.
-        mRecyclerView.setLayoutManager(new LinearLayoutManager(getActivity()));
+        // Set the layout manager. Item views go back to the shared pool when the list goes away,
+        // so the next list, after a rotation for instance, reuses them.
+        LinearLayoutManager layoutManager = new LinearLayoutManager(getActivity());
+        layoutManager.setRecycleChildrenOnDetach(true);
+        mRecyclerView.setLayoutManager(layoutManager);
+        ForecastViewPool viewPool = ForecastViewPool.getInstance(getActivity());
+        mRecyclerView.setRecycledViewPool(viewPool.getRecycledViewPool());
+        viewPool.prewarm();
+        mViewCreatedTime = SystemClock.elapsedRealtime();
+        mViewCreatedInflations = viewPool.getInflationCount();
         View emptyView = rootView.findViewById(R.id.recyclerview_forecast_empty);
 
         // Use this setting to improve performance if you know that changes in content do not change
@@ -142,7 +171,10 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
 
         // The ForecastAdapter will take data from a source and
         // use it to populate the RecyclerView it's attached to.
-        mForecastAdapter = new ForecastAdapter(getActivity(),
+        if (null != mForecastAdapter) {
+            MemoryPressure.unregister(mForecastAdapter);
+        }
+        mForecastAdapter = new ForecastAdapter(getActivity(), mSettingsStore.getSettings(),
             new ForecastAdapter.ForecastAdapterOnClickHandler() {
             @Override
             public void onClick(Long date, ForecastAdapter.ForecastAdapterViewHolder vh) {}
@@ -150,6 +182,7 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
 
         // Specify an adapter (see also next example).
         mRecyclerView.setAdapter(mForecastAdapter);
+        MemoryPressure.register(mForecastAdapter, MemoryPressure.TIER_WARM);
 
         // If there's instance state, mine it for useful information.
         // The end-goal here is that the user never knows that turning their device sideways
@@ -170,7 +203,25 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
         if (mHoldForTransition) {
             getActivity().supportPostponeEnterTransition();
         }
-        getLoaderManager().initLoader(FORECAST_LOADER, null, this);
+        ForecastLoader loader = (ForecastLoader) getLoaderManager().initLoader(FORECAST_LOADER, null, this);
+        // On a cold start, draw the last rendered forecast right away; the first load is then a
+        // diff from it. A loader retained with live data already has better rows.
+        ForecastSnapshot lastRendered = ForecastSnapshotFile.takePreloaded(
+            mSettingsStore.getSettings().locationSetting, WeatherContract.normalizeDate(System.currentTimeMillis()));
+        if (null != lastRendered && !loader.hasResult()) {
+            loader.setBaseSnapshot(lastRendered);
+            mForecastAdapter.swapSnapshot(lastRendered, null);
+            mRecyclerView.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+                @Override
+                public boolean onPreDraw() {
+                    if (mRecyclerView.getChildCount() > 0) {
+                        mRecyclerView.getViewTreeObserver().removeOnPreDrawListener(this);
+                        StartupMetrics.markFirstDataFrame(true);
+                    }
+                    return true;
+                }
+            });
+        }
         super.onActivityCreated(savedInstanceState);
     }
 
@@ -186,6 +237,14 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
     public void onDestroy() {
         Log.i(LOG_TAG, "ForecastFragment.onDestroy().");
         super.onDestroy();
+        mSettingsStore.removeListener(this);
+        if (null != mForecastAdapter) {
+            MemoryPressure.unregister(mForecastAdapter);
+        }
+        if (null != mPrefetchTask) {
+            mPrefetchTask.cancel(false);
+            mPrefetchTask = null;
+        }
         if (null != mRecyclerView) {
             mRecyclerView.clearOnScrollListeners();
         }
@@ -195,10 +254,49 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
     // Methods
     //--------------------------------------------------
 
-    // Since we read the location when we create the loader, all we need to do is restart things.
+    // The loader keeps showing the previous location until the new one has rows to display:
+    // it is only restarted once the prefetch task has made sure the forecast is stored.
     public void onLocationChanged() {
         Log.i(LOG_TAG, "ForecastFragment.onLocationChanged().");
-        getLoaderManager().restartLoader(FORECAST_LOADER, null, this);
+        mLocationSwitchStart = SystemClock.elapsedRealtime();
+        String locationSetting = mSettingsStore.getSettings().locationSetting;
+        Diagnostics.record(Diagnostics.LOCATION_CHANGE, null == locationSetting ? 0 : locationSetting.hashCode(), 0);
+        if (null != mPrefetchTask) {
+            mPrefetchTask.cancel(false);
+        }
+        mPrefetchTask = new LocationPrefetchTask(getActivity(), locationSetting, this);
+        // Not on the serial executor: a slow fetch would hold up every other AsyncTask.
+        AsyncTaskCompat.executeParallel(mPrefetchTask);
+    }
+
+    // Since we read the location when we create the loader, all we need to do is restart things.
+    @Override
+    public void onLocationReady(String locationSetting) {
+        Log.i(LOG_TAG, "ForecastFragment.onLocationReady().");
+        mPrefetchTask = null;
+        if (isAdded()) {
+            getLoaderManager().restartLoader(FORECAST_LOADER, null, this);
+        }
+    }
+
+    // Reports how long it took from the location change to a frame showing its forecast.
+    private void onLocationSwitchDrawn(boolean hasData) {
+        if (mLocationSwitchStart == 0) return;
+        long elapsed = SystemClock.elapsedRealtime() - mLocationSwitchStart;
+        mLocationSwitchStart = 0;
+        Log.i(LOG_TAG, "ForecastFragment: location switch to first " + (hasData ? "useful" : "empty")
+            + " frame took " + elapsed + " ms.");
+    }
+
+    // Reports how long it took from view creation to the first frame showing rows, and how many
+    // list items had to be inflated meanwhile instead of coming from the shared pool.
+    private void onFirstFrameWithRowsDrawn() {
+        if (mViewCreatedTime == 0) return;
+        long elapsed = SystemClock.elapsedRealtime() - mViewCreatedTime;
+        mViewCreatedTime = 0;
+        Log.i(LOG_TAG, "ForecastFragment: first frame with rows " + elapsed + " ms after view creation, "
+            + (ForecastViewPool.getInstance(getActivity()).getInflationCount() - mViewCreatedInflations)
+            + " list items inflated.");
     }
 
     public void setInitialSelectedDate(long initialSelectedDate) {
@@ -206,6 +304,23 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
         mInitialSelectedDate = initialSelectedDate;
     }
 
+    // Scrolls to the row of a date, selecting it if this fragment selects automatically. If the
+    // date isn't loaded yet, it becomes the initial selection of the next load.
+    public void scrollToDate(long date) {
+        Log.i(LOG_TAG, "ForecastFragment.scrollToDate().");
+        int position = null == mForecastAdapter ? RecyclerView.NO_POSITION
+            : mForecastAdapter.getPositionForDate(date);
+        if (position == RecyclerView.NO_POSITION) {
+            mInitialSelectedDate = date;
+            return;
+        }
+        mRecyclerView.smoothScrollToPosition(position);
+        RecyclerView.ViewHolder vh = mRecyclerView.findViewHolderForAdapterPosition(position);
+        if (null != vh && mAutoSelectView) {
+            mForecastAdapter.selectView(vh);
+        }
+    }
+
     // Updates the empty list view with contextually relevant information that the user can
     // use to determine why they aren't seeing weather.
     private void updateEmptyView() {
@@ -222,13 +337,26 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
         }
     }
 
+    //--------------------------------------------------
+    // SettingsStore Listener
+    //--------------------------------------------------
+
+    // Location changes are forwarded by the activity through onLocationChanged().
+    @Override
+    public void onSettingsChanged(SunshineSettings oldSettings, SunshineSettings newSettings) {
+        if (null != mForecastAdapter) {
+            mForecastAdapter.setSettings(newSettings);
+        }
+    }
+
     //--------------------------------------------------
     // LoaderManager LoaderCallbacks
     //--------------------------------------------------
 
     @Override
-    public Loader<Cursor> onCreateLoader(int i, Bundle bundle) {
+    public Loader<ForecastLoader.Result> onCreateLoader(int i, Bundle bundle) {
         Log.i(LOG_TAG, "ForecastFragment.onCreateLoader().");
+        Tracing.beginSection("ForecastFragment.onCreateLoader");
         // This is called when a new Loader needs to be created.  This
         // fragment only uses one loader, so we don't care about checking the id.
         // To only show current and future dates, filter the query to return weather only for
@@ -236,20 +364,24 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
         // Sort order:  Ascending, by date.
         String sortOrder = WeatherContract.WeatherEntry.COLUMN_DATE + " ASC";
 
-        String locationSetting = Utility.getPreferredLocation(getActivity());
+        String locationSetting = mSettingsStore.getSettings().locationSetting;
         Uri weatherForLocationUri = WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(
             locationSetting, System.currentTimeMillis());
 
-        return new CursorLoader(getActivity(), weatherForLocationUri, FORECAST_COLUMNS, null,
-            null, sortOrder);
+        Loader<ForecastLoader.Result> loader = new ForecastLoader(getActivity(), weatherForLocationUri,
+            FORECAST_COLUMNS, null, null, sortOrder);
+        Tracing.endSection();
+        return loader;
     }
 
     @Override
-    public void onLoadFinished(Loader<Cursor> loader, final Cursor data) {
+    public void onLoadFinished(Loader<ForecastLoader.Result> loader, ForecastLoader.Result data) {
         Log.i(LOG_TAG, "ForecastFragment.onLoadFinished().");
-        mForecastAdapter.swapCursor(data);
+        Tracing.beginSection("ForecastFragment.onLoadFinished");
+        mForecastAdapter.swapSnapshot(data.getSnapshot(), data.getDiff());
         updateEmptyView();
-        if (data.getCount() == 0) {
+        if (data.getSnapshot().size() == 0) {
+            onLocationSwitchDrawn(false);
             getActivity().supportStartPostponedEnterTransition();
         } else {
             mRecyclerView.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
@@ -259,18 +391,12 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
                     // we see Children.
                     if (mRecyclerView.getChildCount() > 0) {
                         mRecyclerView.getViewTreeObserver().removeOnPreDrawListener(this);
+                        onLocationSwitchDrawn(true);
+                        onFirstFrameWithRowsDrawn();
+                        StartupMetrics.markFirstDataFrame(false);
                         int position = mForecastAdapter.getSelectedItemPosition();
                         if (position == RecyclerView.NO_POSITION && -1 != mInitialSelectedDate) {
-                            Cursor data = mForecastAdapter.getCursor();
-                            int count = data.getCount();
-                            int dateColumn = data.getColumnIndex(WeatherContract.WeatherEntry.COLUMN_DATE);
-                            for (int i = 0; i < count; i++) {
-                                data.moveToPosition(i);
-                                if (data.getLong(dateColumn) == mInitialSelectedDate) {
-                                    position = i;
-                                    break;
-                                }
-                            }
+                            position = mForecastAdapter.getPositionForDate(mInitialSelectedDate);
                         }
                         if (position == RecyclerView.NO_POSITION) position = 0;
                         // If we don't need to restart the loader, and there's a desired position to restore
@@ -288,12 +414,16 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
                     return false;
                 }
             });
+            // A load matching the rows already drawn, from the last rendered forecast, changes
+            // nothing; make sure the listener still sees a frame.
+            mRecyclerView.invalidate();
         }
+        Tracing.endSection();
     }
 
     @Override
-    public void onLoaderReset(Loader<Cursor> loader) {
+    public void onLoaderReset(Loader<ForecastLoader.Result> loader) {
         Log.i(LOG_TAG, "ForecastFragment.onLoaderReset().");
-        mForecastAdapter.swapCursor(null);
+        mForecastAdapter.swapSnapshot(null, null);
     }
 }
\ No newline at end of file
@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.muzei;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * A bounded disk cache of downloaded artwork. Each URL is downloaded once, into a file named
+ * after its hash; files are touched when served, and the least recently served ones deleted
+ * once the cache grows past its bound. Not thread-safe: meant for the art source's worker
+ * thread.
+ */
+public class ArtDiskCache {
+
+    private static final int BUFFER_SIZE = 8192;
+    // A stalled server must not hold up the art source's thread, and every update queued on it.
+    static final int CONNECT_TIMEOUT_MILLIS = 15000;
+    static final int READ_TIMEOUT_MILLIS = 30000;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final File mDirectory;
+    private final long mMaxBytes;
+    private int mHits;
+    private int mMisses;
+
+    public ArtDiskCache(File directory, long maxBytes) {
+        mDirectory = directory;
+        mMaxBytes = maxBytes;
+    }
+
+    public File getDirectory() {
+        return mDirectory;
+    }
+
+    /**
+     * @return whether the artwork at a URL is on disk, so {@link #get(String)} won't download it.
+     */
+    public boolean contains(String url) {
+        return fileFor(url).isFile();
+    }
+
+    /**
+     * @return the cached file of the artwork at a URL, downloaded first if it isn't cached.
+     * @throws IOException if the artwork couldn't be downloaded
+     */
+    public File get(String url) throws IOException {
+        File file = fileFor(url);
+        if (file.isFile()) {
+            mHits++;
+            file.setLastModified(System.currentTimeMillis());
+            return file;
+        }
+        mMisses++;
+        download(url, file);
+        trim(file);
+        return file;
+    }
+
+    public int getHitCount() {
+        return mHits;
+    }
+
+    public int getMissCount() {
+        return mMisses;
+    }
+
+    /**
+     * @return the bytes used by cached artwork.
+     */
+    public long size() {
+        long size = 0;
+        for (File file : listFiles()) {
+            size += file.length();
+        }
+        return size;
+    }
+
+    // Downloads into a temporary file, renamed once complete, so a partial download is never served.
+    private void download(String url, File file) throws IOException {
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            throw new IOException("Can't create " + mDirectory);
+        }
+        File temp = new File(mDirectory, file.getName() + ".tmp");
+        URLConnection connection = new URL(url).openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+        connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+        InputStream in = null;
+        OutputStream out = null;
+        try {
+            in = connection.getInputStream();
+            out = new FileOutputStream(temp);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            out.close();
+            out = null;
+            if (!temp.renameTo(file)) {
+                throw new IOException("Can't rename " + temp + " to " + file);
+            }
+        } finally {
+            if (in != null) {
+                in.close();
+            }
+            if (out != null) {
+                out.close();
+            }
+            temp.delete();
+        }
+    }
+
+    // Deletes the least recently served files until the cache is within its bound, keeping the
+    // file just added whatever its size.
+    private void trim(File keep) {
+        File[] files = listFiles();
+        long size = 0;
+        for (File file : files) {
+            size += file.length();
+        }
+        if (size <= mMaxBytes) return;
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                long lhsModified = lhs.lastModified();
+                long rhsModified = rhs.lastModified();
+                return lhsModified < rhsModified ? -1 : (lhsModified == rhsModified ? 0 : 1);
+            }
+        });
+        for (int i = 0; i < files.length && size > mMaxBytes; i++) {
+            if (files[i].equals(keep)) continue;
+            long length = files[i].length();
+            if (files[i].delete()) {
+                size -= length;
+            }
+        }
+    }
+
+    private File[] listFiles() {
+        File[] files = mDirectory.listFiles();
+        return files == null ? new File[0] : files;
+    }
+
+    private File fileFor(String url) {
+        return new File(mDirectory, hash(url));
+    }
+
+    static String hash(String url) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(url.getBytes("UTF-8"));
+            char[] hex = new char[digest.length * 2];
+            for (int i = 0; i < digest.length; i++) {
+                hex[2 * i] = HEX[(digest[i] >> 4) & 0xf];
+                hex[2 * i + 1] = HEX[digest[i] & 0xf];
+            }
+            return new String(hex);
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.muzei;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v4.content.FileProvider;
+import android.util.Log;
+
+import com.example.android.sunshine.app.Diagnostics;
+import com.example.android.sunshine.app.R;
+import com.example.android.sunshine.app.Utility;
+import com.example.android.sunshine.app.WeatherConditions;
+import com.example.android.sunshine.app.activity.MainActivity;
+import com.example.android.sunshine.app.data.WeatherContract;
+import com.google.android.apps.muzei.api.Artwork;
+import com.google.android.apps.muzei.api.MuzeiArtSource;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Muzei art source showing the art of today's condition at the preferred location. Art is
+ * served to Muzei from a bounded disk cache, so each artwork is downloaded once, and is only
+ * published again when the condition changes.
+ *
+ * Updates follow the provider's change notifications: while Muzei uses the source, the
+ * application process observes the weather table and starts the source once per burst of
+ * changes, as a sync sends them.
+ */
+public class WeatherMuzeiSource extends MuzeiArtSource {
+
+    public static final String LOG_TAG = "Sunshine";
+
+    public static final String ACTION_WEATHER_CHANGED =
+        "com.example.android.sunshine.app.muzei.ACTION_WEATHER_CHANGED";
+
+    // Outcomes of an update, as recorded in Diagnostics.
+    public static final int UPDATE_SKIPPED = 0;
+    public static final int UPDATE_FROM_CACHE = 1;
+    public static final int UPDATE_DOWNLOADED = 2;
+    public static final int UPDATE_FAILED = 3;
+
+    private static final String MUZEI_PACKAGE = "net.nurik.roman.muzei";
+    private static final String PREFS_NAME = "muzei_source";
+    private static final String PREF_ENABLED = "enabled";
+    private static final String CACHE_DIRECTORY = "muzei_art";
+    private static final long CACHE_BYTES = 2 * 1024 * 1024;
+    /** Time notifications are gathered for before starting the source. */
+    static final long COALESCE_MILLIS = 1000;
+
+    private static final String[] TODAY_COLUMNS = {
+        WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
+        WeatherContract.WeatherEntry.COLUMN_SHORT_DESC
+    };
+    private static final int COL_WEATHER_ID = 0;
+    private static final int COL_SHORT_DESC = 1;
+
+    // Registered while Muzei uses the source, guarded by the class.
+    private static WeatherObserver sObserver;
+
+    public WeatherMuzeiSource() {
+        super("WeatherMuzeiSource");
+    }
+
+    /**
+     * Observes if Muzei uses the source, as when the process restarts. Called by the application.
+     */
+    public static void observeIfEnabled(Context context) {
+        if (isEnabled(context)) {
+            startObserving(context);
+        }
+    }
+
+    /**
+     * Starts the source after each burst of changes to the stored weather. Idempotent.
+     */
+    static synchronized void startObserving(Context context) {
+        if (sObserver != null) return;
+        Context appContext = context.getApplicationContext();
+        sObserver = new WeatherObserver(appContext);
+        appContext.getContentResolver().registerContentObserver(
+            WeatherContract.WeatherEntry.CONTENT_URI, true, sObserver);
+    }
+
+    static synchronized void stopObserving(Context context) {
+        if (sObserver == null) return;
+        context.getApplicationContext().getContentResolver().unregisterContentObserver(sObserver);
+        sObserver.cancel();
+        sObserver = null;
+    }
+
+    // Starts the source once per burst: the first notification schedules it, the ones following
+    // within COALESCE_MILLIS ride along.
+    private static class WeatherObserver extends ContentObserver implements Runnable {
+        private final Context mContext;
+        private final Handler mHandler;
+        // Only touched on the main thread.
+        private boolean mPending;
+
+        WeatherObserver(Context context) {
+            this(context, new Handler(Looper.getMainLooper()));
+        }
+
+        private WeatherObserver(Context context, Handler handler) {
+            super(handler);
+            mContext = context;
+            mHandler = handler;
+        }
+
+        @Override
+        public void onChange(boolean selfChange) {
+            if (mPending) return;
+            mPending = true;
+            mHandler.postDelayed(this, COALESCE_MILLIS);
+        }
+
+        @Override
+        public void run() {
+            mPending = false;
+            mContext.startService(new Intent(ACTION_WEATHER_CHANGED)
+                .setClass(mContext, WeatherMuzeiSource.class));
+        }
+
+        void cancel() {
+            mHandler.removeCallbacks(this);
+        }
+    }
+
+    static ArtDiskCache getCache(Context context) {
+        return new ArtDiskCache(new File(context.getCacheDir(), CACHE_DIRECTORY), CACHE_BYTES);
+    }
+
+    private static boolean isEnabled(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+            .getBoolean(PREF_ENABLED, false);
+    }
+
+    private void setEnabled(boolean enabled) {
+        SharedPreferences prefs = getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        prefs.edit().putBoolean(PREF_ENABLED, enabled).apply();
+    }
+
+    @Override
+    protected void onEnabled() {
+        setEnabled(true);
+        startObserving(this);
+    }
+
+    @Override
+    protected void onDisabled() {
+        setEnabled(false);
+        stopObserving(this);
+    }
+
+    @Override
+    protected void onHandleIntent(Intent intent) {
+        super.onHandleIntent(intent);
+        if (intent != null && ACTION_WEATHER_CHANGED.equals(intent.getAction()) && isEnabled()) {
+            onUpdate(UPDATE_REASON_OTHER);
+        }
+    }
+
+    @Override
+    protected void onUpdate(int reason) {
+        long start = System.nanoTime();
+        int outcome = update();
+        Diagnostics.recordTimed(Diagnostics.ART_SOURCE_UPDATE, outcome, start);
+    }
+
+    private int update() {
+        String location = Utility.getPreferredLocation(this);
+        Uri todayUri = WeatherContract.WeatherEntry.buildWeatherLocationWithDate(location,
+            System.currentTimeMillis());
+        Cursor cursor = getContentResolver().query(todayUri, TODAY_COLUMNS, null, null, null);
+        if (cursor == null) return UPDATE_FAILED;
+        int weatherId;
+        String shortDescription;
+        try {
+            if (!cursor.moveToFirst()) return UPDATE_SKIPPED;
+            weatherId = cursor.getInt(COL_WEATHER_ID);
+            shortDescription = cursor.getString(COL_SHORT_DESC);
+        } finally {
+            cursor.close();
+        }
+
+        String artUrl = Utility.getArtUrlForWeatherCondition(this, weatherId);
+        if (artUrl == null) return UPDATE_SKIPPED;
+        // The token names the condition and the art pack, so nothing is published while neither changes.
+        String token = weatherId + " " + artUrl;
+        Artwork current = getCurrentArtwork();
+        if (current != null && token.equals(current.getToken())) return UPDATE_SKIPPED;
+
+        ArtDiskCache cache = getCache(this);
+        boolean cached = cache.contains(artUrl);
+        File art;
+        try {
+            art = cache.get(artUrl);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "WeatherMuzeiSource.update(): can't download " + artUrl, e);
+            return UPDATE_FAILED;
+        }
+        Uri artUri = FileProvider.getUriForFile(this, getString(R.string.muzei_art_authority), art);
+        grantUriPermission(MUZEI_PACKAGE, artUri, Intent.FLAG_GRANT_READ_URI_PERMISSION);
+
+        int description = WeatherConditions.getDescriptionResource(weatherId);
+        publishArtwork(new Artwork.Builder()
+            .imageUri(artUri)
+            .title(description != 0 ? getString(description) : shortDescription)
+            .byline(location)
+            .token(token)
+            .viewIntent(new Intent(this, MainActivity.class))
+            .build());
+        Log.i(LOG_TAG, "WeatherMuzeiSource: published " + artUrl + (cached ? " from the cache." : "."));
+        return cached ? UPDATE_FROM_CACHE : UPDATE_DOWNLOADED;
+    }
+}
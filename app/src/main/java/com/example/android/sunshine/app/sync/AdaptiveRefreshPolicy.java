@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link RefreshPolicy} that refreshes often-viewed locations more often than ones the user
+ * rarely looks at, batches locations that become due close together into a single wake-up and
+ * holds off on metered, unplugged devices until a refresh can no longer wait.
+ */
+public class AdaptiveRefreshPolicy implements RefreshPolicy {
+
+    static final long HOUR_IN_MILLIS = 60 * 60 * 1000;
+    static final long DAY_IN_MILLIS = 24 * HOUR_IN_MILLIS;
+
+    // Refresh intervals by popularity.
+    static final long HOT_INTERVAL = 3 * HOUR_IN_MILLIS;
+    static final long WARM_INTERVAL = 6 * HOUR_IN_MILLIS;
+    static final long COLD_INTERVAL = DAY_IN_MILLIS;
+    static final int HOT_VIEW_COUNT = 10;
+
+    // A forecast covering fewer days than this is considered stale whatever its age, but it is
+    // still never fetched more than once per MIN_INTERVAL.
+    static final long MIN_HORIZON = 3 * DAY_IN_MILLIS;
+    static final long MIN_INTERVAL = HOUR_IN_MILLIS;
+
+    // Locations becoming due within this window of each other share one wake-up.
+    static final long BATCH_WINDOW = HOUR_IN_MILLIS;
+
+    private final Clock mClock;
+    private final NetworkState mNetworkState;
+
+    public AdaptiveRefreshPolicy(Clock clock, NetworkState networkState) {
+        mClock = clock;
+        mNetworkState = networkState;
+    }
+
+    @Override
+    public RefreshPlan plan(List<LocationRefreshState> locations) {
+        final long now = mClock.currentTimeMillis();
+        final boolean connected = mNetworkState.isConnected();
+        final boolean goodWindow = mNetworkState.isUnmetered() || mNetworkState.isCharging();
+
+        // First pass: is anything urgent enough to justify a metered, on-battery fetch?
+        boolean anyUrgent = false;
+        for (LocationRefreshState state : locations) {
+            if (dueAt(state, now) <= now && urgentAt(state, now) <= now) {
+                anyUrgent = true;
+                break;
+            }
+        }
+        // Once the radio is up for an urgent location, the other due ones ride along.
+        boolean fetchNow = connected && (goodWindow || anyUrgent);
+
+        List<String> due = new ArrayList<String>();
+        long earliest = Long.MAX_VALUE;
+        long deadline = Long.MAX_VALUE;
+        for (LocationRefreshState state : locations) {
+            long dueAt = dueAt(state, now);
+            if (fetchNow && dueAt <= now) {
+                due.add(state.locationSetting);
+                continue;
+            }
+            earliest = Math.min(earliest, Math.max(dueAt, now));
+            deadline = Math.min(deadline, Math.max(urgentAt(state, now), now));
+        }
+
+        if (earliest == Long.MAX_VALUE) {
+            return new RefreshPlan(due, RefreshPlan.NO_WAKE_UP, RefreshPlan.NO_WAKE_UP);
+        }
+
+        // Stretch the wake-up to cover every location becoming due shortly after the earliest
+        // one, without pushing it past the point where one of them must run.
+        long wakeUp = earliest;
+        for (LocationRefreshState state : locations) {
+            if (due.contains(state.locationSetting)) continue;
+            long dueAt = Math.max(dueAt(state, now), now);
+            if (dueAt > wakeUp && dueAt <= earliest + BATCH_WINDOW && dueAt <= deadline) {
+                wakeUp = dueAt;
+            }
+        }
+        return new RefreshPlan(due, wakeUp - now, Math.max(deadline, wakeUp) - now);
+    }
+
+    /**
+     * @return the refresh interval for a location, shorter for locations viewed more often.
+     */
+    static long intervalFor(LocationRefreshState state) {
+        if (state.viewCount >= HOT_VIEW_COUNT) return HOT_INTERVAL;
+        if (state.viewCount > 0) return WARM_INTERVAL;
+        return COLD_INTERVAL;
+    }
+
+    /**
+     * @return the time from which the stored forecast stops being fresh.
+     */
+    static long dueAt(LocationRefreshState state, long now) {
+        if (state.lastFetchMillis == 0) return 0;
+        if (isHorizonShort(state, now)) return state.lastFetchMillis + MIN_INTERVAL;
+        return state.lastFetchMillis + intervalFor(state);
+    }
+
+    /**
+     * @return the time after which a refresh should no longer wait for an unmetered or
+     * charging window.
+     */
+    static long urgentAt(LocationRefreshState state, long now) {
+        // Nothing to show at all for tomorrow: don't make the user wait for Wi-Fi.
+        if (state.lastFetchMillis == 0 || state.horizonMillis < now + DAY_IN_MILLIS) {
+            return dueAt(state, now);
+        }
+        return dueAt(state, now) + intervalFor(state);
+    }
+
+    static boolean isHorizonShort(LocationRefreshState state, long now) {
+        return state.horizonMillis < now + MIN_HORIZON;
+    }
+}
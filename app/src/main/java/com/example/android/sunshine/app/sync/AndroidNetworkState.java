@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.BatteryManager;
+import android.support.v4.net.ConnectivityManagerCompat;
+
+/**
+ * {@link NetworkState} read from the system services when it is created.
+ */
+public class AndroidNetworkState implements NetworkState {
+
+    private final boolean mConnected;
+    private final boolean mUnmetered;
+    private final boolean mCharging;
+
+    public AndroidNetworkState(Context context) {
+        ConnectivityManager cm = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo activeNetwork = cm.getActiveNetworkInfo();
+        mConnected = activeNetwork != null && activeNetwork.isConnected();
+        mUnmetered = mConnected && !ConnectivityManagerCompat.isActiveNetworkMetered(cm);
+
+        // ACTION_BATTERY_CHANGED is sticky, so this returns the last broadcast without
+        // registering anything.
+        Intent battery = context.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        int plugged = battery != null ? battery.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) : 0;
+        mCharging = plugged != 0;
+    }
+
+    @Override
+    public boolean isConnected() {
+        return mConnected;
+    }
+
+    @Override
+    public boolean isUnmetered() {
+        return mUnmetered;
+    }
+
+    @Override
+    public boolean isCharging() {
+        return mCharging;
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.example.android.sunshine.app.data.WeatherContract;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Imports a local forecast archive (see {@link ForecastArchiveParser} for the format) into the
+ * {@link com.example.android.sunshine.app.data.WeatherProvider}.
+ * <p>
+ * The file is memory-mapped a window at a time and records are handed to the provider's
+ * bulk insert in chunks, one transaction per chunk. The offset of the last committed chunk is
+ * checkpointed, so an interrupted import resumes where it stopped; re-importing a few records
+ * twice is harmless because weather rows replace each other on (date, location).
+ * <p>
+ * Must not be called on the main thread.
+ */
+public class ForecastArchiveImporter {
+
+    public static final String LOG_TAG = "Sunshine";
+
+    public interface ProgressListener {
+        void onProgress(long bytesDone, long bytesTotal, long recordsImported);
+    }
+
+    static final int CHUNK_SIZE = 1000;
+    private static final long WINDOW_SIZE = 64 * 1024 * 1024;
+
+    private static final String PREFS_NAME = "archive_import";
+
+    private final Context mContext;
+    private final WeatherFetcher mLocations;
+    private final SharedPreferences mCheckpoints;
+    private int mChunkSize = CHUNK_SIZE;
+
+    public ForecastArchiveImporter(Context context) {
+        mContext = context.getApplicationContext();
+        mLocations = new WeatherFetcher(mContext);
+        mCheckpoints = mContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    void setChunkSize(int chunkSize) {
+        mChunkSize = chunkSize;
+    }
+
+    /**
+     * @return the number of records imported by this call, not counting those imported by an
+     * earlier, interrupted call.
+     * @throws IOException if the archive can't be read
+     * @throws IllegalArgumentException if the archive contains a malformed record
+     */
+    public long importArchive(File archive, ProgressListener listener) throws IOException {
+        final String checkpointKey = checkpointKey(archive);
+        RandomAccessFile file = new RandomAccessFile(archive, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            final long size = channel.size();
+            long position = mCheckpoints.getLong(checkpointKey, 0);
+            if (position > 0) {
+                Log.i(LOG_TAG, "ForecastArchiveImporter: resuming " + archive + " at " + position + ".");
+            }
+
+            ChunkWriter writer = new ChunkWriter(checkpointKey, size, listener);
+            ForecastArchiveParser parser = new ForecastArchiveParser();
+            while (position < size) {
+                long windowSize = Math.min(WINDOW_SIZE, size - position);
+                boolean endOfInput = position + windowSize == size;
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, windowSize);
+
+                int consumed = parser.parse(window, position, endOfInput, writer);
+                if (consumed == 0) {
+                    throw new IllegalArgumentException("Forecast archive line longer than "
+                        + WINDOW_SIZE + " bytes at offset " + position);
+                }
+                position += consumed;
+                // Records after the last committed chunk are flushed here; the next window starts
+                // on a line boundary, so nothing is parsed twice.
+                writer.flush(position);
+            }
+            mCheckpoints.edit().remove(checkpointKey).apply();
+            return writer.mImported;
+        } finally {
+            file.close();
+        }
+    }
+
+    // The checkpoint is only valid for the exact file it was taken on.
+    private static String checkpointKey(File archive) {
+        return archive.getAbsolutePath() + ":" + archive.length() + ":" + archive.lastModified();
+    }
+
+    /**
+     * Buffers records into reusable ContentValues and bulk inserts them a chunk at a time.
+     */
+    private class ChunkWriter implements ForecastArchiveParser.RecordSink {
+        private final ContentValues[] mChunk = new ContentValues[mChunkSize];
+        private final Map<String, Long> mLocationIds = new HashMap<String, Long>();
+        private final String mCheckpointKey;
+        private final long mSize;
+        private final ProgressListener mListener;
+        private int mCount;
+        long mImported;
+
+        ChunkWriter(String checkpointKey, long size, ProgressListener listener) {
+            mCheckpointKey = checkpointKey;
+            mSize = size;
+            mListener = listener;
+            for (int i = 0; i < mChunk.length; i++) {
+                mChunk[i] = new ContentValues();
+            }
+        }
+
+        @Override
+        public void onRecord(ForecastArchiveRecord record) {
+            Long locationId = mLocationIds.get(record.locationSetting);
+            if (locationId == null) {
+                locationId = mLocations.addLocation(record.locationSetting, record.cityName,
+                    record.coordLat, record.coordLong);
+                mLocationIds.put(record.locationSetting, locationId);
+            }
+
+            ContentValues values = mChunk[mCount++];
+            values.put(WeatherContract.WeatherEntry.COLUMN_LOC_KEY, locationId);
+            values.put(WeatherContract.WeatherEntry.COLUMN_DATE, record.date);
+            values.put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, record.weatherId);
+            values.put(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC, record.shortDesc);
+            values.put(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, record.minTemp);
+            values.put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, record.maxTemp);
+            values.put(WeatherContract.WeatherEntry.COLUMN_HUMIDITY, record.humidity);
+            values.put(WeatherContract.WeatherEntry.COLUMN_PRESSURE, record.pressure);
+            values.put(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED, record.windSpeed);
+            values.put(WeatherContract.WeatherEntry.COLUMN_DEGREES, record.degrees);
+            if (mCount == mChunk.length) {
+                flush(record.nextOffset);
+            }
+        }
+
+        void flush(long committedOffset) {
+            if (mCount > 0) {
+                ContentValues[] chunk = mChunk;
+                if (mCount < mChunk.length) {
+                    chunk = new ContentValues[mCount];
+                    System.arraycopy(mChunk, 0, chunk, 0, mCount);
+                }
+                mImported += mContext.getContentResolver().bulkInsert(
+                    WeatherContract.WeatherEntry.CONTENT_URI, chunk);
+                mCount = 0;
+            }
+            mCheckpoints.edit().putLong(mCheckpointKey, committedOffset).apply();
+            if (mListener != null) {
+                mListener.onProgress(committedOffset, mSize, mImported);
+            }
+        }
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Parses forecast archive records straight out of a {@link ByteBuffer}, typically a memory-mapped
+ * file. Numbers are decoded from the bytes and the few distinct strings of an archive (location
+ * settings, city names, descriptions) are pooled, so steady-state parsing allocates nothing.
+ * <p>
+ * An archive is UTF-8 text with one record per line and comma separated fields:
+ * <pre>
+ * location_setting,city_name,coord_lat,coord_long,date,weather_id,short_desc,min,max,humidity,pressure,wind,degrees
+ * </pre>
+ * where date is in milliseconds since the epoch. Empty lines and lines starting with '#' are
+ * skipped. Fields cannot contain commas or line breaks.
+ */
+public class ForecastArchiveParser {
+
+    public interface RecordSink {
+        void onRecord(ForecastArchiveRecord record);
+    }
+
+    private static final int FIELD_COUNT = 13;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final ForecastArchiveRecord mRecord = new ForecastArchiveRecord();
+    private final StringPool mStrings = new StringPool();
+    // Start and end offsets of the fields of the current line.
+    private final int[] mFieldStart = new int[FIELD_COUNT];
+    private final int[] mFieldEnd = new int[FIELD_COUNT];
+
+    /**
+     * Parses every complete line between the buffer's position and limit.
+     *
+     * @param baseOffset offset in the archive of the buffer's index 0
+     * @param endOfInput true if the limit is the end of the archive, so a last line without a
+     *                   line break is complete
+     * @return the number of bytes consumed from the position, always ending on a line boundary
+     * @throws IllegalArgumentException on a malformed record
+     */
+    public int parse(ByteBuffer buffer, long baseOffset, boolean endOfInput, RecordSink sink) {
+        final int start = buffer.position();
+        final int limit = buffer.limit();
+        int lineStart = start;
+        for (int i = start; i < limit; i++) {
+            if (buffer.get(i) == '\n') {
+                parseLine(buffer, lineStart, i, baseOffset + i + 1, baseOffset, sink);
+                lineStart = i + 1;
+            }
+        }
+        if (endOfInput && lineStart < limit) {
+            parseLine(buffer, lineStart, limit, baseOffset + limit, baseOffset, sink);
+            lineStart = limit;
+        }
+        return lineStart - start;
+    }
+
+    private void parseLine(ByteBuffer buffer, int start, int end, long nextOffset, long baseOffset,
+        RecordSink sink) {
+        if (end > start && buffer.get(end - 1) == '\r') end--;
+        if (end == start || buffer.get(start) == '#') return;
+
+        int field = 0;
+        mFieldStart[0] = start;
+        for (int i = start; i < end; i++) {
+            if (buffer.get(i) == ',') {
+                if (field == FIELD_COUNT - 1) throw malformed(baseOffset + start);
+                mFieldEnd[field++] = i;
+                mFieldStart[field] = i + 1;
+            }
+        }
+        mFieldEnd[field] = end;
+        if (field != FIELD_COUNT - 1) throw malformed(baseOffset + start);
+
+        try {
+            ForecastArchiveRecord r = mRecord;
+            r.nextOffset = nextOffset;
+            r.locationSetting = mStrings.get(buffer, mFieldStart[0], mFieldEnd[0]);
+            r.cityName = mStrings.get(buffer, mFieldStart[1], mFieldEnd[1]);
+            r.coordLat = parseDouble(buffer, mFieldStart[2], mFieldEnd[2]);
+            r.coordLong = parseDouble(buffer, mFieldStart[3], mFieldEnd[3]);
+            r.date = parseLong(buffer, mFieldStart[4], mFieldEnd[4]);
+            r.weatherId = (int) parseLong(buffer, mFieldStart[5], mFieldEnd[5]);
+            r.shortDesc = mStrings.get(buffer, mFieldStart[6], mFieldEnd[6]);
+            r.minTemp = parseDouble(buffer, mFieldStart[7], mFieldEnd[7]);
+            r.maxTemp = parseDouble(buffer, mFieldStart[8], mFieldEnd[8]);
+            r.humidity = parseDouble(buffer, mFieldStart[9], mFieldEnd[9]);
+            r.pressure = parseDouble(buffer, mFieldStart[10], mFieldEnd[10]);
+            r.windSpeed = parseDouble(buffer, mFieldStart[11], mFieldEnd[11]);
+            r.degrees = parseDouble(buffer, mFieldStart[12], mFieldEnd[12]);
+        } catch (NumberFormatException e) {
+            throw malformed(baseOffset + start);
+        }
+        sink.onRecord(mRecord);
+    }
+
+    private static IllegalArgumentException malformed(long offset) {
+        return new IllegalArgumentException("Malformed forecast archive record at offset " + offset);
+    }
+
+    static long parseLong(ByteBuffer buffer, int start, int end) {
+        if (start == end) throw new NumberFormatException();
+        boolean negative = buffer.get(start) == '-';
+        int i = negative ? start + 1 : start;
+        if (i == end) throw new NumberFormatException();
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) throw new NumberFormatException();
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses a plain decimal number such as "-12.75". Exponents are not supported.
+     */
+    static double parseDouble(ByteBuffer buffer, int start, int end) {
+        if (start == end) throw new NumberFormatException();
+        boolean negative = buffer.get(start) == '-';
+        int i = negative ? start + 1 : start;
+        long mantissa = 0;
+        int fractionDigits = 0;
+        boolean seenDigit = false;
+        boolean seenPoint = false;
+        for (; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b == '.' && !seenPoint) {
+                seenPoint = true;
+                continue;
+            }
+            int digit = b - '0';
+            if (digit < 0 || digit > 9) throw new NumberFormatException();
+            seenDigit = true;
+            // Digits beyond long precision can't change a double anyway.
+            if (mantissa < Long.MAX_VALUE / 10 - 9) {
+                mantissa = mantissa * 10 + digit;
+                if (seenPoint) fractionDigits++;
+            } else if (!seenPoint) {
+                throw new NumberFormatException();
+            }
+        }
+        if (!seenDigit) throw new NumberFormatException();
+        double value = fractionDigits < POWERS_OF_TEN.length
+            ? mantissa / POWERS_OF_TEN[fractionDigits]
+            : mantissa / Math.pow(10, fractionDigits);
+        return negative ? -value : value;
+    }
+
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15,
+        1e16, 1e17, 1e18
+    };
+
+    /**
+     * Open-addressing table from byte ranges to Strings. A String is only allocated the first
+     * time a given sequence of bytes is seen.
+     */
+    static class StringPool {
+        private byte[][] mKeys = new byte[64][];
+        private String[] mValues = new String[64];
+        private int mSize;
+
+        String get(ByteBuffer buffer, int start, int end) {
+            int hash = 1;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + buffer.get(i);
+            }
+            int mask = mKeys.length - 1;
+            int slot = hash & mask;
+            while (mKeys[slot] != null) {
+                if (matches(mKeys[slot], buffer, start, end)) return mValues[slot];
+                slot = (slot + 1) & mask;
+            }
+
+            byte[] key = new byte[end - start];
+            for (int i = start; i < end; i++) {
+                key[i - start] = buffer.get(i);
+            }
+            String value = new String(key, UTF_8);
+            mKeys[slot] = key;
+            mValues[slot] = value;
+            if (++mSize * 2 > mKeys.length) grow();
+            return value;
+        }
+
+        private static boolean matches(byte[] key, ByteBuffer buffer, int start, int end) {
+            if (key.length != end - start) return false;
+            for (int i = 0; i < key.length; i++) {
+                if (key[i] != buffer.get(start + i)) return false;
+            }
+            return true;
+        }
+
+        private void grow() {
+            byte[][] oldKeys = mKeys;
+            String[] oldValues = mValues;
+            mKeys = new byte[oldKeys.length * 2][];
+            mValues = new String[oldValues.length * 2];
+            int mask = mKeys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] == null) continue;
+                int slot = Arrays.hashCode(oldKeys[i]) & mask;
+                while (mKeys[slot] != null) slot = (slot + 1) & mask;
+                mKeys[slot] = oldKeys[i];
+                mValues[slot] = oldValues[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+/**
+ * One line of a forecast archive. Instances are reused by {@link ForecastArchiveParser} for
+ * every record, so sinks must copy what they need before returning.
+ */
+public class ForecastArchiveRecord {
+    // Offset in the archive just past this record's line, where parsing can resume.
+    public long nextOffset;
+
+    // Strings come from the parser's pool: the same instance is returned for equal bytes.
+    public String locationSetting;
+    public String cityName;
+    public double coordLat;
+    public double coordLong;
+    public long date;
+    public int weatherId;
+    public String shortDesc;
+    public double minTemp;
+    public double maxTemp;
+    public double humidity;
+    public double pressure;
+    public double windSpeed;
+    public double degrees;
+}
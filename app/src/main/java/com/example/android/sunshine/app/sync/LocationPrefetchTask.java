@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.os.AsyncTask;
+
+import com.example.android.sunshine.app.data.WeatherContract;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * Makes sure a newly selected location has a forecast stored before the UI switches to it.
+ * If today's forecast is already stored the callback runs right away; otherwise the forecast is
+ * fetched first, so the previous location keeps being displayed until the new rows are committed.
+ * The callback is held weakly: a fetch outliving its screen doesn't keep the screen alive.
+ */
+public class LocationPrefetchTask extends AsyncTask<Void, Void, Void> {
+
+    public interface Callback {
+        void onLocationReady(String locationSetting);
+    }
+
+    private static final String[] SYNC_COLUMNS = {
+        WeatherContract.SyncEntry.COLUMN_HORIZON
+    };
+
+    private final Context mContext;
+    private final String mLocationSetting;
+    private final WeakReference<Callback> mCallback;
+
+    public LocationPrefetchTask(Context context, String locationSetting, Callback callback) {
+        mContext = context.getApplicationContext();
+        mLocationSetting = locationSetting;
+        mCallback = new WeakReference<Callback>(callback);
+    }
+
+    @Override
+    protected Void doInBackground(Void... params) {
+        if (!hasForecastFromToday(mContext, mLocationSetting) && !isCancelled()) {
+            // If this fails, the switch still happens and the empty view explains why.
+            new WeatherFetcher(mContext).fetch(mLocationSetting);
+        }
+        return null;
+    }
+
+    @Override
+    protected void onPostExecute(Void result) {
+        Callback callback = mCallback.get();
+        if (callback != null) {
+            callback.onLocationReady(mLocationSetting);
+        }
+    }
+
+    /**
+     * Reads the location's sync metadata row; does not scan the weather table.
+     */
+    static boolean hasForecastFromToday(Context context, String locationSetting) {
+        Cursor cursor = context.getContentResolver().query(
+            WeatherContract.SyncEntry.buildSyncLocation(locationSetting), SYNC_COLUMNS, null, null, null);
+        if (cursor == null) return false;
+        try {
+            return cursor.moveToFirst()
+                && cursor.getLong(0) >= WeatherContract.normalizeDate(System.currentTimeMillis());
+        } finally {
+            cursor.close();
+        }
+    }
+}
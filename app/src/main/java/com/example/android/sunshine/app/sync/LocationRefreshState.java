@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+/**
+ * What the refresh policy needs to know about one stored location.
+ */
+public class LocationRefreshState {
+
+    public final String locationSetting;
+
+    // Time of the last successful fetch, 0 if the location was never fetched.
+    public final long lastFetchMillis;
+
+    // Normalized date of the last forecast day stored for this location, 0 if none.
+    public final long horizonMillis;
+
+    // How many times the user has looked at this location.
+    public final int viewCount;
+
+    public LocationRefreshState(String locationSetting, long lastFetchMillis, long horizonMillis,
+        int viewCount) {
+        this.locationSetting = locationSetting;
+        this.lastFetchMillis = lastFetchMillis;
+        this.horizonMillis = horizonMillis;
+        this.viewCount = viewCount;
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of a {@link RefreshPolicy} evaluation: which locations to fetch now, and when the next
+ * wake-up should happen.
+ */
+public class RefreshPlan {
+
+    public static final long NO_WAKE_UP = -1;
+
+    // Locations to fetch in this wake-up. Empty when nothing is due or conditions are poor.
+    public final List<String> dueLocations;
+
+    // Delay until the next wake-up should be scheduled, or NO_WAKE_UP.
+    public final long nextWakeUpDelayMillis;
+
+    // Latest delay at which the next wake-up must run even on a metered network, or NO_WAKE_UP
+    // if it may wait indefinitely for an unmetered or charging window.
+    public final long deadlineDelayMillis;
+
+    public RefreshPlan(List<String> dueLocations, long nextWakeUpDelayMillis,
+        long deadlineDelayMillis) {
+        this.dueLocations = Collections.unmodifiableList(dueLocations);
+        this.nextWakeUpDelayMillis = nextWakeUpDelayMillis;
+        this.deadlineDelayMillis = deadlineDelayMillis;
+    }
+
+    public boolean hasWork() {
+        return !dueLocations.isEmpty();
+    }
+}
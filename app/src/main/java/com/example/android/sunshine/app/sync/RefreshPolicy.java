@@ -0,0 +1,27 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import java.util.List;
+
+/**
+ * Decides which locations need to be refreshed. Implementations must not touch Android APIs so
+ * they can be exercised on the JVM with a fake {@link Clock} and {@link NetworkState}.
+ */
+public interface RefreshPolicy {
+
+    RefreshPlan plan(List<LocationRefreshState> locations);
+}
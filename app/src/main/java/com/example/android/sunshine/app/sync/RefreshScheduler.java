@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.content.Context;
+
+import com.google.android.gms.gcm.GcmNetworkManager;
+import com.google.android.gms.gcm.OneoffTask;
+import com.google.android.gms.gcm.Task;
+
+/**
+ * Turns a {@link RefreshPlan} into {@link GcmNetworkManager} tasks run by
+ * {@link SunshineRefreshService}.
+ * <p>
+ * Three one-off tasks are used. The policy considers an unmetered network or a charging device a
+ * good window, so there is an opportunistic task for each: one requiring an unmetered network,
+ * one requiring the charger. A deadline task runs on any network once the refresh can no longer
+ * wait. Whichever runs first re-plans; locations it refreshed are fresh again, so the others find
+ * nothing to do.
+ */
+public class RefreshScheduler {
+
+    static final String TAG_OPPORTUNISTIC = "refresh_unmetered";
+    static final String TAG_CHARGING = "refresh_charging";
+    static final String TAG_DEADLINE = "refresh_deadline";
+
+    // GcmNetworkManager wants a window; give it some room so it can batch with other apps.
+    private static final long MIN_WINDOW_SECONDS = 30;
+
+    /**
+     * Asks for an immediate planning pass. The service evaluates the policy on its own thread,
+     * so this is safe to call from the main thread.
+     */
+    public static void requestRefresh(Context context) {
+        GcmNetworkManager.getInstance(context).schedule(new OneoffTask.Builder()
+            .setService(SunshineRefreshService.class)
+            .setTag(TAG_DEADLINE)
+            .setExecutionWindow(0, MIN_WINDOW_SECONDS)
+            .setRequiredNetwork(Task.NETWORK_STATE_CONNECTED)
+            .setUpdateCurrent(true)
+            .build());
+    }
+
+    static void schedule(Context context, RefreshPlan plan) {
+        GcmNetworkManager manager = GcmNetworkManager.getInstance(context);
+        if (plan.nextWakeUpDelayMillis == RefreshPlan.NO_WAKE_UP) {
+            manager.cancelTask(TAG_OPPORTUNISTIC, SunshineRefreshService.class);
+            manager.cancelTask(TAG_CHARGING, SunshineRefreshService.class);
+            manager.cancelTask(TAG_DEADLINE, SunshineRefreshService.class);
+            return;
+        }
+
+        long wakeUp = plan.nextWakeUpDelayMillis / 1000;
+        long deadline = Math.max(plan.deadlineDelayMillis / 1000, wakeUp + MIN_WINDOW_SECONDS);
+
+        manager.schedule(new OneoffTask.Builder()
+            .setService(SunshineRefreshService.class)
+            .setTag(TAG_OPPORTUNISTIC)
+            .setExecutionWindow(wakeUp, deadline)
+            .setRequiredNetwork(Task.NETWORK_STATE_UNMETERED)
+            .setUpdateCurrent(true)
+            .build());
+        manager.schedule(new OneoffTask.Builder()
+            .setService(SunshineRefreshService.class)
+            .setTag(TAG_CHARGING)
+            .setExecutionWindow(wakeUp, deadline)
+            .setRequiredNetwork(Task.NETWORK_STATE_CONNECTED)
+            .setRequiresCharging(true)
+            .setUpdateCurrent(true)
+            .build());
+        manager.schedule(new OneoffTask.Builder()
+            .setService(SunshineRefreshService.class)
+            .setTag(TAG_DEADLINE)
+            .setExecutionWindow(deadline, deadline + MIN_WINDOW_SECONDS)
+            .setRequiredNetwork(Task.NETWORK_STATE_CONNECTED)
+            .setUpdateCurrent(true)
+            .build());
+    }
+}
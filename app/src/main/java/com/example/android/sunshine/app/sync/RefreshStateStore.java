@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+
+import com.example.android.sunshine.app.data.WeatherContract;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects the {@link LocationRefreshState} of every stored location from the sync metadata
+ * route, and records the views the refresh policy bases its intervals on.
+ */
+public class RefreshStateStore {
+
+    private static final String PREFS_NAME = "refresh_state";
+    private static final String VIEW_COUNT_PREFIX = "views_";
+
+    private static final String[] SYNC_COLUMNS = {
+        WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING,
+        WeatherContract.SyncEntry.COLUMN_LAST_FETCH,
+        WeatherContract.SyncEntry.COLUMN_HORIZON
+    };
+
+    // These indices are tied to SYNC_COLUMNS.
+    private static final int COL_LOCATION_SETTING = 0;
+    private static final int COL_LAST_FETCH = 1;
+    private static final int COL_HORIZON = 2;
+
+    private final Context mContext;
+    private final SharedPreferences mPrefs;
+
+    public RefreshStateStore(Context context) {
+        mContext = context.getApplicationContext();
+        mPrefs = mContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    public void recordView(String locationSetting) {
+        String key = VIEW_COUNT_PREFIX + locationSetting;
+        mPrefs.edit().putInt(key, mPrefs.getInt(key, 0) + 1).apply();
+    }
+
+    /**
+     * Must not be called on the main thread: it queries the provider.
+     *
+     * @param preferredLocation the location setting currently selected by the user; it is
+     *                          included even if nothing has been stored for it yet.
+     */
+    public List<LocationRefreshState> load(String preferredLocation) {
+        List<LocationRefreshState> states = new ArrayList<LocationRefreshState>();
+        boolean sawPreferred = false;
+        // One row per location; the metadata columns read as 0 when they are null.
+        Cursor cursor = mContext.getContentResolver().query(
+            WeatherContract.SyncEntry.CONTENT_URI, SYNC_COLUMNS, null, null, null);
+        if (cursor != null) {
+            try {
+                while (cursor.moveToNext()) {
+                    String setting = cursor.getString(COL_LOCATION_SETTING);
+                    sawPreferred |= setting.equals(preferredLocation);
+                    states.add(new LocationRefreshState(setting,
+                        cursor.getLong(COL_LAST_FETCH),
+                        cursor.getLong(COL_HORIZON),
+                        mPrefs.getInt(VIEW_COUNT_PREFIX + setting, 0)));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        if (!sawPreferred && preferredLocation != null) {
+            states.add(new LocationRefreshState(preferredLocation, 0, 0,
+                mPrefs.getInt(VIEW_COUNT_PREFIX + preferredLocation, 0)));
+        }
+        return states;
+    }
+}
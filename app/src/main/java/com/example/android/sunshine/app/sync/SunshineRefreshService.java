@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.util.Log;
+
+import com.example.android.sunshine.app.Utility;
+import com.google.android.gms.gcm.GcmNetworkManager;
+import com.google.android.gms.gcm.GcmTaskService;
+import com.google.android.gms.gcm.TaskParams;
+
+/**
+ * Runs the refresh tasks scheduled by {@link RefreshScheduler}: evaluates the
+ * {@link RefreshPolicy}, fetches every due location in this single wake-up and schedules the
+ * next one.
+ */
+public class SunshineRefreshService extends GcmTaskService {
+
+    public static final String LOG_TAG = "Sunshine";
+
+    @Override
+    public void onInitializeTasks() {
+        // Tasks are dropped when the app is updated or Play Services is reinstalled.
+        RefreshScheduler.requestRefresh(this);
+    }
+
+    @Override
+    public int onRunTask(TaskParams taskParams) {
+        Log.i(LOG_TAG, "SunshineRefreshService.onRunTask(): " + taskParams.getTag() + ".");
+        RefreshStateStore store = new RefreshStateStore(this);
+        RefreshPolicy policy = new AdaptiveRefreshPolicy(Clock.SYSTEM, new AndroidNetworkState(this));
+        RefreshPlan plan = policy.plan(store.load(Utility.getPreferredLocation(this)));
+
+        boolean failed = false;
+        WeatherFetcher fetcher = new WeatherFetcher(this);
+        for (String locationSetting : plan.dueLocations) {
+            // A successful fetch updates the location's sync metadata in the same transaction.
+            if (!fetcher.fetch(locationSetting)) {
+                failed = true;
+            }
+        }
+
+        if (failed) {
+            // Let GcmNetworkManager back off; the next run will re-plan anyway.
+            return GcmNetworkManager.RESULT_RESCHEDULE;
+        }
+        if (plan.hasWork()) {
+            // Re-plan now that the fetched locations are fresh.
+            plan = policy.plan(store.load(Utility.getPreferredLocation(this)));
+        }
+        RefreshScheduler.schedule(this, plan);
+        return GcmNetworkManager.RESULT_SUCCESS;
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.util.Log;
+
+import com.example.android.sunshine.app.BuildConfig;
+import com.example.android.sunshine.app.data.WeatherContract;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Downloads the daily forecast of a location from OpenWeatherMap and stores it through the
+ * {@link com.example.android.sunshine.app.data.WeatherProvider}.
+ */
+public class WeatherFetcher {
+
+    public static final String LOG_TAG = "Sunshine";
+
+    private static final String FORECAST_BASE_URL = "http://api.openweathermap.org/data/2.5/forecast/daily?";
+    private static final String QUERY_PARAM = "q";
+    private static final String FORMAT_PARAM = "mode";
+    private static final String UNITS_PARAM = "units";
+    private static final String DAYS_PARAM = "cnt";
+    private static final String APPID_PARAM = "APPID";
+
+    private static final int NUM_DAYS = 14;
+    // A stalled server must not hold up the refresh task until the scheduler gives up on it.
+    static final int CONNECT_TIMEOUT_MILLIS = 15000;
+    static final int READ_TIMEOUT_MILLIS = 30000;
+
+    private final Context mContext;
+
+    public WeatherFetcher(Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    /**
+     * Must not be called on the main thread.
+     *
+     * @return true if the forecast was downloaded and stored.
+     */
+    public boolean fetch(String locationSetting) {
+        String forecastJsonStr = download(locationSetting);
+        if (forecastJsonStr == null) return false;
+        try {
+            store(locationSetting, forecastJsonStr);
+            return true;
+        } catch (JSONException e) {
+            Log.e(LOG_TAG, "WeatherFetcher.fetch(): invalid response.", e);
+            return false;
+        }
+    }
+
+    private String download(String locationSetting) {
+        HttpURLConnection urlConnection = null;
+        BufferedReader reader = null;
+        try {
+            Uri builtUri = Uri.parse(FORECAST_BASE_URL).buildUpon()
+                .appendQueryParameter(QUERY_PARAM, locationSetting)
+                .appendQueryParameter(FORMAT_PARAM, "json")
+                .appendQueryParameter(UNITS_PARAM, "metric")
+                .appendQueryParameter(DAYS_PARAM, Integer.toString(NUM_DAYS))
+                .appendQueryParameter(APPID_PARAM, BuildConfig.OPEN_WEATHER_MAP_API_KEY)
+                .build();
+
+            urlConnection = (HttpURLConnection) new URL(builtUri.toString()).openConnection();
+            urlConnection.setRequestMethod("GET");
+            urlConnection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+            urlConnection.setReadTimeout(READ_TIMEOUT_MILLIS);
+            urlConnection.connect();
+            if (urlConnection.getResponseCode() != HttpURLConnection.HTTP_OK) return null;
+
+            InputStream inputStream = urlConnection.getInputStream();
+            reader = new BufferedReader(new InputStreamReader(inputStream));
+            StringBuilder buffer = new StringBuilder();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                buffer.append(line).append('\n');
+            }
+            return buffer.length() == 0 ? null : buffer.toString();
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "WeatherFetcher.download(): error.", e);
+            return null;
+        } finally {
+            if (urlConnection != null) {
+                urlConnection.disconnect();
+            }
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (final IOException e) {
+                    Log.e(LOG_TAG, "WeatherFetcher.download(): error closing stream.", e);
+                }
+            }
+        }
+    }
+
+    private void store(String locationSetting, String forecastJsonStr) throws JSONException {
+        JSONObject forecastJson = new JSONObject(forecastJsonStr);
+        JSONObject cityJson = forecastJson.getJSONObject("city");
+        JSONObject cityCoord = cityJson.getJSONObject("coord");
+        long locationId = addLocation(locationSetting, cityJson.getString("name"),
+            cityCoord.getDouble("lat"), cityCoord.getDouble("lon"));
+
+        JSONArray weatherArray = forecastJson.getJSONArray("list");
+        ContentValues[] cvArray = new ContentValues[weatherArray.length()];
+        for (int i = 0; i < weatherArray.length(); i++) {
+            JSONObject dayForecast = weatherArray.getJSONObject(i);
+            JSONObject weatherObject = dayForecast.getJSONArray("weather").getJSONObject(0);
+            JSONObject temperatureObject = dayForecast.getJSONObject("temp");
+
+            ContentValues weatherValues = new ContentValues();
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_LOC_KEY, locationId);
+            // OpenWeatherMap returns seconds since the epoch; dates are normalized on insert.
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DATE, dayForecast.getLong("dt") * 1000);
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_HUMIDITY, dayForecast.getDouble("humidity"));
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_PRESSURE, dayForecast.getDouble("pressure"));
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED, dayForecast.getDouble("speed"));
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DEGREES, dayForecast.getDouble("deg"));
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, temperatureObject.getDouble("max"));
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, temperatureObject.getDouble("min"));
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC, weatherObject.getString("main"));
+            weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, weatherObject.getInt("id"));
+            cvArray[i] = weatherValues;
+        }
+
+        if (cvArray.length > 0) {
+            mContext.getContentResolver().bulkInsert(WeatherContract.WeatherEntry.buildFetchedWeatherUri(), cvArray);
+        }
+    }
+
+    /**
+     * @return the row id of the location, inserting it if it isn't stored yet.
+     */
+    long addLocation(String locationSetting, String cityName, double lat, double lon) {
+        Cursor locationCursor = mContext.getContentResolver().query(
+            WeatherContract.LocationEntry.CONTENT_URI,
+            new String[]{WeatherContract.LocationEntry._ID},
+            WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ?",
+            new String[]{locationSetting},
+            null);
+        try {
+            if (locationCursor != null && locationCursor.moveToFirst()) {
+                return locationCursor.getLong(0);
+            }
+        } finally {
+            if (locationCursor != null) locationCursor.close();
+        }
+
+        ContentValues locationValues = new ContentValues();
+        locationValues.put(WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING, locationSetting);
+        locationValues.put(WeatherContract.LocationEntry.COLUMN_CITY_NAME, cityName);
+        locationValues.put(WeatherContract.LocationEntry.COLUMN_COORD_LAT, lat);
+        locationValues.put(WeatherContract.LocationEntry.COLUMN_COORD_LONG, lon);
+        Uri insertedUri = mContext.getContentResolver().insert(
+            WeatherContract.LocationEntry.CONTENT_URI, locationValues);
+        return ContentUris.parseId(insertedUri);
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.widget;
+
+import android.appwidget.AppWidgetManager;
+import android.appwidget.AppWidgetProvider;
+import android.content.Context;
+import android.content.Intent;
+
+/**
+ * Home-screen widget showing the next days at the preferred location. The views are built by
+ * {@link ForecastWidgetUpdater}, which also follows changes to the stored weather and the
+ * settings while at least one widget is placed.
+ */
+public class ForecastWidgetProvider extends AppWidgetProvider {
+
+    @Override
+    public void onUpdate(Context context, AppWidgetManager appWidgetManager, int[] appWidgetIds) {
+        ForecastWidgetUpdater.getInstance(context).requestUpdate();
+    }
+
+    @Override
+    public void onEnabled(Context context) {
+        ForecastWidgetUpdater.startObserving(context);
+    }
+
+    @Override
+    public void onDisabled(Context context) {
+        ForecastWidgetUpdater.stopObserving(context);
+    }
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        // Day names and temperature formats are localized.
+        if (Intent.ACTION_LOCALE_CHANGED.equals(intent.getAction())) {
+            if (ForecastWidgetUpdater.hasWidgets(context)) {
+                ForecastWidgetUpdater.getInstance(context).requestUpdate();
+            }
+            return;
+        }
+        super.onReceive(context, intent);
+    }
+}
@@ -0,0 +1,398 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.widget;
+
+import android.annotation.TargetApi;
+import android.app.PendingIntent;
+import android.appwidget.AppWidgetManager;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Message;
+import android.os.Parcel;
+import android.os.Process;
+import android.os.SystemClock;
+import android.text.format.DateUtils;
+import android.util.Log;
+import android.view.View;
+import android.widget.RemoteViews;
+
+import com.example.android.sunshine.app.Diagnostics;
+import com.example.android.sunshine.app.ForecastFormatter;
+import com.example.android.sunshine.app.ForecastSnapshot;
+import com.example.android.sunshine.app.R;
+import com.example.android.sunshine.app.SettingsStore;
+import com.example.android.sunshine.app.SunshineSettings;
+import com.example.android.sunshine.app.WeatherConditions;
+import com.example.android.sunshine.app.activity.MainActivity;
+import com.example.android.sunshine.app.data.WeatherContract;
+
+/**
+ * Keeps the forecast widgets up to date, on a background thread of its own.
+ *
+ * Provider change notifications come in bursts while a sync stores a forecast; they are
+ * coalesced into one update, sent to every widget with a single {@link AppWidgetManager} call.
+ * An update reads a compact row set, the few columns of the days shown from the weather table
+ * alone, and keeps it until the data changes, so updates requested by the launcher don't query
+ * again. Icons are passed as resource ids, which the launcher decodes and caches at its own
+ * scale, so no bitmap crosses the binder.
+ *
+ * The latency from the first notification of a burst to its update, and the size of the
+ * views sent, are recorded in {@link Diagnostics}.
+ */
+public final class ForecastWidgetUpdater implements Handler.Callback {
+
+    public static final String LOG_TAG = "Sunshine";
+
+    /** Days shown by a widget, today included. */
+    public static final int DAYS = 5;
+    /** Quiet time after a notification before updating. */
+    static final long COALESCE_MILLIS = 500;
+    /** Longest an update waits while notifications keep coming. */
+    static final long MAX_DELAY_MILLIS = 2000;
+
+    private static final int MSG_REQUEST = 1;
+    private static final int MSG_UPDATE = 2;
+
+    private static final String[] ROW_COLUMNS = {
+        WeatherContract.WeatherEntry.COLUMN_DATE,
+        WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
+        WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
+        WeatherContract.WeatherEntry.COLUMN_MIN_TEMP
+    };
+    private static final int COL_DATE = 0;
+    private static final int COL_WEATHER_ID = 1;
+    private static final int COL_MAX_TEMP = 2;
+    private static final int COL_MIN_TEMP = 3;
+
+    private static ForecastWidgetUpdater sInstance;
+
+    private final Context mContext;
+    private final Handler mHandler;
+    private final ComponentName mProvider;
+    // Units, art or location changes re-render the widgets; a locale change comes through
+    // ForecastWidgetProvider.
+    private final SettingsStore.Listener mSettingsListener = new SettingsStore.Listener() {
+        @Override
+        public void onSettingsChanged(SunshineSettings oldSettings, SunshineSettings newSettings) {
+            if (newSettings.rendersDifferentlyFrom(oldSettings)
+                || !newSettings.locationSetting.equals(oldSettings.locationSetting)) {
+                requestUpdate();
+            }
+        }
+    };
+    // Registered while there are widgets, guarded by this.
+    private ContentObserver mObserver;
+
+    // The following are only used on the updater's thread.
+    // Uptime of the first request of the pending burst, or -1 if none is pending.
+    private long mFirstRequestUptime = -1;
+    private int mPendingRequests;
+    private ForecastFormatter mFormatter;
+    // The rows shown, until the data changes, and what they were read for.
+    private ForecastSnapshot mRows;
+    private String mRowsLocation;
+    private long mRowsToday;
+
+    // Read by tests and diagnostics from other threads.
+    private volatile int mUpdateCount;
+    private volatile int mLastPayloadBytes;
+    private volatile long mLastLatencyMillis;
+    private volatile int mLastCoalescedRequests;
+
+    private ForecastWidgetUpdater(Context context) {
+        mContext = context.getApplicationContext();
+        HandlerThread thread = new HandlerThread("ForecastWidgetUpdater", Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        mHandler = new Handler(thread.getLooper(), this);
+        mProvider = new ComponentName(mContext, ForecastWidgetProvider.class);
+    }
+
+    public static synchronized ForecastWidgetUpdater getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ForecastWidgetUpdater(context);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Updates the widgets whenever the stored weather or the way it is shown changes, from the
+     * first widget added until the last one is removed. Idempotent.
+     */
+    public static void startObserving(Context context) {
+        getInstance(context).setObserving(true);
+    }
+
+    public static void stopObserving(Context context) {
+        ForecastWidgetUpdater updater;
+        synchronized (ForecastWidgetUpdater.class) {
+            updater = sInstance;
+        }
+        if (updater != null) {
+            updater.setObserving(false);
+        }
+    }
+
+    /**
+     * Observes if widgets are already placed, as when the process restarts. Called by the
+     * {@link com.example.android.sunshine.app.StartupPipeline}, off the main thread, as asking
+     * the widget host is a binder call; without widgets, not even the updater's thread is started.
+     */
+    public static void observeIfInUse(Context context) {
+        if (hasWidgets(context)) {
+            startObserving(context);
+        }
+    }
+
+    static boolean hasWidgets(Context context) {
+        return AppWidgetManager.getInstance(context).getAppWidgetIds(
+            new ComponentName(context, ForecastWidgetProvider.class)).length != 0;
+    }
+
+    private synchronized void setObserving(boolean observing) {
+        if (observing == (mObserver != null)) return;
+        if (observing) {
+            mObserver = new ContentObserver(mHandler) {
+                @Override
+                public void onChange(boolean selfChange) {
+                    scheduleUpdate(true);
+                }
+            };
+            mContext.getContentResolver().registerContentObserver(
+                WeatherContract.WeatherEntry.CONTENT_URI, true, mObserver);
+            SettingsStore.getInstance(mContext).addListener(mSettingsListener);
+        } else {
+            mContext.getContentResolver().unregisterContentObserver(mObserver);
+            SettingsStore.getInstance(mContext).removeListener(mSettingsListener);
+            mObserver = null;
+        }
+    }
+
+    /**
+     * Requests an update of every widget, with the rows already read if they are still current.
+     * Safe from any thread.
+     */
+    public void requestUpdate() {
+        mHandler.obtainMessage(MSG_REQUEST, 0, 0).sendToTarget();
+    }
+
+    /**
+     * @return the number of updates run, one per burst of requests, whether or not there were
+     * widgets to update.
+     */
+    public int getUpdateCount() {
+        return mUpdateCount;
+    }
+
+    /**
+     * @return the size of the views sent by the last update, in bytes, as parceled for the binder.
+     */
+    public int getLastPayloadBytes() {
+        return mLastPayloadBytes;
+    }
+
+    /**
+     * @return the time from the first request of the last update's burst to its completion.
+     */
+    public long getLastLatencyMillis() {
+        return mLastLatencyMillis;
+    }
+
+    /**
+     * @return the number of requests the last update answered.
+     */
+    public int getLastCoalescedRequests() {
+        return mLastCoalescedRequests;
+    }
+
+    @Override
+    public boolean handleMessage(Message msg) {
+        switch (msg.what) {
+            case MSG_REQUEST:
+                scheduleUpdate(msg.arg1 != 0);
+                return true;
+            case MSG_UPDATE:
+                update();
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // Pushes the pending update back while requests keep coming, up to MAX_DELAY_MILLIS after
+    // the first one.
+    private void scheduleUpdate(boolean dataChanged) {
+        long now = SystemClock.uptimeMillis();
+        if (dataChanged) {
+            mRows = null;
+        }
+        if (mFirstRequestUptime < 0) {
+            mFirstRequestUptime = now;
+        }
+        mPendingRequests++;
+        long delay = Math.min(COALESCE_MILLIS, mFirstRequestUptime + MAX_DELAY_MILLIS - now);
+        mHandler.removeMessages(MSG_UPDATE);
+        mHandler.sendEmptyMessageDelayed(MSG_UPDATE, Math.max(0, delay));
+    }
+
+    private void update() {
+        long firstRequestUptime = mFirstRequestUptime;
+        int requests = mPendingRequests;
+        mFirstRequestUptime = -1;
+        mPendingRequests = 0;
+        mLastCoalescedRequests = requests;
+
+        AppWidgetManager manager = AppWidgetManager.getInstance(mContext);
+        int[] widgetIds = manager.getAppWidgetIds(mProvider);
+        if (widgetIds.length == 0) {
+            mUpdateCount++;
+            return;
+        }
+
+        SunshineSettings settings = SettingsStore.getInstance(mContext).getSettings();
+        long today = WeatherContract.normalizeDate(System.currentTimeMillis());
+        if (mRows == null || mRowsToday != today || !settings.locationSetting.equals(mRowsLocation)) {
+            mRows = readRows(settings.locationSetting, today);
+            mRowsLocation = settings.locationSetting;
+            mRowsToday = today;
+        }
+
+        RemoteViews views = buildViews(settings, mRows);
+        int payloadBytes = parceledSize(views);
+        manager.updateAppWidget(widgetIds, views);
+
+        long latencyMillis = SystemClock.uptimeMillis() - firstRequestUptime;
+        mLastPayloadBytes = payloadBytes;
+        mLastLatencyMillis = latencyMillis;
+        mUpdateCount++;
+        Diagnostics.record(Diagnostics.WIDGET_UPDATE, payloadBytes, latencyMillis * 1000);
+        Log.i(LOG_TAG, "ForecastWidgetUpdater: " + widgetIds.length + " widgets updated for " + requests
+            + " requests, " + payloadBytes + " bytes, " + latencyMillis + " ms after the first request.");
+    }
+
+    // The days shown, from today on, without joining the location table for every row.
+    private ForecastSnapshot readRows(String locationSetting, long today) {
+        long locationId = -1;
+        Cursor location = mContext.getContentResolver().query(WeatherContract.LocationEntry.CONTENT_URI,
+            new String[]{WeatherContract.LocationEntry._ID},
+            WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ?",
+            new String[]{locationSetting}, null);
+        if (location != null) {
+            try {
+                if (location.moveToFirst()) {
+                    locationId = location.getLong(0);
+                }
+            } finally {
+                location.close();
+            }
+        }
+        if (locationId < 0) return ForecastSnapshot.EMPTY;
+
+        Cursor cursor = mContext.getContentResolver().query(WeatherContract.WeatherEntry.CONTENT_URI,
+            ROW_COLUMNS,
+            WeatherContract.WeatherEntry.COLUMN_LOC_KEY + " = ? AND "
+                + WeatherContract.WeatherEntry.COLUMN_DATE + " >= ?",
+            new String[]{Long.toString(locationId), Long.toString(today)},
+            WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
+        if (cursor == null) return ForecastSnapshot.EMPTY;
+        try {
+            return ForecastSnapshot.read(cursor, COL_DATE, COL_WEATHER_ID, COL_MAX_TEMP, COL_MIN_TEMP, DAYS);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Builds the views of every widget. Called on the updater's thread, or by tests.
+     */
+    RemoteViews buildViews(SunshineSettings settings, ForecastSnapshot rows) {
+        if (mFormatter == null || mFormatter.getSettings() != settings) {
+            mFormatter = new ForecastFormatter(settings);
+        }
+        String packageName = mContext.getPackageName();
+        RemoteViews views = new RemoteViews(packageName, R.layout.widget_forecast);
+        views.setTextViewText(R.id.widget_location, settings.locationSetting);
+        views.setOnClickPendingIntent(R.id.widget, PendingIntent.getActivity(mContext, 0,
+            new Intent(mContext, MainActivity.class), 0));
+        views.removeAllViews(R.id.widget_days);
+        if (rows.size() == 0) {
+            views.setTextViewText(R.id.widget_empty, mContext.getString(R.string.empty_forecast_list));
+            views.setViewVisibility(R.id.widget_empty, View.VISIBLE);
+            return views;
+        }
+        views.setViewVisibility(R.id.widget_empty, View.GONE);
+        for (int i = 0; i < rows.size(); i++) {
+            views.addView(R.id.widget_days, buildDay(packageName, settings, rows, i));
+        }
+        return views;
+    }
+
+    private RemoteViews buildDay(String packageName, SunshineSettings settings, ForecastSnapshot rows, int position) {
+        RemoteViews day = new RemoteViews(packageName, R.layout.widget_forecast_day);
+        long date = rows.getDate(position);
+        int weatherId = rows.getConditionId(position);
+        ForecastFormatter.Temperature high = mFormatter.formatTemperature(rows.getHigh(position));
+        ForecastFormatter.Temperature low = mFormatter.formatTemperature(rows.getLow(position));
+
+        day.setTextViewText(R.id.widget_day_name, DateUtils.formatDateTime(mContext, date,
+            DateUtils.FORMAT_SHOW_WEEKDAY | DateUtils.FORMAT_ABBREV_WEEKDAY));
+        int icon = WeatherConditions.getIconResource(weatherId);
+        day.setImageViewResource(R.id.widget_day_icon, icon != -1 ? icon : R.drawable.ic_clear);
+        day.setTextViewText(R.id.widget_day_high, high.text);
+        day.setTextViewText(R.id.widget_day_low, low.text);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH_MR1) {
+            setDescriptions(day, weatherId, high, low);
+        }
+
+        // Opens the list at this day.
+        Uri dayUri = WeatherContract.WeatherEntry.buildWeatherLocationWithDate(settings.locationSetting, date);
+        Intent intent = new Intent(mContext, MainActivity.class)
+            .setData(dayUri)
+            .addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP | Intent.FLAG_ACTIVITY_SINGLE_TOP);
+        day.setOnClickPendingIntent(R.id.widget_day, PendingIntent.getActivity(mContext, 0, intent, 0));
+        return day;
+    }
+
+    @TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH_MR1)
+    private void setDescriptions(RemoteViews day, int weatherId, ForecastFormatter.Temperature high,
+                                 ForecastFormatter.Temperature low) {
+        int description = WeatherConditions.getDescriptionResource(weatherId);
+        if (description != 0) {
+            day.setContentDescription(R.id.widget_day_icon, mContext.getString(description));
+        }
+        day.setContentDescription(R.id.widget_day_high, high.highDescription);
+        day.setContentDescription(R.id.widget_day_low, low.lowDescription);
+    }
+
+    /**
+     * @return the size of views once parceled, as they are sent to the launcher.
+     */
+    static int parceledSize(RemoteViews views) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            views.writeToParcel(parcel, 0);
+            return parcel.dataSize();
+        } finally {
+            parcel.recycle();
+        }
+    }
+}
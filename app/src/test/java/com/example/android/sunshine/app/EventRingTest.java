@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class EventRingTest extends TestCase {
+
+    private static class Collector implements EventRing.Visitor {
+        final List<long[]> events = new ArrayList<long[]>();
+
+        @Override
+        public void onEvent(long time, int type, long arg1, long arg2) {
+            events.add(new long[]{time, type, arg1, arg2});
+        }
+    }
+
+    public void testKeepsEventsInOrder() {
+        EventRing ring = new EventRing(8);
+        for (int i = 0; i < 5; i++) {
+            ring.record(100 + i, i, i * 10, i * 100);
+        }
+        Collector collector = new Collector();
+        assertEquals(5, ring.read(collector));
+        for (int i = 0; i < 5; i++) {
+            long[] event = collector.events.get(i);
+            assertEquals(100 + i, event[0]);
+            assertEquals(i, event[1]);
+            assertEquals(i * 10, event[2]);
+            assertEquals(i * 100, event[3]);
+        }
+    }
+
+    public void testOverwritesTheOldestEvents() {
+        EventRing ring = new EventRing(8);
+        for (int i = 0; i < 20; i++) {
+            ring.record(i, 0, i, 0);
+        }
+        Collector collector = new Collector();
+        assertEquals(8, ring.read(collector));
+        for (int i = 0; i < 8; i++) {
+            assertEquals(12 + i, collector.events.get(i)[2]);
+        }
+    }
+
+    public void testRejectsCapacityThatIsNotAPowerOfTwo() {
+        try {
+            new EventRing(12);
+            fail("Error: a capacity of 12 should be rejected");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    /*
+        Writers record events whose fields all derive from one value while a reader keeps
+        reading; no event read may mix the fields of two writes.
+     */
+    public void testConcurrentWritersNeverTearEvents() throws InterruptedException {
+        final EventRing ring = new EventRing(1024);
+        final int writers = 4;
+        final int eventsPerWriter = 200000;
+        Thread[] threads = new Thread[writers];
+        for (int w = 0; w < writers; w++) {
+            final int writer = w;
+            threads[w] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < eventsPerWriter; i++) {
+                        long value = (long) writer * eventsPerWriter + i;
+                        ring.record(value, (int) (value & 0xff), value * 3, -value);
+                    }
+                }
+            };
+            threads[w].start();
+        }
+        final int[] torn = new int[1];
+        EventRing.Visitor checker = new EventRing.Visitor() {
+            @Override
+            public void onEvent(long time, int type, long arg1, long arg2) {
+                if (type != (int) (time & 0xff) || arg1 != time * 3 || arg2 != -time) {
+                    torn[0]++;
+                }
+            }
+        };
+        boolean running = true;
+        while (running) {
+            ring.read(checker);
+            running = false;
+            for (Thread thread : threads) {
+                running |= thread.isAlive();
+            }
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(1024, ring.read(checker));
+        assertEquals("Error: torn events were read", 0, torn[0]);
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class ForecastDiffTest extends TestCase {
+
+    private static final long DAY = 24L * 60 * 60 * 1000;
+
+    // Applies a diff to a list of the old dates, recording which positions were bound again.
+    private static class Recorder implements ForecastDiff.Callback {
+        final List<Long> dates = new ArrayList<Long>();
+        final List<Boolean> bound = new ArrayList<Boolean>();
+        final StringBuilder log = new StringBuilder();
+
+        Recorder(ForecastSnapshot rows) {
+            for (int i = 0; i < rows.size(); i++) {
+                dates.add(rows.getDate(i));
+                bound.add(false);
+            }
+        }
+
+        @Override
+        public void onInserted(int position, int count) {
+            log.append("I").append(position).append(',').append(count).append(' ');
+            for (int i = 0; i < count; i++) {
+                dates.add(position + i, null);
+                bound.add(position + i, true);
+            }
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            log.append("R").append(position).append(',').append(count).append(' ');
+            for (int i = 0; i < count; i++) {
+                dates.remove(position);
+                bound.remove(position);
+            }
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            log.append("M").append(fromPosition).append(',').append(toPosition).append(' ');
+            dates.add(toPosition, dates.remove(fromPosition));
+            bound.add(toPosition, bound.remove(fromPosition));
+        }
+
+        @Override
+        public void onChanged(int position, int count) {
+            log.append("C").append(position).append(',').append(count).append(' ');
+            for (int i = 0; i < count; i++) {
+                bound.set(position + i, true);
+            }
+        }
+    }
+
+    // Rows that only differ by condition id; the temperatures are the same everywhere.
+    private static ForecastSnapshot rows(long[] dates, int[] conditionIds) {
+        float[] temperatures = new float[dates.length];
+        Arrays.fill(temperatures, 21.5f);
+        return new ForecastSnapshot(dates, conditionIds, temperatures, temperatures);
+    }
+
+    private static ForecastSnapshot days(int first, int count, int conditionId) {
+        long[] dates = new long[count];
+        int[] conditionIds = new int[count];
+        for (int i = 0; i < count; i++) {
+            dates[i] = (first + i) * DAY;
+            conditionIds[i] = conditionId;
+        }
+        return rows(dates, conditionIds);
+    }
+
+    private static Recorder apply(ForecastSnapshot oldRows, ForecastSnapshot newRows) {
+        Recorder recorder = new Recorder(oldRows);
+        ForecastDiff.compute(oldRows, newRows).dispatchUpdatesTo(recorder);
+        return recorder;
+    }
+
+    private static void assertApplies(ForecastSnapshot oldRows, ForecastSnapshot newRows) {
+        Recorder recorder = apply(oldRows, newRows);
+        assertEquals("Error: size after " + recorder.log, newRows.size(), recorder.dates.size());
+        for (int p = 0; p < newRows.size(); p++) {
+            Long date = recorder.dates.get(p);
+            boolean existed = false;
+            int oldIndex = -1;
+            for (int i = 0; i < oldRows.size(); i++) {
+                if (oldRows.getDate(i) == newRows.getDate(p)) {
+                    existed = true;
+                    oldIndex = i;
+                }
+            }
+            if (existed) {
+                assertEquals("Error: row at " + p + " after " + recorder.log, newRows.getDate(p), (long) date);
+                assertEquals("Error: binding of " + p + " after " + recorder.log,
+                    !oldRows.sameContent(oldIndex, newRows, p), (boolean) recorder.bound.get(p));
+            } else {
+                assertNull("Error: row at " + p + " should be inserted, after " + recorder.log, date);
+            }
+        }
+    }
+
+    public void testUnchangedRefreshHasNoUpdates() {
+        ForecastSnapshot week = days(0, 14, 7);
+        ForecastDiff diff = ForecastDiff.compute(week, days(0, 14, 7));
+        assertEquals(0, diff.getUpdateCount());
+        assertEquals(0, diff.getReboundRowCount());
+    }
+
+    public void testFirstLoadInsertsEverything() {
+        Recorder recorder = apply(ForecastSnapshot.EMPTY, days(0, 14, 7));
+        assertEquals("I0,14 ", recorder.log.toString());
+    }
+
+    public void testNextDayShiftsTheWindow() {
+        // Yesterday drops off, a new day arrives at the end and today's forecast was revised.
+        ForecastSnapshot before = days(0, 14, 7);
+        ForecastSnapshot after = days(1, 14, 7);
+        int[] conditionIds = new int[14];
+        Arrays.fill(conditionIds, 7);
+        conditionIds[0] = 8;
+        long[] dates = new long[14];
+        for (int i = 0; i < 14; i++) dates[i] = after.getDate(i);
+        after = rows(dates, conditionIds);
+
+        Recorder recorder = apply(before, after);
+        assertEquals("R0,1 C0,1 I13,1 ", recorder.log.toString());
+        assertEquals(2, ForecastDiff.compute(before, after).getReboundRowCount());
+        assertApplies(before, after);
+    }
+
+    public void testReorderedRowsAreMoved() {
+        ForecastSnapshot before = rows(new long[]{1, 2, 3, 4}, new int[]{0, 0, 0, 0});
+        ForecastSnapshot after = rows(new long[]{4, 1, 2, 3}, new int[]{0, 0, 0, 0});
+        Recorder recorder = apply(before, after);
+        assertEquals("M3,0 ", recorder.log.toString());
+        assertApplies(before, after);
+    }
+
+    public void testRandomEditsApply() {
+        Random random = new Random(42);
+        for (int round = 0; round < 2000; round++) {
+            ForecastSnapshot before = randomRows(random);
+            ForecastSnapshot after = randomRows(random);
+            assertApplies(before, after);
+            assertApplies(after, before);
+        }
+    }
+
+    // Dates drawn from a small range so that old and new overlap, sometimes shuffled.
+    private static ForecastSnapshot randomRows(Random random) {
+        List<Long> dates = new ArrayList<Long>();
+        for (long date = 0; date < 20; date++) {
+            if (random.nextInt(3) > 0) dates.add(date * DAY);
+        }
+        if (random.nextInt(4) == 0) {
+            Collections.shuffle(dates, random);
+        }
+        long[] dateArray = new long[dates.size()];
+        int[] conditionIds = new int[dates.size()];
+        for (int i = 0; i < dateArray.length; i++) {
+            dateArray[i] = dates.get(i);
+            conditionIds[i] = random.nextInt(2);
+        }
+        return rows(dateArray, conditionIds);
+    }
+}
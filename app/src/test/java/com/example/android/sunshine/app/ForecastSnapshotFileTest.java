@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+public class ForecastSnapshotFileTest extends TestCase {
+
+    private File mFile;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mFile = File.createTempFile("forecast", ".bin");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mFile.delete();
+        super.tearDown();
+    }
+
+    public void testRoundTrip() throws IOException {
+        ForecastSnapshot snapshot = new ForecastSnapshot(new long[]{100, 200, 300},
+            new int[]{800, 501, 211}, new float[]{21.5f, -3.25f, 0f}, new float[]{10f, -12.75f, -0f});
+        ForecastSnapshotFile.write(mFile, "S\u00e3o Paulo", snapshot);
+
+        ForecastSnapshotFile.Saved saved = ForecastSnapshotFile.read(mFile);
+        assertNotNull(saved);
+        assertEquals("S\u00e3o Paulo", saved.location);
+        assertEquals(3, saved.snapshot.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(snapshot.getDate(i), saved.snapshot.getDate(i));
+            assertTrue("Error: row " + i + " differs", saved.snapshot.sameContent(i, snapshot, i));
+        }
+    }
+
+    public void testEmptySnapshotRoundTrip() throws IOException {
+        ForecastSnapshotFile.write(mFile, "94043", ForecastSnapshot.EMPTY);
+        ForecastSnapshotFile.Saved saved = ForecastSnapshotFile.read(mFile);
+        assertEquals("94043", saved.location);
+        assertEquals(0, saved.snapshot.size());
+    }
+
+    public void testRejectsForeignAndTruncatedFiles() throws IOException {
+        FileOutputStream out = new FileOutputStream(mFile);
+        out.write(new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17});
+        out.close();
+        assertNull(ForecastSnapshotFile.read(mFile));
+
+        ForecastSnapshot snapshot = new ForecastSnapshot(new long[]{100, 200}, new int[]{800, 800},
+            new float[]{1, 2}, new float[]{0, 1});
+        ForecastSnapshotFile.write(mFile, "94043", snapshot);
+        java.io.RandomAccessFile file = new java.io.RandomAccessFile(mFile, "rw");
+        file.setLength(file.length() - 4);
+        file.close();
+        assertNull(ForecastSnapshotFile.read(mFile));
+
+        mFile.delete();
+        assertNull(ForecastSnapshotFile.read(mFile));
+    }
+
+    /*
+        The list may take the preloaded rows before the startup thread has read them; a preload
+        finishing afterwards must not hand them to the next list.
+     */
+    public void testPreloadAfterTheTakeIsDropped() throws IOException {
+        ForecastSnapshot snapshot = new ForecastSnapshot(new long[]{100, 200},
+            new int[]{800, 501}, new float[]{21.5f, 18f}, new float[]{10f, 9f});
+        ForecastSnapshotFile.write(mFile, "94043", snapshot);
+
+        assertNull(ForecastSnapshotFile.takePreloaded("94043", 0));
+        ForecastSnapshotFile.preload(mFile);
+        assertNull("Error: a late preload was handed out", ForecastSnapshotFile.takePreloaded("94043", 0));
+    }
+}
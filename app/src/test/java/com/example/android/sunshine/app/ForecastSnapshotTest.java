@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import junit.framework.TestCase;
+
+public class ForecastSnapshotTest extends TestCase {
+
+    private static ForecastSnapshot snapshot(long... dates) {
+        return new ForecastSnapshot(dates, new int[dates.length], new float[dates.length],
+            new float[dates.length]);
+    }
+
+    public void testFindsEveryDateOfASortedSnapshot() {
+        long[] dates = new long[100];
+        for (int i = 0; i < dates.length; i++) {
+            dates[i] = 1419033600000L + i * 86400000L;
+        }
+        ForecastSnapshot snapshot = snapshot(dates);
+        for (int i = 0; i < dates.length; i++) {
+            assertEquals(i, snapshot.getPosition(dates[i]));
+            assertEquals(-1, snapshot.getPosition(dates[i] + 1));
+        }
+        assertEquals(-1, snapshot.getPosition(0));
+        assertEquals(-1, snapshot.getPosition(Long.MAX_VALUE));
+    }
+
+    public void testFindsDatesOfAnUnsortedSnapshot() {
+        ForecastSnapshot snapshot = snapshot(30, 10, 20);
+        assertEquals(0, snapshot.getPosition(30));
+        assertEquals(1, snapshot.getPosition(10));
+        assertEquals(2, snapshot.getPosition(20));
+        assertEquals(-1, snapshot.getPosition(15));
+    }
+
+    public void testEmptySnapshotHasNoPositions() {
+        assertEquals(-1, ForecastSnapshot.EMPTY.getPosition(0));
+    }
+}
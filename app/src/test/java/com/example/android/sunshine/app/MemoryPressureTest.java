@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.ComponentCallbacks2;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class MemoryPressureTest {
+
+    // Records the tiers it is released with.
+    static class RecordingCache implements MemoryPressure.Releasable {
+        final List<Integer> releases = new ArrayList<Integer>();
+
+        @Override
+        public void release(int tier) {
+            releases.add(tier);
+        }
+    }
+
+    private final List<RecordingCache> mRegistered = new ArrayList<RecordingCache>();
+
+    @After
+    public void tearDown() {
+        for (RecordingCache cache : mRegistered) {
+            MemoryPressure.unregister(cache);
+        }
+        MemoryPressure.setTierForLevel(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN, MemoryPressure.TIER_UI);
+    }
+
+    private RecordingCache register(int tier) {
+        RecordingCache cache = new RecordingCache();
+        MemoryPressure.register(cache, tier);
+        mRegistered.add(cache);
+        return cache;
+    }
+
+    @Test
+    public void testTrimLevelsMapToTiers() {
+        assertEquals(MemoryPressure.TIER_NONE, MemoryPressure.getTierForLevel(0));
+        assertEquals(MemoryPressure.TIER_WARM,
+            MemoryPressure.getTierForLevel(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE));
+        assertEquals(MemoryPressure.TIER_WARM,
+            MemoryPressure.getTierForLevel(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW));
+        assertEquals(MemoryPressure.TIER_IMAGES,
+            MemoryPressure.getTierForLevel(ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL));
+        assertEquals(MemoryPressure.TIER_UI,
+            MemoryPressure.getTierForLevel(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN));
+        assertEquals(MemoryPressure.TIER_IMAGES,
+            MemoryPressure.getTierForLevel(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND));
+        assertEquals(MemoryPressure.TIER_ALL,
+            MemoryPressure.getTierForLevel(ComponentCallbacks2.TRIM_MEMORY_MODERATE));
+        assertEquals(MemoryPressure.TIER_ALL,
+            MemoryPressure.getTierForLevel(ComponentCallbacks2.TRIM_MEMORY_COMPLETE));
+        // Levels added by later platforms fall back to the closest known one below.
+        assertEquals(MemoryPressure.TIER_UI,
+            MemoryPressure.getTierForLevel(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN + 5));
+    }
+
+    @Test
+    public void testCachesUpToTheTierAreReleased() {
+        RecordingCache warm = register(MemoryPressure.TIER_WARM);
+        RecordingCache ui = register(MemoryPressure.TIER_UI);
+        RecordingCache images = register(MemoryPressure.TIER_IMAGES);
+        RecordingCache all = register(MemoryPressure.TIER_ALL);
+
+        MemoryPressure.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+        assertEquals(1, warm.releases.size());
+        assertEquals(1, ui.releases.size());
+        assertEquals(0, images.releases.size());
+        assertEquals(0, all.releases.size());
+        assertEquals(MemoryPressure.TIER_UI, (int) ui.releases.get(0));
+
+        MemoryPressure.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND);
+        assertEquals(1, images.releases.size());
+        assertEquals(0, all.releases.size());
+
+        MemoryPressure.onLowMemory();
+        assertEquals(3, warm.releases.size());
+        assertEquals(2, images.releases.size());
+        assertEquals(MemoryPressure.TIER_ALL, (int) all.releases.get(0));
+    }
+
+    @Test
+    public void testTiersAreConfigurable() {
+        RecordingCache images = register(MemoryPressure.TIER_IMAGES);
+        MemoryPressure.setTierForLevel(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN, MemoryPressure.TIER_IMAGES);
+        MemoryPressure.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+        assertEquals(1, images.releases.size());
+    }
+
+    @Test
+    public void testUnregisteredCachesAreKept() {
+        RecordingCache cache = register(MemoryPressure.TIER_WARM);
+        MemoryPressure.unregister(cache);
+        MemoryPressure.onLowMemory();
+        assertEquals(0, cache.releases.size());
+    }
+
+    @Test
+    public void testFormatterIsReleasedWithTheUi() {
+        ForecastFormatter formatter = new ForecastFormatter(
+            SettingsStore.getInstance(RuntimeEnvironment.application).getSettings());
+        String name = formatter.getTransitionName(42);
+        assertSame(name, formatter.getTransitionName(42));
+        formatter.clear();
+        String rebuilt = formatter.getTransitionName(42);
+        assertEquals(name, rebuilt);
+        assertNotSame(name, rebuilt);
+    }
+}
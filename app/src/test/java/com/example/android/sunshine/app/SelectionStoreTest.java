@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import junit.framework.TestCase;
+
+public class SelectionStoreTest extends TestCase {
+
+    public void testPutAndRemoveKeepIdsSorted() {
+        SelectionStore store = new SelectionStore();
+        long[] ids = {50, 10, 40, 20, 30, 60};
+        for (int i = 0; i < ids.length; i++) {
+            assertTrue(store.put(ids[i], i));
+        }
+        assertFalse("Error: an id was checked twice", store.put(40, 7));
+        assertEquals(6, store.size());
+        for (int i = 0; i < store.size(); i++) {
+            assertEquals((i + 1) * 10, store.idAt(i));
+        }
+        assertEquals(7, store.getPosition(40));
+        assertEquals(0, store.getPosition(50));
+
+        assertEquals(7, store.remove(40));
+        assertEquals(-1, store.remove(40));
+        assertFalse(store.contains(40));
+        assertEquals(-1, store.getPosition(40));
+        assertEquals(5, store.size());
+    }
+
+    public void testRemapMovesPositionsAndDropsGoneIds() {
+        SelectionStore store = new SelectionStore();
+        store.put(100, 0);
+        store.put(200, 1);
+        store.put(300, 2);
+        // Row 100 is gone, the others moved up by one.
+        store.remap(new SelectionStore.PositionLookup() {
+            @Override
+            public int getPosition(long id) {
+                return id == 100 ? -1 : (int) (id / 100) - 2;
+            }
+        });
+        assertEquals(2, store.size());
+        assertEquals(200, store.idAt(0));
+        assertEquals(0, store.positionAt(0));
+        assertEquals(300, store.idAt(1));
+        assertEquals(1, store.positionAt(1));
+    }
+
+    public void testSetRestoresSavedState() {
+        SelectionStore store = new SelectionStore();
+        store.put(3, 30);
+        store.put(1, 10);
+        SelectionStore restored = new SelectionStore();
+        restored.put(9, 9);
+        restored.set(store.getIds(), store.getPositions());
+        assertEquals(2, restored.size());
+        assertEquals(10, restored.getPosition(1));
+        assertEquals(30, restored.getPosition(3));
+        assertFalse(restored.contains(9));
+    }
+}
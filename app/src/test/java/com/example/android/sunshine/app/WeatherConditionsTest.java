@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import junit.framework.TestCase;
+
+import java.util.Locale;
+
+/*
+    Checks the table-driven WeatherConditions against the chain of range checks it replaced,
+    for every condition id.
+ */
+public class WeatherConditionsTest extends TestCase {
+
+    private static final String ART_FORMAT = "https://example.com/art_%s.png";
+    private static final String OTHER_ART_FORMAT = "https://example.org/%s.jpg";
+
+    // The previous implementation of Utility.getIconResourceForWeatherCondition.
+    private static int legacyIcon(int weatherId) {
+        if (weatherId >= 200 && weatherId <= 232) {
+            return R.drawable.ic_storm;
+        } else if (weatherId >= 300 && weatherId <= 321) {
+            return R.drawable.ic_light_rain;
+        } else if (weatherId >= 500 && weatherId <= 504) {
+            return R.drawable.ic_rain;
+        } else if (weatherId == 511) {
+            return R.drawable.ic_snow;
+        } else if (weatherId >= 520 && weatherId <= 531) {
+            return R.drawable.ic_rain;
+        } else if (weatherId >= 600 && weatherId <= 622) {
+            return R.drawable.ic_snow;
+        } else if (weatherId >= 701 && weatherId <= 761) {
+            return R.drawable.ic_fog;
+        } else if (weatherId == 761 || weatherId == 781) {
+            return R.drawable.ic_storm;
+        } else if (weatherId == 800) {
+            return R.drawable.ic_clear;
+        } else if (weatherId == 801) {
+            return R.drawable.ic_light_clouds;
+        } else if (weatherId >= 802 && weatherId <= 804) {
+            return R.drawable.ic_cloudy;
+        }
+        return -1;
+    }
+
+    // The previous implementation of Utility.getArtUrlForWeatherCondition, past the preference read.
+    private static String legacyArtUrl(String formatArtUrl, int weatherId) {
+        if (weatherId >= 200 && weatherId <= 232) {
+            return String.format(Locale.US, formatArtUrl, "storm");
+        } else if (weatherId >= 300 && weatherId <= 321) {
+            return String.format(Locale.US, formatArtUrl, "light_rain");
+        } else if (weatherId >= 500 && weatherId <= 504) {
+            return String.format(Locale.US, formatArtUrl, "rain");
+        } else if (weatherId == 511) {
+            return String.format(Locale.US, formatArtUrl, "snow");
+        } else if (weatherId >= 520 && weatherId <= 531) {
+            return String.format(Locale.US, formatArtUrl, "rain");
+        } else if (weatherId >= 600 && weatherId <= 622) {
+            return String.format(Locale.US, formatArtUrl, "snow");
+        } else if (weatherId >= 701 && weatherId <= 761) {
+            return String.format(Locale.US, formatArtUrl, "fog");
+        } else if (weatherId == 761 || weatherId == 781) {
+            return String.format(Locale.US, formatArtUrl, "storm");
+        } else if (weatherId == 800) {
+            return String.format(Locale.US, formatArtUrl, "clear");
+        } else if (weatherId == 801) {
+            return String.format(Locale.US, formatArtUrl, "light_clouds");
+        } else if (weatherId >= 802 && weatherId <= 804) {
+            return String.format(Locale.US, formatArtUrl, "clouds");
+        }
+        return null;
+    }
+
+    public void testIconsMatchLegacyLookup() {
+        for (int id = 0; id <= WeatherConditions.MAX_ID; id++) {
+            assertEquals("Error: icon for condition " + id, legacyIcon(id), WeatherConditions.getIconResource(id));
+        }
+        assertEquals(-1, WeatherConditions.getIconResource(-1));
+        assertEquals(-1, WeatherConditions.getIconResource(WeatherConditions.MAX_ID + 1));
+    }
+
+    public void testArtUrlsMatchLegacyLookup() {
+        // Alternate packs to exercise the rebuild of the URL table.
+        for (String format : new String[]{ART_FORMAT, OTHER_ART_FORMAT, ART_FORMAT}) {
+            for (int id = 0; id <= WeatherConditions.MAX_ID; id++) {
+                assertEquals("Error: art URL for condition " + id, legacyArtUrl(format, id),
+                    WeatherConditions.getArtUrl(format, id));
+            }
+        }
+    }
+
+    public void testEveryConditionHasADescription() {
+        for (int id = 0; id <= WeatherConditions.MAX_ID; id++) {
+            boolean known = legacyIcon(id) != -1;
+            assertEquals("Error: description for condition " + id, known,
+                WeatherConditions.getDescriptionResource(id) != 0);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.benchmark;
+
+import com.example.android.sunshine.app.muzei.ArtDiskCache;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/*
+    What the Muzei art source pays for its artwork on an update, with the art cached and not.
+    Art is read from file: URLs, so the cold numbers leave out the network: they are the cost
+    of copying the art into the cache and keeping it bounded.
+ */
+public class ArtCacheBenchmark {
+
+    private static final BenchmarkHarness sHarness = new BenchmarkHarness(ArtCacheBenchmark.class);
+
+    private static final String[] ART_KEYS = {
+        "storm", "light_rain", "rain", "snow", "fog", "clear", "light_clouds", "clouds"
+    };
+    // About the size of the xxhdpi artwork.
+    private static final int ART_BYTES = 64 * 1024;
+    private static final long CACHE_BYTES = 2 * 1024 * 1024;
+
+    private File mRoot;
+    private String[] mUrls;
+
+    @AfterClass
+    public static void writeResults() throws IOException {
+        sHarness.writeResults();
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        mRoot = File.createTempFile("ArtCacheBenchmark", "");
+        mRoot.delete();
+        mRoot.mkdirs();
+        mUrls = new String[ART_KEYS.length];
+        byte[] content = new byte[ART_BYTES];
+        for (int i = 0; i < ART_KEYS.length; i++) {
+            File file = new File(mRoot, "art_" + ART_KEYS[i] + ".png");
+            FileOutputStream out = new FileOutputStream(file);
+            try {
+                out.write(content);
+            } finally {
+                out.close();
+            }
+            mUrls[i] = file.toURI().toURL().toString();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        delete(mRoot);
+    }
+
+    @Test
+    public void updateWarm() {
+        final ArtDiskCache cache = new ArtDiskCache(new File(mRoot, "warm"), CACHE_BYTES);
+        sHarness.run("updateWarm", new BenchmarkHarness.Op() {
+            @Override
+            public long run(int invocation) {
+                return get(cache, mUrls[invocation % mUrls.length]).length();
+            }
+        });
+    }
+
+    @Test
+    public void updateCold() {
+        final File directory = new File(mRoot, "cold");
+        sHarness.run("updateCold", new BenchmarkHarness.Op() {
+            @Override
+            public long run(int invocation) {
+                String url = mUrls[invocation % mUrls.length];
+                ArtDiskCache cache = new ArtDiskCache(directory, CACHE_BYTES);
+                File file = get(cache, url);
+                long length = file.length();
+                file.delete();
+                return length;
+            }
+        });
+    }
+
+    private static File get(ArtDiskCache cache, String url) {
+        try {
+            return cache.get(url);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
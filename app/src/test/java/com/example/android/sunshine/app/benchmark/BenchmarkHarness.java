@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A small harness in the style of JMH, for benchmarks that need Robolectric and so can't run
+ * under JMH itself: average time per operation over timed iterations after a warm-up, and the
+ * bytes allocated per operation on the benchmark thread.
+ *
+ * Results are written as JSON in the format of JMH's "-rf json" with the gc profiler, so the
+ * usual JMH tooling can read and compare them. Numbers are for the JVM running the tests, with
+ * Robolectric's shadows in place of the framework; compare them with each other, not with a
+ * device.
+ */
+public final class BenchmarkHarness {
+
+    /**
+     * One benchmarked operation. Return something derived from the result, so the JIT can't
+     * eliminate the work; it is summed into a sink.
+     */
+    public interface Op {
+        long run(int invocation);
+    }
+
+    static final int WARMUP_ITERATIONS = 5;
+    static final int MEASUREMENT_ITERATIONS = 10;
+    static final long ITERATION_NANOS = 100 * 1000 * 1000L;
+    // Operations between two reads of the clock: enough for a batch to last about this long.
+    static final long BATCH_NANOS = 1000 * 1000L;
+    // Two-sided 99.9% quantile of the normal distribution, for the score error as JMH reports it.
+    static final double Z_999 = 3.291;
+
+    private static final String OUTPUT_PROPERTY = "benchmark.output";
+    private static final String ALLOCATION_METRIC = "\u00b7gc.alloc.rate.norm";
+
+    private final String mClassName;
+    private final List<String> mResults = new ArrayList<String>();
+    private final ThreadMXBean mThreads = ManagementFactory.getThreadMXBean();
+    // Results of the operations, kept in a field so the work can't be optimized away.
+    private long mSink;
+
+    public BenchmarkHarness(Class<?> benchmarkClass) {
+        mClassName = benchmarkClass.getName();
+    }
+
+    public void run(String benchmark, Op op) {
+        int batch = calibrate(op);
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            iterate(op, batch);
+        }
+        double[] nanosPerOp = new double[MEASUREMENT_ITERATIONS];
+        double[] bytesPerOp = new double[MEASUREMENT_ITERATIONS];
+        for (int i = 0; i < MEASUREMENT_ITERATIONS; i++) {
+            long bytes = allocatedBytes();
+            long start = System.nanoTime();
+            long ops = iterate(op, batch);
+            nanosPerOp[i] = (double) (System.nanoTime() - start) / ops;
+            bytesPerOp[i] = (double) (allocatedBytes() - bytes) / ops;
+        }
+        System.out.println(String.format(Locale.US, "%s.%s: %.1f ns/op, %.1f B/op", mClassName,
+            benchmark, mean(nanosPerOp), mean(bytesPerOp)));
+        mResults.add("{\"benchmark\":\"" + mClassName + "." + benchmark + "\",\"mode\":\"avgt\","
+            + "\"threads\":1,\"forks\":1,\"warmupIterations\":" + WARMUP_ITERATIONS
+            + ",\"measurementIterations\":" + MEASUREMENT_ITERATIONS
+            + ",\"primaryMetric\":" + metric(nanosPerOp, "ns/op")
+            + ",\"secondaryMetrics\":{\"" + ALLOCATION_METRIC + "\":" + metric(bytesPerOp, "B/op") + "}}");
+    }
+
+    /**
+     * Writes the results of this benchmark class to the directory given by the
+     * "benchmark.output" system property, or build/benchmark, as &lt;class name&gt;.json.
+     */
+    public void writeResults() throws IOException {
+        File directory = new File(System.getProperty(OUTPUT_PROPERTY, "build/benchmark"));
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create " + directory);
+        }
+        PrintWriter writer = new PrintWriter(new OutputStreamWriter(
+            new FileOutputStream(new File(directory, mClassName + ".json")), "UTF-8"));
+        try {
+            writer.println("[");
+            for (int i = 0; i < mResults.size(); i++) {
+                writer.print(mResults.get(i));
+                writer.println(i < mResults.size() - 1 ? "," : "");
+            }
+            writer.println("]");
+        } finally {
+            writer.close();
+        }
+    }
+
+    // Doubles the batch until it lasts long enough that reading the clock doesn't matter.
+    private int calibrate(Op op) {
+        int batch = 1;
+        while (batch < Integer.MAX_VALUE / 2) {
+            long start = System.nanoTime();
+            runBatch(op, batch);
+            if (System.nanoTime() - start >= BATCH_NANOS) break;
+            batch *= 2;
+        }
+        return batch;
+    }
+
+    private long iterate(Op op, int batch) {
+        long ops = 0;
+        long end = System.nanoTime() + ITERATION_NANOS;
+        do {
+            runBatch(op, batch);
+            ops += batch;
+        } while (System.nanoTime() < end);
+        return ops;
+    }
+
+    private void runBatch(Op op, int batch) {
+        long sink = 0;
+        for (int i = 0; i < batch; i++) {
+            sink += op.run(i);
+        }
+        mSink += sink;
+    }
+
+    private long allocatedBytes() {
+        if (!(mThreads instanceof com.sun.management.ThreadMXBean)) return 0;
+        return ((com.sun.management.ThreadMXBean) mThreads).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static String metric(double[] values, String unit) {
+        double mean = mean(values);
+        double variance = 0;
+        for (double value : values) {
+            variance += (value - mean) * (value - mean);
+        }
+        double error = Z_999 * Math.sqrt(variance / (values.length - 1)) / Math.sqrt(values.length);
+        StringBuilder raw = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) raw.append(',');
+            raw.append(String.format(Locale.US, "%.3f", values[i]));
+        }
+        return String.format(Locale.US, "{\"score\":%.3f,\"scoreError\":%.3f,\"scoreUnit\":\"%s\",\"rawData\":[[%s]]}",
+            mean, error, unit, raw);
+    }
+
+    private static double mean(double[] values) {
+        double sum = 0;
+        for (double value : values) {
+            sum += value;
+        }
+        return sum / values.length;
+    }
+}
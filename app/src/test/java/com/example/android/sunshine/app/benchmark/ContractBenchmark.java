@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.benchmark;
+
+import android.net.Uri;
+
+import com.example.android.sunshine.app.BuildConfig;
+import com.example.android.sunshine.app.data.WeatherContract;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+
+/*
+    Date normalization and the URI builders and parsers of WeatherContract, which run on every
+    provider call.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ContractBenchmark {
+
+    private static final long DATE = 1419033600000L;  // December 20th, 2014
+    private static final long DAY_IN_MILLIS = 86400000L;
+    private static final String LOCATION = "94043";
+
+    private static final BenchmarkHarness sHarness = new BenchmarkHarness(ContractBenchmark.class);
+
+    @AfterClass
+    public static void writeResults() throws IOException {
+        sHarness.writeResults();
+    }
+
+    @Test
+    public void normalizeDate() {
+        sHarness.run("normalizeDate", new BenchmarkHarness.Op() {
+            @Override
+            public long run(int invocation) {
+                return WeatherContract.normalizeDate(DATE + (invocation & 1023) * 3600000L);
+            }
+        });
+    }
+
+    @Test
+    public void buildWeatherLocationWithStartDate() {
+        sHarness.run("buildWeatherLocationWithStartDate", new BenchmarkHarness.Op() {
+            @Override
+            public long run(int invocation) {
+                return WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(LOCATION,
+                    DATE + (invocation & 15) * DAY_IN_MILLIS).hashCode();
+            }
+        });
+    }
+
+    @Test
+    public void buildWeatherLocationWithDate() {
+        sHarness.run("buildWeatherLocationWithDate", new BenchmarkHarness.Op() {
+            @Override
+            public long run(int invocation) {
+                return WeatherContract.WeatherEntry.buildWeatherLocationWithDate(LOCATION,
+                    DATE + (invocation & 15) * DAY_IN_MILLIS).hashCode();
+            }
+        });
+    }
+
+    @Test
+    public void parseLocationWithStartDate() {
+        final Uri[] uris = buildUris(true);
+        sHarness.run("parseLocationWithStartDate", new BenchmarkHarness.Op() {
+            @Override
+            public long run(int invocation) {
+                // Parses a fresh copy, since a Uri caches its parts once parsed.
+                Uri uri = Uri.parse(uris[invocation & 15].toString());
+                return WeatherContract.WeatherEntry.getLocationSettingFromUri(uri).length()
+                    + WeatherContract.WeatherEntry.getStartDateFromUri(uri);
+            }
+        });
+    }
+
+    @Test
+    public void parseLocationWithDate() {
+        final Uri[] uris = buildUris(false);
+        sHarness.run("parseLocationWithDate", new BenchmarkHarness.Op() {
+            @Override
+            public long run(int invocation) {
+                Uri uri = Uri.parse(uris[invocation & 15].toString());
+                return WeatherContract.WeatherEntry.getLocationSettingFromUri(uri).length()
+                    + WeatherContract.WeatherEntry.getDateFromUri(uri);
+            }
+        });
+    }
+
+    private static Uri[] buildUris(boolean startDate) {
+        Uri[] uris = new Uri[16];
+        for (int i = 0; i < uris.length; i++) {
+            long date = DATE + i * DAY_IN_MILLIS;
+            uris[i] = startDate
+                ? WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(LOCATION, date)
+                : WeatherContract.WeatherEntry.buildWeatherLocationWithDate(LOCATION, date);
+        }
+        return uris;
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.benchmark;
+
+import android.content.Context;
+
+import com.example.android.sunshine.app.BuildConfig;
+import com.example.android.sunshine.app.ForecastFormatter;
+import com.example.android.sunshine.app.SettingsStore;
+import com.example.android.sunshine.app.SunshineSettings;
+import com.example.android.sunshine.app.Utility;
+import com.example.android.sunshine.app.WeatherConditions;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+
+/*
+    Temperature formatting and condition lookups, which run for every bound row.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class FormattingBenchmark {
+
+    private static final BenchmarkHarness sHarness = new BenchmarkHarness(FormattingBenchmark.class);
+
+    private Context mContext;
+    private SunshineSettings mSettings;
+
+    @AfterClass
+    public static void writeResults() throws IOException {
+        sHarness.writeResults();
+    }
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mSettings = SettingsStore.getInstance(mContext).getSettings();
+    }
+
+    // Temperatures from -10 to 30 degrees, in quarters of a degree.
+    private static double temperature(int invocation) {
+        return (invocation & 255) * 0.25 - 10;
+    }
+
+    @Test
+    public void formatTemperatureFromPreferences() {
+        sHarness.run("formatTemperatureFromPreferences", new BenchmarkHarness.Op() {
+            @Override
+            public long run(int invocation) {
+                return Utility.formatTemperature(mContext, temperature(invocation)).length();
+            }
+        });
+    }
+
+    @Test
+    public void formatTemperatureFromSettings() {
+        sHarness.run("formatTemperatureFromSettings", new BenchmarkHarness.Op() {
+            @Override
+            public long run(int invocation) {
+                return Utility.formatTemperature(mSettings, temperature(invocation)).length();
+            }
+        });
+    }
+
+    @Test
+    public void formatTemperatureMemoized() {
+        final ForecastFormatter formatter = new ForecastFormatter(mSettings);
+        sHarness.run("formatTemperatureMemoized", new BenchmarkHarness.Op() {
+            @Override
+            public long run(int invocation) {
+                return formatter.formatTemperature(temperature(invocation)).text.length();
+            }
+        });
+    }
+
+    @Test
+    public void conditionIconResource() {
+        sHarness.run("conditionIconResource", new BenchmarkHarness.Op() {
+            @Override
+            public long run(int invocation) {
+                return WeatherConditions.getIconResource(200 + invocation % 700);
+            }
+        });
+    }
+
+    @Test
+    public void conditionDescription() {
+        sHarness.run("conditionDescription", new BenchmarkHarness.Op() {
+            @Override
+            public long run(int invocation) {
+                return Utility.getStringForWeatherCondition(mContext, 200 + invocation % 700).length();
+            }
+        });
+    }
+
+    @Test
+    public void conditionArtUrl() {
+        sHarness.run("conditionArtUrl", new BenchmarkHarness.Op() {
+            @Override
+            public long run(int invocation) {
+                String url = Utility.getArtUrlForWeatherCondition(mSettings, 200 + invocation % 700);
+                return null == url ? 0 : url.length();
+            }
+        });
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.benchmark;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+
+import com.example.android.sunshine.app.BuildConfig;
+import com.example.android.sunshine.app.data.SyntheticForecasts;
+import com.example.android.sunshine.app.data.WeatherContract;
+import com.example.android.sunshine.app.data.WeatherProvider;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowContentResolver;
+
+import java.io.IOException;
+
+/*
+    WeatherProvider's bulk insert, as done by a refresh, and its three weather query routes, on
+    a database holding two weeks of forecast for one location. Queries are counted, which fills
+    the cursor window, and closed.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ProviderBenchmark {
+
+    private static final long DATE = 1419033600000L;  // December 20th, 2014
+    private static final long DAY_IN_MILLIS = 86400000L;
+    private static final int DAYS = 14;
+
+    private static final SyntheticForecasts GENERATOR =
+        new SyntheticForecasts(SyntheticForecasts.DEFAULT_SEED, DATE);
+    private static final String LOCATION = GENERATOR.getLocationSetting(0);
+
+    // The columns of the forecast list and of a detail view.
+    private static final String[] FORECAST_COLUMNS = {
+        WeatherContract.WeatherEntry.TABLE_NAME + "." + WeatherContract.WeatherEntry._ID,
+        WeatherContract.WeatherEntry.COLUMN_DATE,
+        WeatherContract.WeatherEntry.COLUMN_SHORT_DESC,
+        WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
+        WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
+        WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING,
+        WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
+        WeatherContract.LocationEntry.COLUMN_COORD_LAT,
+        WeatherContract.LocationEntry.COLUMN_COORD_LONG
+    };
+    private static final String[] DETAIL_COLUMNS = {
+        WeatherContract.WeatherEntry.TABLE_NAME + "." + WeatherContract.WeatherEntry._ID,
+        WeatherContract.WeatherEntry.COLUMN_DATE,
+        WeatherContract.WeatherEntry.COLUMN_SHORT_DESC,
+        WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
+        WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
+        WeatherContract.WeatherEntry.COLUMN_HUMIDITY,
+        WeatherContract.WeatherEntry.COLUMN_PRESSURE,
+        WeatherContract.WeatherEntry.COLUMN_WIND_SPEED,
+        WeatherContract.WeatherEntry.COLUMN_DEGREES,
+        WeatherContract.WeatherEntry.COLUMN_WEATHER_ID
+    };
+
+    private static final BenchmarkHarness sHarness = new BenchmarkHarness(ProviderBenchmark.class);
+
+    private WeatherProvider mProvider;
+    private ContentValues[] mWeek;
+
+    @AfterClass
+    public static void writeResults() throws IOException {
+        sHarness.writeResults();
+    }
+
+    @Before
+    public void setUp() {
+        mProvider = new WeatherProvider();
+        mProvider.attachInfo(RuntimeEnvironment.application, null);
+        ShadowContentResolver.registerProvider(WeatherContract.CONTENT_AUTHORITY, mProvider);
+
+        long locationId = Long.parseLong(mProvider.insert(WeatherContract.LocationEntry.CONTENT_URI,
+            GENERATOR.createLocationValues(0)).getLastPathSegment());
+        mWeek = GENERATOR.createWeatherValues(0, locationId, DAYS);
+        mProvider.bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI, mWeek);
+    }
+
+    @After
+    public void tearDown() {
+        mProvider.shutdown();
+    }
+
+    // Rows replace the ones of the same day, as on every refresh after the first.
+    @Test
+    public void bulkInsertTwoWeeks() {
+        sHarness.run("bulkInsertTwoWeeks", new BenchmarkHarness.Op() {
+            @Override
+            public long run(int invocation) {
+                return mProvider.bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI, mWeek);
+            }
+        });
+    }
+
+    // "weather": the whole table.
+    @Test
+    public void queryWeather() {
+        benchmarkQuery("queryWeather", WeatherContract.WeatherEntry.CONTENT_URI, DETAIL_COLUMNS);
+    }
+
+    // "weather/*" with a start date: the forecast list.
+    @Test
+    public void queryWeatherWithLocation() {
+        benchmarkQuery("queryWeatherWithLocation", WeatherContract.WeatherEntry
+            .buildWeatherLocationWithStartDate(LOCATION, DATE), FORECAST_COLUMNS);
+    }
+
+    // "weather/*/*": one day, for a detail view.
+    @Test
+    public void queryWeatherWithLocationAndDate() {
+        benchmarkQuery("queryWeatherWithLocationAndDate", WeatherContract.WeatherEntry
+            .buildWeatherLocationWithDate(LOCATION, DATE + 3 * DAY_IN_MILLIS), DETAIL_COLUMNS);
+    }
+
+    private void benchmarkQuery(String benchmark, final Uri uri, final String[] projection) {
+        final String sortOrder = WeatherContract.WeatherEntry.COLUMN_DATE + " ASC";
+        sHarness.run(benchmark, new BenchmarkHarness.Op() {
+            @Override
+            public long run(int invocation) {
+                Cursor cursor = mProvider.query(uri, projection, null, null, sortOrder);
+                try {
+                    return cursor.getCount();
+                } finally {
+                    cursor.close();
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.benchmark;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+
+import com.example.android.sunshine.app.BuildConfig;
+import com.example.android.sunshine.app.data.SyntheticForecasts;
+import com.example.android.sunshine.app.data.WeatherContract;
+import com.example.android.sunshine.app.data.WeatherDbHelper;
+import com.example.android.sunshine.app.data.WeatherProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowContentResolver;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+/*
+    Grows the database by orders of magnitude with synthetic forecasts, three years of days for
+    1 to 1000 locations, and measures at every step how fast rows are ingested, how large the
+    database is, and how long the forecast list and detail queries take. Writes the curves to
+    ScalingReport.csv next to the benchmark results, prints them as a chart, and flags any
+    metric growing faster than it should: queries for one location should stay flat as other
+    locations are added, ingest time and size per row too.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ScalingReport {
+
+    private static final long START_DATE = 1419033600000L;  // December 20th, 2014
+    private static final int DAYS = 3 * 365;
+    private static final int[] LOCATION_STEPS = {1, 10, 100, 1000};
+    private static final int QUERIES = 200;
+    // Growth exponent, against the number of rows, above which a per-row or per-query metric
+    // is flagged.
+    private static final double MAX_EXPONENT = 0.25;
+
+    private static final String[] COLUMNS = {"rows", "ingest_us_per_row", "db_bytes_per_row",
+        "forecast_p50_ms", "forecast_p99_ms", "detail_p50_ms", "detail_p99_ms"};
+
+    private WeatherProvider mProvider;
+    private SyntheticForecasts mGenerator;
+
+    @Before
+    public void setUp() {
+        mProvider = new WeatherProvider();
+        mProvider.attachInfo(RuntimeEnvironment.application, null);
+        ShadowContentResolver.registerProvider(WeatherContract.CONTENT_AUTHORITY, mProvider);
+        mGenerator = new SyntheticForecasts(SyntheticForecasts.DEFAULT_SEED, START_DATE);
+    }
+
+    @After
+    public void tearDown() {
+        mProvider.shutdown();
+    }
+
+    @Test
+    public void scaleByOrdersOfMagnitude() throws IOException {
+        double[][] curves = new double[LOCATION_STEPS.length][];
+        Random random = new Random(SyntheticForecasts.DEFAULT_SEED);
+        int locations = 0;
+        for (int step = 0; step < LOCATION_STEPS.length; step++) {
+            long rows = 0;
+            long start = System.nanoTime();
+            for (; locations < LOCATION_STEPS[step]; locations++) {
+                Uri uri = mProvider.insert(WeatherContract.LocationEntry.CONTENT_URI,
+                    mGenerator.createLocationValues(locations));
+                long locationId = Long.parseLong(uri.getLastPathSegment());
+                ContentValues[] values = mGenerator.createWeatherValues(locations, locationId, DAYS);
+                rows += mProvider.bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI, values);
+            }
+            double ingestMicrosPerRow = (System.nanoTime() - start) / 1000.0 / rows;
+            long totalRows = (long) locations * DAYS;
+
+            long[] forecast = new long[QUERIES];
+            long[] detail = new long[QUERIES];
+            for (int i = 0; i < QUERIES; i++) {
+                String location = mGenerator.getLocationSetting(random.nextInt(locations));
+                // The list shows the last two weeks, as it would at the end of the data.
+                forecast[i] = timeQuery(WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(
+                    location, START_DATE + (DAYS - 14) * SyntheticForecasts.DAY_IN_MILLIS));
+                detail[i] = timeQuery(WeatherContract.WeatherEntry.buildWeatherLocationWithDate(
+                    location, START_DATE + random.nextInt(DAYS) * SyntheticForecasts.DAY_IN_MILLIS));
+            }
+            curves[step] = new double[]{totalRows, ingestMicrosPerRow, (double) getDatabaseBytes() / totalRows,
+                percentile(forecast, 0.5), percentile(forecast, 0.99),
+                percentile(detail, 0.5), percentile(detail, 0.99)};
+        }
+        writeCsv(curves);
+        printChart(curves);
+    }
+
+    private long timeQuery(Uri uri) {
+        long start = System.nanoTime();
+        Cursor cursor = mProvider.query(uri, null, null, null, WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
+        try {
+            cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static double percentile(long[] nanos, double fraction) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(fraction * sorted.length) - 1)] / 1e6;
+    }
+
+    private static long getDatabaseBytes() {
+        SQLiteDatabase db = new WeatherDbHelper(RuntimeEnvironment.application).getReadableDatabase();
+        try {
+            return pragma(db, "page_count") * pragma(db, "page_size");
+        } finally {
+            db.close();
+        }
+    }
+
+    private static long pragma(SQLiteDatabase db, String name) {
+        Cursor cursor = db.rawQuery("PRAGMA " + name, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static void writeCsv(double[][] curves) throws IOException {
+        File directory = new File(System.getProperty("benchmark.output", "build/benchmark"));
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create " + directory);
+        }
+        PrintWriter writer = new PrintWriter(new OutputStreamWriter(
+            new FileOutputStream(new File(directory, "ScalingReport.csv")), "UTF-8"));
+        try {
+            writer.println(join(COLUMNS));
+            for (double[] step : curves) {
+                StringBuilder line = new StringBuilder();
+                for (int i = 0; i < step.length; i++) {
+                    if (i > 0) line.append(',');
+                    line.append(String.format(Locale.US, i == 0 ? "%.0f" : "%.4f", step[i]));
+                }
+                writer.println(line);
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /*
+        One bar chart per metric, with a bar per step scaled to the largest value, and the
+        growth exponent from the previous step: 0 is flat, 1 is proportional to the rows.
+     */
+    private static void printChart(double[][] curves) {
+        for (int metric = 1; metric < COLUMNS.length; metric++) {
+            double max = 0;
+            for (double[] step : curves) {
+                max = Math.max(max, step[metric]);
+            }
+            System.out.println(COLUMNS[metric] + ":");
+            for (int step = 0; step < curves.length; step++) {
+                double value = curves[step][metric];
+                int width = max == 0 ? 0 : (int) Math.round(40 * value / max);
+                char[] bar = new char[width];
+                Arrays.fill(bar, '#');
+                String growth = "";
+                if (step > 0 && curves[step - 1][metric] > 0 && value > 0) {
+                    double exponent = Math.log(value / curves[step - 1][metric])
+                        / Math.log(curves[step][0] / curves[step - 1][0]);
+                    growth = String.format(Locale.US, "  x^%.2f%s", exponent,
+                        exponent > MAX_EXPONENT ? "  NON-LINEAR" : "");
+                }
+                System.out.println(String.format(Locale.US, "  %9.0f rows |%-40s| %.4f%s",
+                    curves[step][0], new String(bar), value, growth));
+            }
+        }
+    }
+
+    private static String join(String[] values) {
+        StringBuilder joined = new StringBuilder();
+        for (String value : values) {
+            if (joined.length() > 0) joined.append(',');
+            joined.append(value);
+        }
+        return joined.toString();
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/*
+    Collects operation latencies from any number of threads and reports the throughput and the
+    latency distribution of a stress scenario.
+ */
+class LatencyRecorder {
+
+    private final String mName;
+    private long[] mLatencies = new long[1024];
+    private int mCount;
+    private long mStart = System.nanoTime();
+
+    LatencyRecorder(String name) {
+        mName = name;
+    }
+
+    /**
+     * Starts the clock of the throughput over again.
+     */
+    synchronized void start() {
+        mStart = System.nanoTime();
+    }
+
+    synchronized void record(long nanos) {
+        if (mCount == mLatencies.length) {
+            mLatencies = Arrays.copyOf(mLatencies, mCount * 2);
+        }
+        mLatencies[mCount++] = nanos;
+    }
+
+    synchronized int getCount() {
+        return mCount;
+    }
+
+    /**
+     * @return the latency under which a fraction of the operations completed, in nanoseconds.
+     */
+    synchronized long getPercentile(double fraction) {
+        if (mCount == 0) return 0;
+        long[] sorted = Arrays.copyOf(mLatencies, mCount);
+        Arrays.sort(sorted);
+        return sorted[Math.min(mCount - 1, (int) Math.ceil(fraction * mCount) - 1)];
+    }
+
+    /**
+     * Prints the throughput since the start and the latency percentiles, in one line.
+     */
+    synchronized void report() {
+        double seconds = (System.nanoTime() - mStart) / 1e9;
+        System.out.println(String.format(Locale.US,
+            "%s: %d ops, %.0f ops/s, latency p50 %.2f ms, p90 %.2f ms, p99 %.2f ms, max %.2f ms",
+            mName, mCount, mCount / seconds, getPercentile(0.5) / 1e6, getPercentile(0.9) / 1e6,
+            getPercentile(0.99) / 1e6, getPercentile(1) / 1e6));
+    }
+}
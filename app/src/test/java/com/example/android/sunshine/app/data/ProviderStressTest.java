@@ -0,0 +1,326 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+
+import com.example.android.sunshine.app.BuildConfig;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowContentResolver;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+/*
+    Runs WeatherProvider and WeatherDbHelper on the JVM, against Robolectric's SQLite, under
+    loads the instrumentation tests don't reach: concurrent writers and readers, thousands of
+    content observers, and the query churn of a loader restarted over and over. Each scenario
+    prints its throughput and tail latency, so build hosts can track them.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ProviderStressTest {
+
+    static final long TEST_DATE = 1419033600000L;  // December 20th, 2014
+    static final int DAYS = 14;
+
+    static final int WRITERS = 4;
+    static final int READERS = 4;
+    static final int WRITES_PER_WRITER = 100;
+    static final int READS_PER_READER = 250;
+    static final int OBSERVERS = 2000;
+    static final int NOTIFYING_INSERTS = 50;
+    static final int LOADER_RESTARTS = 1000;
+
+    private static final SyntheticForecasts GENERATOR =
+        new SyntheticForecasts(SyntheticForecasts.DEFAULT_SEED, TEST_DATE);
+
+    private WeatherProvider mProvider;
+    private ContentResolver mResolver;
+
+    @Before
+    public void setUp() {
+        mProvider = new WeatherProvider();
+        mProvider.attachInfo(RuntimeEnvironment.application, null);
+        ShadowContentResolver.registerProvider(WeatherContract.CONTENT_AUTHORITY, mProvider);
+        mResolver = RuntimeEnvironment.application.getContentResolver();
+    }
+
+    @After
+    public void tearDown() {
+        mProvider.shutdown();
+    }
+
+    @Test
+    public void testHelperCreatesTables() {
+        SQLiteDatabase db = new WeatherDbHelper(RuntimeEnvironment.application).getReadableDatabase();
+        Set<String> tables = new HashSet<String>();
+        Cursor c = db.rawQuery("SELECT name FROM sqlite_master WHERE type='table'", null);
+        try {
+            while (c.moveToNext()) {
+                tables.add(c.getString(0));
+            }
+        } finally {
+            c.close();
+        }
+        db.close();
+        assertTrue("Error: the location table wasn't created", tables.contains(WeatherContract.LocationEntry.TABLE_NAME));
+        assertTrue("Error: the weather table wasn't created", tables.contains(WeatherContract.WeatherEntry.TABLE_NAME));
+        assertTrue("Error: the sync table wasn't created", tables.contains(WeatherContract.SyncEntry.TABLE_NAME));
+    }
+
+    /*
+        Every writer refreshes its own location, two weeks at a time, while readers query the
+        forecast of those locations. A bulk insert is one transaction, so a reader must see
+        either no forecast or the whole two weeks, never part of them.
+     */
+    @Test
+    public void testConcurrentWritersAndReaders() throws InterruptedException {
+        final long[] locationIds = new long[WRITERS];
+        for (int i = 0; i < WRITERS; i++) {
+            locationIds[i] = insertLocation(i);
+        }
+        final LatencyRecorder writes = new LatencyRecorder("bulkInsert, " + WRITERS + " writers");
+        final LatencyRecorder reads = new LatencyRecorder("forecast query, " + READERS + " readers");
+        final AtomicInteger partialReads = new AtomicInteger();
+        final List<Throwable> failures = new ArrayList<Throwable>();
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<Thread>();
+
+        for (int i = 0; i < WRITERS; i++) {
+            final int writer = i;
+            threads.add(new StressThread(start, failures) {
+                @Override
+                void stress() {
+                    for (int n = 0; n < WRITES_PER_WRITER; n++) {
+                        ContentValues[] values = createForecastValues(writer, locationIds[writer], n);
+                        long begin = System.nanoTime();
+                        mResolver.bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI, values);
+                        writes.record(System.nanoTime() - begin);
+                    }
+                }
+            });
+        }
+        for (int i = 0; i < READERS; i++) {
+            final int reader = i;
+            threads.add(new StressThread(start, failures) {
+                @Override
+                void stress() {
+                    for (int n = 0; n < READS_PER_READER; n++) {
+                        Uri uri = WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(
+                            location((reader + n) % WRITERS), TEST_DATE);
+                        long begin = System.nanoTime();
+                        int count = queryCount(uri);
+                        reads.record(System.nanoTime() - begin);
+                        if (count != 0 && count != DAYS) partialReads.incrementAndGet();
+                    }
+                }
+            });
+        }
+        runAll(threads, start, writes, reads);
+
+        assertTrue("Error: " + failures, failures.isEmpty());
+        assertEquals("Error: readers saw partial bulk inserts", 0, partialReads.get());
+        assertEquals(WRITERS * WRITES_PER_WRITER, writes.getCount());
+        assertEquals(READERS * READS_PER_READER, reads.getCount());
+        for (int i = 0; i < WRITERS; i++) {
+            assertEquals(DAYS, queryCount(WeatherContract.WeatherEntry.buildWeatherLocation(location(i))));
+        }
+        writes.report();
+        reads.report();
+    }
+
+    /*
+        Thousands of observers, as with many lists or widgets watching the forecast, all
+        notified by every bulk insert.
+     */
+    @Test
+    public void testObserverStorm() {
+        long locationId = insertLocation(0);
+        final AtomicInteger changes = new AtomicInteger();
+        List<ContentObserver> observers = new ArrayList<ContentObserver>();
+        for (int i = 0; i < OBSERVERS; i++) {
+            ContentObserver observer = new ContentObserver(null) {
+                @Override
+                public void onChange(boolean selfChange) {
+                    changes.incrementAndGet();
+                }
+            };
+            mResolver.registerContentObserver(WeatherContract.WeatherEntry.CONTENT_URI, true, observer);
+            observers.add(observer);
+        }
+
+        LatencyRecorder inserts = new LatencyRecorder("bulkInsert, " + OBSERVERS + " observers");
+        for (int n = 0; n < NOTIFYING_INSERTS; n++) {
+            ContentValues[] values = createForecastValues(0, locationId, n);
+            long begin = System.nanoTime();
+            mResolver.bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI, values);
+            inserts.record(System.nanoTime() - begin);
+        }
+        for (ContentObserver observer : observers) {
+            mResolver.unregisterContentObserver(observer);
+        }
+
+        assertEquals("Error: observers missed notifications", OBSERVERS * NOTIFYING_INSERTS, changes.get());
+        assertTrue(shadowOf(mResolver).getContentObservers(WeatherContract.WeatherEntry.CONTENT_URI).isEmpty());
+        inserts.report();
+    }
+
+    /*
+        A loader restarted over and over, as when scrolling through locations: every load
+        registers an observer on its URI, queries, reads the rows or gets cancelled before it
+        does, and unregisters. A writer keeps refreshing meanwhile. Nothing may be left behind.
+     */
+    @Test
+    public void testLoaderRestartChurn() throws InterruptedException {
+        final long locationId = insertLocation(0);
+        final LatencyRecorder loads = new LatencyRecorder("restarted load");
+        final List<Throwable> failures = new ArrayList<Throwable>();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch loadsDone = new CountDownLatch(1);
+        final AtomicInteger notifications = new AtomicInteger();
+        final Uri uri = WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(location(0), TEST_DATE);
+        List<Thread> threads = new ArrayList<Thread>();
+
+        threads.add(new StressThread(start, failures) {
+            @Override
+            void stress() {
+                for (int n = 0; loadsDone.getCount() > 0; n++) {
+                    mResolver.bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI,
+                        createForecastValues(0, locationId, n));
+                }
+            }
+        });
+        threads.add(new StressThread(start, failures) {
+            @Override
+            void stress() {
+                try {
+                    for (int n = 0; n < LOADER_RESTARTS; n++) {
+                        ContentObserver observer = new ContentObserver(null) {
+                            @Override
+                            public void onChange(boolean selfChange) {
+                                notifications.incrementAndGet();
+                            }
+                        };
+                        long begin = System.nanoTime();
+                        mResolver.registerContentObserver(uri, true, observer);
+                        Cursor cursor = mResolver.query(uri, null, null, null,
+                            WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
+                        // Every third load is cancelled before it reads its rows.
+                        if (n % 3 != 0) cursor.getCount();
+                        cursor.close();
+                        mResolver.unregisterContentObserver(observer);
+                        loads.record(System.nanoTime() - begin);
+                    }
+                } finally {
+                    loadsDone.countDown();
+                }
+            }
+        });
+        runAll(threads, start, loads);
+
+        assertTrue("Error: " + failures, failures.isEmpty());
+        assertEquals(LOADER_RESTARTS, loads.getCount());
+        assertTrue("Error: load observers were left registered",
+            shadowOf(mResolver).getContentObservers(uri).isEmpty());
+        loads.report();
+    }
+
+    /*
+        A thread that waits for the start signal, and records what it throws.
+     */
+    abstract static class StressThread extends Thread {
+        private final CountDownLatch mStart;
+        private final List<Throwable> mFailures;
+
+        StressThread(CountDownLatch start, List<Throwable> failures) {
+            mStart = start;
+            mFailures = failures;
+        }
+
+        abstract void stress();
+
+        @Override
+        public void run() {
+            try {
+                mStart.await();
+                stress();
+            } catch (Throwable t) {
+                synchronized (mFailures) {
+                    mFailures.add(t);
+                }
+            }
+        }
+    }
+
+    private static void runAll(List<Thread> threads, CountDownLatch start, LatencyRecorder... recorders)
+        throws InterruptedException {
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (LatencyRecorder recorder : recorders) {
+            recorder.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    static String location(int index) {
+        return GENERATOR.getLocationSetting(index);
+    }
+
+    private long insertLocation(int index) {
+        return Long.parseLong(mResolver.insert(WeatherContract.LocationEntry.CONTENT_URI,
+            GENERATOR.createLocationValues(index)).getLastPathSegment());
+    }
+
+    private int queryCount(Uri uri) {
+        Cursor cursor = mResolver.query(uri, null, null, null, null);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    // Two weeks of forecast for a location; every refresh brings a forecast of its own.
+    static ContentValues[] createForecastValues(int location, long locationId, int refresh) {
+        return new SyntheticForecasts(SyntheticForecasts.DEFAULT_SEED + refresh, TEST_DATE)
+            .createWeatherValues(location, locationId, DAYS);
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentValues;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Deterministic generator of realistic forecast data, at any scale: locations spread over the
+ * inhabited latitudes, and daily rows with a seasonal temperature cycle, day-to-day persistence
+ * and a plausible mix of conditions, snow when it is cold enough. Each location has its own
+ * random stream, derived from the seed and its index, so a location's rows are the same
+ * whatever the number of locations or days generated.
+ */
+public class SyntheticForecasts {
+
+    public static final long DEFAULT_SEED = 0x53554e5348494e45L;
+    public static final long DAY_IN_MILLIS = 86400000L;
+
+    // Condition categories, with how often each one starts a new weather spell.
+    static final int CLEAR = 0;
+    static final int CLOUDS = 1;
+    static final int RAIN = 2;
+    static final int DRIZZLE = 3;
+    static final int STORM = 4;
+    static final int ATMOSPHERE = 5;
+    private static final double[] CATEGORY_WEIGHTS = {0.35, 0.30, 0.17, 0.06, 0.04, 0.08};
+    // Chance of the weather of one day carrying over to the next.
+    private static final double PERSISTENCE = 0.6;
+
+    private static final int[][] CATEGORY_IDS = {
+        {800},
+        {801, 802, 803, 804},
+        {500, 501, 502, 503, 504, 520, 521, 522, 531},
+        {300, 301, 302, 310, 311, 312, 313, 314, 321},
+        {200, 201, 202, 210, 211, 212, 221, 230, 231, 232},
+        {701, 711, 721, 731, 741, 751, 761}
+    };
+    private static final int[] SNOW_IDS = {600, 601, 602, 611, 612, 615, 616, 620, 621, 622};
+
+    private final long mSeed;
+    private final long mStartDate;
+
+    /**
+     * @param startDate first day of every location's rows; normalized to the start of its day
+     */
+    public SyntheticForecasts(long seed, long startDate) {
+        mSeed = seed;
+        mStartDate = startDate - ((startDate % DAY_IN_MILLIS) + DAY_IN_MILLIS) % DAY_IN_MILLIS;
+    }
+
+    public String getLocationSetting(int location) {
+        return String.format(Locale.US, "S%06d", location);
+    }
+
+    public ContentValues createLocationValues(int location) {
+        Climate climate = new Climate(location);
+        ContentValues values = new ContentValues();
+        values.put(WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING, getLocationSetting(location));
+        values.put(WeatherContract.LocationEntry.COLUMN_CITY_NAME, "Synthetic City " + location);
+        values.put(WeatherContract.LocationEntry.COLUMN_COORD_LAT, climate.latitude);
+        values.put(WeatherContract.LocationEntry.COLUMN_COORD_LONG, climate.longitude);
+        return values;
+    }
+
+    /**
+     * @return the first {@code days} daily rows of a location, from the start date on
+     */
+    public ContentValues[] createWeatherValues(int location, long locationRowId, int days) {
+        Climate climate = new Climate(location);
+        Random random = climate.random;
+        ContentValues[] rows = new ContentValues[days];
+        double anomaly = 0;
+        int category = CLEAR;
+        for (int day = 0; day < days; day++) {
+            long date = mStartDate + day * DAY_IN_MILLIS;
+            // Departures from the seasonal mean last a few days.
+            anomaly = 0.7 * anomaly + random.nextGaussian() * 2.5;
+            double mean = climate.getSeasonalMean(date) + anomaly;
+            if (random.nextDouble() >= PERSISTENCE) {
+                category = pickCategory(random);
+            }
+            boolean wet = category == RAIN || category == DRIZZLE || category == STORM;
+            double spread = (wet ? 4 : 8) + random.nextDouble() * 5;
+            int weatherId = wet && mean < 1 && category != STORM
+                ? SNOW_IDS[random.nextInt(SNOW_IDS.length)]
+                : CATEGORY_IDS[category][random.nextInt(CATEGORY_IDS[category].length)];
+
+            ContentValues values = new ContentValues();
+            values.put(WeatherContract.WeatherEntry.COLUMN_LOC_KEY, locationRowId);
+            values.put(WeatherContract.WeatherEntry.COLUMN_DATE, date);
+            values.put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, weatherId);
+            values.put(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC, getShortDescription(weatherId));
+            values.put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, round(mean + spread / 2));
+            values.put(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, round(mean - spread / 2));
+            values.put(WeatherContract.WeatherEntry.COLUMN_HUMIDITY, round(wet ? 75 + random.nextDouble() * 25
+                : 30 + random.nextDouble() * 50));
+            values.put(WeatherContract.WeatherEntry.COLUMN_PRESSURE, round(1013 + random.nextGaussian() * (wet ? 10 : 5)));
+            values.put(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED, round(Math.abs(random.nextGaussian())
+                * (category == STORM ? 12 : 4)));
+            values.put(WeatherContract.WeatherEntry.COLUMN_DEGREES, (double) random.nextInt(360));
+            rows[day] = values;
+        }
+        return rows;
+    }
+
+    private static int pickCategory(Random random) {
+        double draw = random.nextDouble();
+        for (int i = 0; i < CATEGORY_WEIGHTS.length - 1; i++) {
+            draw -= CATEGORY_WEIGHTS[i];
+            if (draw < 0) return i;
+        }
+        return CATEGORY_WEIGHTS.length - 1;
+    }
+
+    static String getShortDescription(int weatherId) {
+        if (weatherId >= 800) return weatherId == 800 ? "Clear" : "Clouds";
+        if (weatherId >= 700) return "Fog";
+        if (weatherId >= 600) return "Snow";
+        if (weatherId >= 500) return "Rain";
+        if (weatherId >= 300) return "Drizzle";
+        return "Thunderstorm";
+    }
+
+    // Two decimals, as the API sends them.
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+
+    /*
+        Where a location is and how warm it gets over the year: colder and more seasonal away
+        from the equator, with the seasons swapped in the southern hemisphere.
+     */
+    private class Climate {
+        final Random random;
+        final double latitude;
+        final double longitude;
+        final double annualMean;
+        final double amplitude;
+
+        Climate(int location) {
+            random = new Random(mSeed ^ (location * 0x9e3779b97f4a7c15L));
+            latitude = round(-45 + random.nextDouble() * 110);
+            longitude = round(-180 + random.nextDouble() * 360);
+            annualMean = 28 - 0.4 * Math.abs(latitude) + random.nextGaussian() * 2;
+            amplitude = 1 + 0.3 * Math.abs(latitude);
+        }
+
+        double getSeasonalMean(long date) {
+            // The warmest day is in late July in the north, late January in the south.
+            double dayOfYear = (date / DAY_IN_MILLIS) % 365.25;
+            double warmest = latitude >= 0 ? 205 : 22;
+            return annualMean + amplitude * Math.cos(2 * Math.PI * (dayOfYear - warmest) / 365.25);
+        }
+    }
+}
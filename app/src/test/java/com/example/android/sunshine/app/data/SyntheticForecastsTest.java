@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentValues;
+
+import com.example.android.sunshine.app.BuildConfig;
+import com.example.android.sunshine.app.WeatherConditions;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class SyntheticForecastsTest {
+
+    static final long TEST_DATE = 1419033600000L;  // December 20th, 2014
+    static final int YEARS_OF_DAYS = 3 * 365;
+
+    @Test
+    public void testLocationRowsDontDependOnScale() {
+        SyntheticForecasts generator = new SyntheticForecasts(SyntheticForecasts.DEFAULT_SEED, TEST_DATE);
+        ContentValues[] year = generator.createWeatherValues(7, 1, 365);
+        ContentValues[] years = new SyntheticForecasts(SyntheticForecasts.DEFAULT_SEED, TEST_DATE)
+            .createWeatherValues(7, 1, YEARS_OF_DAYS);
+        for (int i = 0; i < year.length; i++) {
+            assertEquals("Error: day " + i + " changed with the number of days", year[i], years[i]);
+        }
+        assertEquals(generator.createLocationValues(7), generator.createLocationValues(7));
+        assertTrue(!generator.createWeatherValues(8, 1, 1)[0].equals(year[0]));
+    }
+
+    @Test
+    public void testRowsAreRealistic() {
+        SyntheticForecasts generator = new SyntheticForecasts(SyntheticForecasts.DEFAULT_SEED, TEST_DATE);
+        int clear = 0;
+        int rows = 0;
+        for (int location = 0; location < 50; location++) {
+            ContentValues[] days = generator.createWeatherValues(location, location, YEARS_OF_DAYS);
+            for (int i = 0; i < days.length; i++) {
+                ContentValues values = days[i];
+                assertEquals(TEST_DATE + i * SyntheticForecasts.DAY_IN_MILLIS,
+                    (long) values.getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE));
+                int weatherId = values.getAsInteger(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID);
+                assertTrue("Error: unknown condition " + weatherId, WeatherConditions.getIconResource(weatherId) != -1);
+                double high = values.getAsDouble(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP);
+                double low = values.getAsDouble(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP);
+                assertTrue(high > low && high < 60 && low > -70);
+                if (weatherId == 800) clear++;
+                rows++;
+            }
+        }
+        // A third of the days or so are clear, as configured.
+        assertTrue("Error: " + clear + " clear days out of " + rows, clear > rows / 4 && clear < rows / 2);
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.muzei;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+public class ArtDiskCacheTest extends TestCase {
+
+    private static final int ART_BYTES = 1000;
+
+    private File mRoot;
+    private File mCacheDirectory;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mRoot = File.createTempFile("ArtDiskCacheTest", "");
+        mRoot.delete();
+        mRoot.mkdirs();
+        mCacheDirectory = new File(mRoot, "cache");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        delete(mRoot);
+        super.tearDown();
+    }
+
+    // Artwork served from a file: URL, standing in for the art pack's server.
+    private String createArt(String name, int bytes) throws IOException {
+        File file = new File(mRoot, name);
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            byte[] content = new byte[bytes];
+            for (int i = 0; i < bytes; i++) {
+                content[i] = (byte) (name.hashCode() + i);
+            }
+            out.write(content);
+        } finally {
+            out.close();
+        }
+        return file.toURI().toURL().toString();
+    }
+
+    public void testArtIsDownloadedOnce() throws IOException {
+        ArtDiskCache cache = new ArtDiskCache(mCacheDirectory, 10 * ART_BYTES);
+        String url = createArt("art_clear.png", ART_BYTES);
+        assertFalse(cache.contains(url));
+
+        File first = cache.get(url);
+        assertTrue(cache.contains(url));
+        assertEquals(ART_BYTES, first.length());
+        // Removing the source shows the second read doesn't download again.
+        new File(mRoot, "art_clear.png").delete();
+        assertEquals(first, cache.get(url));
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    public void testFailedDownloadLeavesNothingBehind() throws IOException {
+        ArtDiskCache cache = new ArtDiskCache(mCacheDirectory, 10 * ART_BYTES);
+        String url = new File(mRoot, "missing.png").toURI().toURL().toString();
+        try {
+            cache.get(url);
+            fail("Error: a missing artwork was served");
+        } catch (IOException expected) {
+        }
+        assertFalse(cache.contains(url));
+        assertEquals(0, cache.size());
+    }
+
+    public void testLeastRecentlyServedArtIsEvicted() throws IOException {
+        ArtDiskCache cache = new ArtDiskCache(mCacheDirectory, 3 * ART_BYTES);
+        String clear = createArt("art_clear.png", ART_BYTES);
+        String rain = createArt("art_rain.png", ART_BYTES);
+        String snow = createArt("art_snow.png", ART_BYTES);
+        String storm = createArt("art_storm.png", ART_BYTES);
+
+        cache.get(clear).setLastModified(1000);
+        cache.get(rain).setLastModified(2000);
+        cache.get(snow).setLastModified(3000);
+        // Serving the oldest one makes it the most recent.
+        cache.get(clear);
+        cache.get(storm);
+
+        assertEquals(3 * ART_BYTES, cache.size());
+        assertTrue(cache.contains(clear));
+        assertFalse("Error: the least recently served art was kept", cache.contains(rain));
+        assertTrue(cache.contains(snow));
+        assertTrue(cache.contains(storm));
+    }
+
+    public void testArtLargerThanTheBoundIsStillServed() throws IOException {
+        ArtDiskCache cache = new ArtDiskCache(mCacheDirectory, ART_BYTES);
+        String clear = createArt("art_clear.png", ART_BYTES);
+        String large = createArt("art_large.png", 2 * ART_BYTES);
+        cache.get(clear);
+        assertEquals(2 * ART_BYTES, cache.get(large).length());
+        assertFalse(cache.contains(clear));
+        assertTrue(cache.contains(large));
+    }
+
+    public void testHashIsStableHex() {
+        String hash = ArtDiskCache.hash("https://example.com/art_clear.png");
+        assertEquals(40, hash.length());
+        assertTrue(hash.matches("[0-9a-f]+"));
+        assertEquals(hash, ArtDiskCache.hash("https://example.com/art_clear.png"));
+        assertFalse(hash.equals(ArtDiskCache.hash("https://example.com/art_rain.png")));
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.example.android.sunshine.app.sync.AdaptiveRefreshPolicy.DAY_IN_MILLIS;
+import static com.example.android.sunshine.app.sync.AdaptiveRefreshPolicy.HOUR_IN_MILLIS;
+
+/*
+    Drives AdaptiveRefreshPolicy with a fake clock and fake network state, so no device is needed.
+ */
+public class AdaptiveRefreshPolicyTest extends TestCase {
+
+    static final long NOW = 1419033600000L;  // December 20th, 2014
+
+    static class FakeClock implements Clock {
+        long mNow = NOW;
+
+        @Override
+        public long currentTimeMillis() {
+            return mNow;
+        }
+    }
+
+    static class FakeNetworkState implements NetworkState {
+        boolean mConnected = true;
+        boolean mUnmetered = true;
+        boolean mCharging = false;
+
+        @Override
+        public boolean isConnected() {
+            return mConnected;
+        }
+
+        @Override
+        public boolean isUnmetered() {
+            return mUnmetered;
+        }
+
+        @Override
+        public boolean isCharging() {
+            return mCharging;
+        }
+    }
+
+    private FakeClock mClock;
+    private FakeNetworkState mNetwork;
+    private RefreshPolicy mPolicy;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mClock = new FakeClock();
+        mNetwork = new FakeNetworkState();
+        mPolicy = new AdaptiveRefreshPolicy(mClock, mNetwork);
+    }
+
+    private static LocationRefreshState state(String location, long fetchedAgo, int horizonDays, int views) {
+        return new LocationRefreshState(location, fetchedAgo < 0 ? 0 : NOW - fetchedAgo,
+            NOW + horizonDays * DAY_IN_MILLIS, views);
+    }
+
+    private static List<LocationRefreshState> states(LocationRefreshState... states) {
+        List<LocationRefreshState> list = new ArrayList<LocationRefreshState>();
+        for (LocationRefreshState state : states) list.add(state);
+        return list;
+    }
+
+    public void testFreshLocationIsNeverRefreshed() {
+        RefreshPlan plan = mPolicy.plan(states(state("94043", HOUR_IN_MILLIS, 10, 20)));
+        assertFalse("Error: a fresh location was scheduled for refresh", plan.hasWork());
+        assertEquals(2 * HOUR_IN_MILLIS, plan.nextWakeUpDelayMillis);
+    }
+
+    public void testNeverFetchedLocationIsDue() {
+        RefreshPlan plan = mPolicy.plan(states(state("94043", -1, 0, 0)));
+        assertEquals(1, plan.dueLocations.size());
+        assertEquals(RefreshPlan.NO_WAKE_UP, plan.nextWakeUpDelayMillis);
+    }
+
+    public void testPopularLocationsRefreshMoreOften() {
+        List<LocationRefreshState> list = states(
+            state("hot", 4 * HOUR_IN_MILLIS, 10, 50),
+            state("cold", 4 * HOUR_IN_MILLIS, 10, 0));
+        RefreshPlan plan = mPolicy.plan(list);
+        assertEquals(1, plan.dueLocations.size());
+        assertEquals("hot", plan.dueLocations.get(0));
+    }
+
+    public void testShortHorizonIsStale() {
+        RefreshPlan plan = mPolicy.plan(states(state("94043", 2 * HOUR_IN_MILLIS, 1, 0)));
+        assertTrue("Error: a forecast ending tomorrow should be refreshed", plan.hasWork());
+    }
+
+    public void testDueLocationsAreBatchedIntoOneWakeUp() {
+        // Due in 1h and 1h30: a single wake-up at 1h30 covers both.
+        RefreshPlan plan = mPolicy.plan(states(
+            state("a", 2 * HOUR_IN_MILLIS, 10, 10),
+            state("b", 90 * 60 * 1000L, 10, 10)));
+        assertFalse(plan.hasWork());
+        assertEquals(90 * 60 * 1000L, plan.nextWakeUpDelayMillis);
+    }
+
+    public void testMeteredOnBatteryDefersUntilUrgent() {
+        mNetwork.mUnmetered = false;
+        List<LocationRefreshState> list = states(state("94043", 4 * HOUR_IN_MILLIS, 10, 50));
+        RefreshPlan plan = mPolicy.plan(list);
+        assertFalse("Error: a non-urgent refresh ran on a metered network", plan.hasWork());
+        assertEquals(0, plan.nextWakeUpDelayMillis);
+        assertEquals(2 * HOUR_IN_MILLIS, plan.deadlineDelayMillis);
+
+        mNetwork.mCharging = true;
+        assertTrue("Error: charging should open a refresh window", mPolicy.plan(list).hasWork());
+
+        mNetwork.mCharging = false;
+        mClock.mNow += 2 * HOUR_IN_MILLIS;
+        list = states(new LocationRefreshState("94043", NOW - 4 * HOUR_IN_MILLIS,
+            NOW + 10 * DAY_IN_MILLIS, 50));
+        assertTrue("Error: an urgent refresh should not wait", mPolicy.plan(list).hasWork());
+    }
+
+    public void testUrgentLocationCarriesOtherDueOnes() {
+        mNetwork.mUnmetered = false;
+        RefreshPlan plan = mPolicy.plan(states(
+            state("empty", -1, 0, 0),
+            state("due", 4 * HOUR_IN_MILLIS, 10, 50),
+            state("fresh", HOUR_IN_MILLIS, 10, 50)));
+        assertEquals(2, plan.dueLocations.size());
+        assertFalse(plan.dueLocations.contains("fresh"));
+    }
+
+    public void testNothingRunsWhileDisconnected() {
+        mNetwork.mConnected = false;
+        RefreshPlan plan = mPolicy.plan(states(state("94043", -1, 0, 0)));
+        assertFalse(plan.hasWork());
+        assertEquals(0, plan.nextWakeUpDelayMillis);
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import junit.framework.TestCase;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ForecastArchiveParserTest extends TestCase {
+
+    static final String RECORD_1 = "94043,Mountain View,37.39,-122.08,1419033600000,800,Clear,8.5,17.25,42,1017.3,3.1,270";
+    static final String RECORD_2 = "94043,Mountain View,37.39,-122.08,1419120000000,500,Rain,-2,11,80.5,1009,12.75,180";
+
+    static class CollectingSink implements ForecastArchiveParser.RecordSink {
+        final List<String> mRecords = new ArrayList<String>();
+        final List<String> mLocations = new ArrayList<String>();
+        long mLastOffset;
+
+        @Override
+        public void onRecord(ForecastArchiveRecord r) {
+            // The record is reused, so flatten it right away.
+            mRecords.add(r.locationSetting + "|" + r.cityName + "|" + r.coordLat + "|" + r.coordLong
+                + "|" + r.date + "|" + r.weatherId + "|" + r.shortDesc + "|" + r.minTemp + "|"
+                + r.maxTemp + "|" + r.humidity + "|" + r.pressure + "|" + r.windSpeed + "|" + r.degrees);
+            mLocations.add(r.locationSetting);
+            mLastOffset = r.nextOffset;
+        }
+    }
+
+    private static ByteBuffer bytes(String s) {
+        return ByteBuffer.wrap(s.getBytes());
+    }
+
+    public void testParsesFields() {
+        CollectingSink sink = new CollectingSink();
+        String archive = "# comment\n" + RECORD_1 + "\r\n\n" + RECORD_2 + "\n";
+        int consumed = new ForecastArchiveParser().parse(bytes(archive), 0, false, sink);
+
+        assertEquals(archive.length(), consumed);
+        assertEquals(2, sink.mRecords.size());
+        assertEquals("94043|Mountain View|37.39|-122.08|1419033600000|800|Clear|8.5|17.25|42.0|1017.3|3.1|270.0",
+            sink.mRecords.get(0));
+        assertEquals("94043|Mountain View|37.39|-122.08|1419120000000|500|Rain|-2.0|11.0|80.5|1009.0|12.75|180.0",
+            sink.mRecords.get(1));
+        assertEquals(archive.length(), sink.mLastOffset);
+    }
+
+    public void testPoolsStrings() {
+        CollectingSink sink = new CollectingSink();
+        new ForecastArchiveParser().parse(bytes(RECORD_1 + "\n" + RECORD_2 + "\n"), 0, true, sink);
+        assertTrue("Error: equal location settings should share one String",
+            sink.mLocations.get(0) == sink.mLocations.get(1));
+    }
+
+    public void testStopsAtIncompleteLine() {
+        CollectingSink sink = new CollectingSink();
+        ForecastArchiveParser parser = new ForecastArchiveParser();
+        String archive = RECORD_1 + "\n" + RECORD_2;
+
+        int consumed = parser.parse(bytes(archive), 100, false, sink);
+        assertEquals(RECORD_1.length() + 1, consumed);
+        assertEquals(1, sink.mRecords.size());
+        assertEquals(100 + RECORD_1.length() + 1, sink.mLastOffset);
+
+        consumed = parser.parse(bytes(archive), 100, true, sink);
+        assertEquals(archive.length(), consumed);
+        assertEquals(3, sink.mRecords.size());
+    }
+
+    public void testRejectsMalformedRecord() {
+        try {
+            new ForecastArchiveParser().parse(bytes("94043,Mountain View,37.39\n"), 0, true,
+                new CollectingSink());
+            fail("Error: a record with missing fields was accepted");
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            new ForecastArchiveParser().parse(bytes(RECORD_1.replace("800", "8x0") + "\n"), 0, true,
+                new CollectingSink());
+            fail("Error: a non-numeric weather id was accepted");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    public void testStringPoolGrows() {
+        ForecastArchiveParser.StringPool pool = new ForecastArchiveParser.StringPool();
+        ByteBuffer buffer = bytes("0123456789");
+        List<String> values = new ArrayList<String>();
+        for (int start = 0; start < 10; start++) {
+            for (int end = start + 1; end <= 10; end++) {
+                values.add(pool.get(buffer, start, end));
+            }
+        }
+        int i = 0;
+        for (int start = 0; start < 10; start++) {
+            for (int end = start + 1; end <= 10; end++) {
+                assertTrue(values.get(i++) == pool.get(buffer, start, end));
+            }
+        }
+    }
+}